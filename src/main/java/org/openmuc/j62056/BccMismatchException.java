@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+
+/**
+ * Signals that the block check character received at the end of a data message does not match the data received.
+ *
+ */
+public class BccMismatchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BccMismatchException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads all meters connected to a multi-drop bus (e.g. RS-485) one after another through a single {@link Iec21Port}.
+ * <p>
+ * The meters are read in the order of their device addresses, one cycle after another. When polling continuously, a
+ * cycle starts at the earliest one cycle interval after the start of the previous cycle. A meter that did not respond
+ * is not read again until its backoff time has passed. The backoff time starts at the initial backoff time and is
+ * doubled after every further consecutive failure up to the maximum backoff time. This way absent meters only rarely
+ * cost the identification timeout of the port, which should be set to a short value with
+ * {@link Iec21Port.Builder#setIdentificationTimeout(int)}.
+ *
+ */
+public class BusPoller {
+
+    private final Iec21Port port;
+    private final BusPollerListener listener;
+    private final List<Meter> meters;
+    private final int cycleInterval;
+    private final int initialBackoff;
+    private final int maxBackoff;
+
+    private volatile boolean running = false;
+    private Thread thread = null;
+
+    private static class Meter {
+
+        private final String deviceAddress;
+        private int numConsecutiveFailures = 0;
+        private long backoffUntil = 0;
+
+        private Meter(String deviceAddress) {
+            this.deviceAddress = deviceAddress;
+        }
+    }
+
+    /**
+     * Creates a bus poller.
+     *
+     * @param port
+     *            the port the bus is connected to
+     * @param deviceAddresses
+     *            the device addresses of the meters on the bus
+     * @param cycleInterval
+     *            the minimum time in ms between the starts of two cycles when polling continuously
+     * @param initialBackoff
+     *            the time in ms a meter is not read after its first failure. Zero disables the backoff.
+     * @param maxBackoff
+     *            the maximum time in ms a meter that did not respond repeatedly is not read
+     * @param listener
+     *            the listener that receives the results
+     */
+    public BusPoller(Iec21Port port, List<String> deviceAddresses, int cycleInterval, int initialBackoff,
+            int maxBackoff, BusPollerListener listener) {
+        if (port == null || deviceAddresses == null || listener == null) {
+            throw new IllegalArgumentException("port, deviceAddresses and listener may not be NULL");
+        }
+        if (cycleInterval < 0 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("invalid cycle interval or backoff times");
+        }
+        this.port = port;
+        this.listener = listener;
+        this.cycleInterval = cycleInterval;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        meters = new ArrayList<>(deviceAddresses.size());
+        for (String deviceAddress : deviceAddresses) {
+            meters.add(new Meter(deviceAddress));
+        }
+    }
+
+    /**
+     * Reads every meter on the bus once, except for meters whose backoff time has not passed yet.
+     *
+     * @return the number of meters read successfully
+     * @throws IOException
+     *             if the port has been closed
+     * @throws InterruptedIOException
+     *             if the calling thread has been interrupted
+     */
+    public synchronized int pollCycle() throws IOException {
+        int numRead = 0;
+        for (Meter meter : meters) {
+            if (port.isClosed()) {
+                throw new IOException("Port is closed");
+            }
+            if (meter.backoffUntil - System.nanoTime() > 0) {
+                continue;
+            }
+
+            DataMessage dataMessage;
+            try {
+                dataMessage = port.read(meter.deviceAddress, ReadPriority.LOW, 0);
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                // the meter did not respond in time
+                meter.numConsecutiveFailures++;
+                meter.backoffUntil = System.nanoTime() + backoff(meter.numConsecutiveFailures) * 1000000L;
+                listener.readFailed(meter.deviceAddress, e);
+                continue;
+            } catch (IOException e) {
+                // the meter responded, e.g. with a corrupted message, so it is not backed off
+                listener.readFailed(meter.deviceAddress, e);
+                continue;
+            }
+            meter.numConsecutiveFailures = 0;
+            numRead++;
+            listener.dataMessageReceived(meter.deviceAddress, dataMessage);
+        }
+        return numRead;
+    }
+
+    private long backoff(int numConsecutiveFailures) {
+        if (numConsecutiveFailures > 31) {
+            return maxBackoff;
+        }
+        return Math.min((long) initialBackoff << (numConsecutiveFailures - 1), maxBackoff);
+    }
+
+    /**
+     * Returns the time in ns until the next meter may be read, or -1 if there are no meters.
+     */
+    private synchronized long timeUntilNextMeterDue() {
+        long now = System.nanoTime();
+        long min = -1;
+        for (Meter meter : meters) {
+            long remaining = Math.max(0, meter.backoffUntil - now);
+            if (min == -1 || remaining < min) {
+                min = remaining;
+            }
+        }
+        return min;
+    }
+
+    private void poll() {
+        Thread self = Thread.currentThread();
+        try {
+            while (isPolling(self)) {
+                long cycleStart = System.nanoTime();
+                try {
+                    pollCycle();
+                } catch (IOException e) {
+                    synchronized (meters) {
+                        if (!isPolling(self) || self.isInterrupted()) {
+                            return;
+                        }
+                        running = false;
+                        thread = null;
+                    }
+                    listener.pollingTerminated(e);
+                    return;
+                }
+
+                long timeUntilNextCycle = cycleStart + cycleInterval * 1000000L - System.nanoTime();
+                long timeUntilNextMeterDue = timeUntilNextMeterDue();
+                synchronized (meters) {
+                    if (timeUntilNextMeterDue == -1) {
+                        while (isPolling(self)) {
+                            meters.wait();
+                        }
+                    }
+                    else {
+                        long waitTime = Math.max(timeUntilNextCycle, timeUntilNextMeterDue);
+                        long waitUntil = System.nanoTime() + waitTime;
+                        while (isPolling(self) && waitTime > 0) {
+                            meters.wait(waitTime / 1000000, (int) (waitTime % 1000000));
+                            waitTime = waitUntil - System.nanoTime();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            self.interrupt();
+        } finally {
+            // lets start() create a new thread if polling ended without stop()
+            synchronized (meters) {
+                if (thread == self) {
+                    running = false;
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true as long as the given thread is the polling thread and polling has not been stopped. A thread that
+     * is replaced after {@link #stop()} and {@link #start(ThreadFactory)} stops polling even if it missed the stop.
+     */
+    private boolean isPolling(Thread self) {
+        synchronized (meters) {
+            return running && thread == self;
+        }
+    }
+
+    /**
+     * Starts polling the bus continuously in a thread created by the given thread factory. Between two cycles the
+     * thread waits until the cycle interval has passed and at least one meter is no longer backing off. Polling stops
+     * when {@link #stop()} is called, when the polling thread is interrupted or when the port is closed, which is
+     * reported with {@link BusPollerListener#pollingTerminated(IOException)}. Polling can be started again afterwards.
+     *
+     * @param threadFactory
+     *            the thread factory, see {@link ThreadFactories}
+     */
+    public void start(ThreadFactory threadFactory) {
+        synchronized (meters) {
+            if (running) {
+                return;
+            }
+            running = true;
+            thread = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    poll();
+                }
+            });
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops polling after the current read has completed or immediately if the polling thread is waiting for the next
+     * cycle, and waits until the polling thread has terminated.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (meters) {
+            running = false;
+            thread = this.thread;
+            this.thread = null;
+            meters.notifyAll();
+        }
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
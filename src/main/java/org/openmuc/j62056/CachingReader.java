@@ -0,0 +1,388 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads meters through {@link Iec21Port}s and keeps the last data message of every meter for a limited time.
+ * <p>
+ * A meter is identified by its port and its device address. A read of a meter whose last data message is younger than
+ * the maximum age of the meter returns that data message without accessing the serial port. If several threads
+ * request the same meter at the same time, only one of them reads the meter and all of them receive its result.
+ * <p>
+ * The cache holds at most the given number of data messages. If it is full, the data message that was requested least
+ * recently is evicted. The returned data messages are shared by all callers and must not be modified.
+ * <p>
+ * The maximum ages set for the meters of a port do not keep the port from being garbage collected. The cached data
+ * messages of closed ports are removed by {@link #removeExpired()} or by {@link #remove(Iec21Port)}.
+ *
+ */
+public class CachingReader {
+
+    private final int maxEntries;
+    private final int defaultMaxAge;
+
+    private final Map<MeterKey, CacheEntry> cache;
+    private final ConcurrentMap<MeterKey, FutureTask<DataMessage>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Iec21Port, Map<String, Integer>> maxAges = new WeakHashMap<>();
+
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numCoalesced = new AtomicLong();
+    private final AtomicLong numEvictions = new AtomicLong();
+
+    private static class CacheEntry {
+
+        private final DataMessage dataMessage;
+        private final long readAt;
+
+        private CacheEntry(DataMessage dataMessage, long readAt) {
+            this.dataMessage = dataMessage;
+            this.readAt = readAt;
+        }
+
+        private boolean isFresh(int maxAge, long now) {
+            return (now - readAt) / 1000000 < maxAge;
+        }
+    }
+
+    /**
+     * Creates a caching reader.
+     *
+     * @param maxEntries
+     *            the maximum number of data messages kept
+     * @param defaultMaxAge
+     *            the time in ms a data message is returned again for meters whose maximum age has not been set with
+     *            {@link #setMaxAge(Iec21Port, String, int)}
+     */
+    public CachingReader(int maxEntries, int defaultMaxAge) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.defaultMaxAge = defaultMaxAge;
+        cache = new LinkedHashMap<MeterKey, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MeterKey, CacheEntry> eldest) {
+                if (size() > CachingReader.this.maxEntries) {
+                    numEvictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Sets the time in ms the data message of the given meter is returned again before the meter is read anew.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @param maxAge
+     *            the maximum age in ms of a returned data message
+     */
+    public void setMaxAge(Iec21Port port, String deviceAddress, int maxAge) {
+        synchronized (maxAges) {
+            Map<String, Integer> portMaxAges = maxAges.get(port);
+            if (portMaxAges == null) {
+                portMaxAges = new HashMap<>();
+                maxAges.put(port, portMaxAges);
+            }
+            portMaxAges.put(deviceAddress, maxAge);
+        }
+    }
+
+    private int getMaxAge(MeterKey key) {
+        synchronized (maxAges) {
+            Map<String, Integer> portMaxAges = maxAges.get(key.port);
+            if (portMaxAges != null) {
+                Integer maxAge = portMaxAges.get(key.deviceAddress);
+                if (maxAge != null) {
+                    return maxAge;
+                }
+            }
+        }
+        return defaultMaxAge;
+    }
+
+    /**
+     * Returns the data message of the meter addressed by the given port. The meter is read using
+     * {@link Iec21Port#read()} unless a data message that is not older than the maximum age of the meter is cached.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @return the data message
+     * @throws IOException
+     *             if reading the meter fails
+     */
+    public DataMessage read(Iec21Port port) throws IOException {
+        MeterKey key = new MeterKey(port, port.getDeviceAddress());
+        return read(key, getMaxAge(key), ReadPriority.NORMAL);
+    }
+
+    /**
+     * Returns the data message of the meter with the given device address on the given port. The meter is read using
+     * {@link Iec21Port#read(String)} unless a data message that is not older than the maximum age of the meter is
+     * cached.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the data message
+     * @throws IOException
+     *             if reading the meter fails
+     */
+    public DataMessage read(Iec21Port port, String deviceAddress) throws IOException {
+        MeterKey key = new MeterKey(port, deviceAddress);
+        return read(key, getMaxAge(key), ReadPriority.NORMAL);
+    }
+
+    /**
+     * Returns the data message of the meter addressed by the given port if it is not older than the given maximum age.
+     * Otherwise the meter is read.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param maxAge
+     *            the maximum age in ms of the returned data message. Zero forces a new read that may still be shared
+     *            with other threads reading the same meter at the same time.
+     * @return the data message
+     * @throws IOException
+     *             if reading the meter fails
+     */
+    public DataMessage read(Iec21Port port, int maxAge) throws IOException {
+        return read(new MeterKey(port, port.getDeviceAddress()), maxAge, ReadPriority.NORMAL);
+    }
+
+    /**
+     * Returns the data message of the meter with the given device address on the given port if it is not older than
+     * the given maximum age. Otherwise the meter is read with the given priority, see
+     * {@link Iec21Port#read(String, ReadPriority, int)}. If the meter is already being read by another thread, the
+     * result of that read is returned regardless of its priority.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @param priority
+     *            the priority of the read
+     * @param maxAge
+     *            the maximum age in ms of the returned data message
+     * @return the data message
+     * @throws IOException
+     *             if reading the meter fails
+     */
+    public DataMessage read(Iec21Port port, String deviceAddress, ReadPriority priority, int maxAge)
+            throws IOException {
+        return read(new MeterKey(port, deviceAddress), maxAge, priority);
+    }
+
+    private DataMessage read(final MeterKey key, int maxAge, final ReadPriority priority) throws IOException {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null) {
+                if (entry.isFresh(maxAge, System.nanoTime())) {
+                    numHits.incrementAndGet();
+                    return entry.dataMessage;
+                }
+            }
+        }
+
+        FutureTask<DataMessage> task = new FutureTask<>(new Callable<DataMessage>() {
+            @Override
+            public DataMessage call() throws IOException {
+                DataMessage dataMessage = key.port.read(key.deviceAddress, priority, 0);
+                synchronized (cache) {
+                    cache.put(key, new CacheEntry(dataMessage, System.nanoTime()));
+                }
+                return dataMessage;
+            }
+        });
+        FutureTask<DataMessage> existing = inFlight.putIfAbsent(key, task);
+        if (existing == null) {
+            numMisses.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+        else {
+            numCoalesced.incrementAndGet();
+            task = existing;
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the read of another thread.");
+        }
+    }
+
+    /**
+     * Removes the cached data message of the meter addressed by the given port.
+     *
+     * @param port
+     *            the port the meter is connected to
+     */
+    public void invalidate(Iec21Port port) {
+        invalidate(port, port.getDeviceAddress());
+    }
+
+    /**
+     * Removes the cached data message of the meter with the given device address on the given port. Use
+     * {@link #remove(Iec21Port)} to remove the data messages of all meters connected to the port.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     */
+    public void invalidate(Iec21Port port, String deviceAddress) {
+        synchronized (cache) {
+            cache.remove(new MeterKey(port, deviceAddress));
+        }
+    }
+
+    /**
+     * Removes the cached data messages and the maximum ages of all meters connected to the given port. Should be called
+     * when the port is closed.
+     *
+     * @param port
+     *            the port
+     */
+    public void remove(Iec21Port port) {
+        synchronized (maxAges) {
+            maxAges.remove(port);
+        }
+        synchronized (cache) {
+            Iterator<MeterKey> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().port == port) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached data messages that are older than the maximum age of their meter and all data messages and
+     * maximum ages of meters whose port has been closed.
+     */
+    public void removeExpired() {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Iterator<Map.Entry<MeterKey, CacheEntry>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<MeterKey, CacheEntry> entry = iterator.next();
+                MeterKey key = entry.getKey();
+                if (key.port.isClosed() || !entry.getValue().isFresh(getMaxAge(key), now)) {
+                    iterator.remove();
+                    numEvictions.incrementAndGet();
+                }
+            }
+        }
+        synchronized (maxAges) {
+            Iterator<Iec21Port> iterator = maxAges.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isClosed()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of data messages currently cached.
+     *
+     * @return the number of cached data messages
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns the number of reads that were answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    /**
+     * Returns the number of reads that accessed the serial port.
+     *
+     * @return the number of cache misses
+     */
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+
+    /**
+     * Returns the number of reads that received the result of a read started by another thread.
+     *
+     * @return the number of coalesced reads
+     */
+    public long getNumCoalesced() {
+        return numCoalesced.get();
+    }
+
+    /**
+     * Returns the number of data messages removed from the cache because it was full or they had expired.
+     *
+     * @return the number of evictions
+     */
+    public long getNumEvictions() {
+        return numEvictions.get();
+    }
+
+}
@@ -24,12 +24,11 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.openmuc.j62056.internal.Bcc;
-import org.openmuc.j62056.internal.Helper;
 import org.openmuc.j62056.internal.HexConverter;
 import org.openmuc.j62056.internal.IdentificationMessage;
-import org.openmuc.jrxtx.SerialPort;
 
 /**
  * Represents the data sent by the meter.
@@ -57,20 +56,76 @@ public class DataMessage {
     // Data set ::= Address '(' Value(optional) ('*' unit)(optional) ')'
     // BCC = block check character
 
-    static DataMessage readModeAbcDataMessage(DataInputStream is, IdentificationMessage identificationMessage)
-            throws IOException {
+    /**
+     * Reads a mode A, B or C data message and collects the data sets whose address is contained in the given set of
+     * registers, or all data sets if it is null.
+     */
+    static DataMessage readModeAbcDataMessage(DataInputStream is, IdentificationMessage identificationMessage,
+            final Set<String> registers) throws IOException {
+
+        final List<DataSet> dataSets = new ArrayList<>();
+        DataSetVisitor collector = new DataSetVisitor() {
+            @Override
+            public void startDataMessage(String manufacturerId, String meterId, String enhancedId) {
+            }
+
+            @Override
+            public void visitDataSet(DataSet dataSet) {
+                if (registers == null || registers.contains(dataSet.getAddress())) {
+                    dataSets.add(dataSet);
+                }
+            }
+
+            @Override
+            public void endDataMessage(boolean bccValid) {
+            }
+        };
+
+        Bcc bcc = new Bcc();
+        byte b = readModeAbcDataBlock(is, bcc, collector);
+
+        if (b != bcc.value) {
+            throw new BccMismatchException("Block check character (BCC) does not match. Received: "
+                    + HexConverter.toHexString(b) + ", expected: " + HexConverter.toHexString(bcc.value));
+        }
+
+        return new DataMessage(identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
+                identificationMessage.getEnhancedId(), dataSets);
+
+    }
+
+    /**
+     * Reads a mode A, B or C data message and passes each data set to the visitor as soon as it has been parsed.
+     * 
+     * @return true if the BCC matches
+     */
+    static boolean readModeAbcDataMessage(DataInputStream is, IdentificationMessage identificationMessage,
+            DataSetVisitor visitor) throws IOException {
+
+        visitor.startDataMessage(identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
+                identificationMessage.getEnhancedId());
+
+        Bcc bcc = new Bcc();
+        byte b = readModeAbcDataBlock(is, bcc, visitor);
+
+        boolean bccValid = (b == bcc.value);
+        visitor.endDataMessage(bccValid);
+        return bccValid;
+    }
+
+    /**
+     * Reads the data message from STX to ETX, calculates its BCC and returns the received BCC.
+     */
+    private static byte readModeAbcDataBlock(DataInputStream is, Bcc bcc, DataSetVisitor visitor) throws IOException {
 
         byte b = is.readByte();
         if (b != 0x02) {
             throw new IOException("Received unexpected data message start byte: " + HexConverter.toShortHexString(b));
         }
 
-        Bcc bcc = new Bcc();
-
-        List<DataSet> dataSets = new ArrayList<>();
         DataSet dataSet;
         while ((dataSet = DataSet.readDataSet(is, bcc)) != null) {
-            dataSets.add(dataSet);
+            visitor.visitDataSet(dataSet);
         }
 
         b = is.readByte();
@@ -91,57 +146,40 @@ public class DataMessage {
 
         bcc.value ^= '\r' ^ '\n' ^ 0x03;
 
-        b = is.readByte();
-
-        if (b != bcc.value) {
-            throw new IOException("Block check character (BCC) does not match. Received: " + HexConverter.toHexString(b)
-                    + ", expected: " + HexConverter.toHexString(bcc.value));
-        }
-
-        return new DataMessage(identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
-                identificationMessage.getEnhancedId(), dataSets);
-
+        return is.readByte();
     }
 
     // Mode D data message: '\r' '\n' <data block> '!' '\r' '\n'
 
-    static DataMessage readModeDDataMessage(DataInputStream is, IdentificationMessage identificationMessage,
-            SerialPort serialPort) throws IOException {
+    static DataMessage readModeDDataMessage(DataInputStream is, IdentificationMessage identificationMessage)
+            throws IOException {
         byte b = is.readByte();
         if (b != '\r') {
             throw new IOException("Received unexpected byte at beginning of data message: "
                     + HexConverter.toShortHexString(b) + ", expected: '\r'(");
         }
-
-        serialPort.setSerialPortTimeout(Helper.FRAGMENT_TIMEOUT);
-        try {
-
-            b = is.readByte();
-            if (b != '\n') {
-                throw new IOException("Received unexpected byte at beginning of data message: "
-                        + HexConverter.toShortHexString(b) + ", expected: '\n'");
-            }
-            List<DataSet> dataSets = new ArrayList<>();
-            DataSet dataSet;
-            while ((dataSet = DataSet.readDataSet(is, new Bcc())) != null) {
-                dataSets.add(dataSet);
-            }
-            b = is.readByte();
-            if (b != '\r') {
-                throw new IOException("Received unexpected byte at end of data message: "
-                        + HexConverter.toShortHexString(b) + ", expected: '\r'(");
-            }
-            b = is.readByte();
-            if (b != '\n') {
-                throw new IOException("Received unexpected byte at end of data message: "
-                        + HexConverter.toShortHexString(b) + ", expected: '\n'");
-            }
-            return new DataMessage(identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
-                    identificationMessage.getEnhancedId(), dataSets);
-
-        } finally {
-            serialPort.setSerialPortTimeout(0);
+        b = is.readByte();
+        if (b != '\n') {
+            throw new IOException("Received unexpected byte at beginning of data message: "
+                    + HexConverter.toShortHexString(b) + ", expected: '\n'");
+        }
+        List<DataSet> dataSets = new ArrayList<>();
+        DataSet dataSet;
+        while ((dataSet = DataSet.readDataSet(is, new Bcc())) != null) {
+            dataSets.add(dataSet);
+        }
+        b = is.readByte();
+        if (b != '\r') {
+            throw new IOException("Received unexpected byte at end of data message: "
+                    + HexConverter.toShortHexString(b) + ", expected: '\r'(");
+        }
+        b = is.readByte();
+        if (b != '\n') {
+            throw new IOException("Received unexpected byte at end of data message: "
+                    + HexConverter.toShortHexString(b) + ", expected: '\n'");
         }
+        return new DataMessage(identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
+                identificationMessage.getEnhancedId(), dataSets);
     }
 
     /**
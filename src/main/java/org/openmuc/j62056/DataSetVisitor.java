@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * Visitor that receives the data sets of a data message one by one while the message is still being received. Pass
+ * it to {@link Iec21Port#read(DataSetVisitor)} to process very large readouts with constant memory.
+ *
+ */
+public interface DataSetVisitor {
+
+    /**
+     * Is called once the identification message has been received, before the first data set.
+     *
+     * @param manufacturerId
+     *            the manufacturer identification
+     * @param meterId
+     *            the identification string (except for the enhanced identification characters)
+     * @param enhancedId
+     *            the enhanced identification/capability characters
+     */
+    public void startDataMessage(String manufacturerId, String meterId, String enhancedId);
+
+    /**
+     * Is called for every data set as soon as it has been received and parsed.
+     *
+     * @param dataSet
+     *            the data set
+     */
+    public void visitDataSet(DataSet dataSet);
+
+    /**
+     * Is called after the block check character (BCC) at the end of the data message has been received. If the BCC
+     * does not match, some of the data sets visited may be corrupted.
+     *
+     * @param bccValid
+     *            true if the received BCC matches the BCC calculated over the received data
+     */
+    public void endDataMessage(boolean bccValid);
+
+}
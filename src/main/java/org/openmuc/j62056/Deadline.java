@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which an operation has to be completed. Pass a deadline to {@link Iec21Port#read(Deadline)} to
+ * limit the total time of a read including the time spent waiting for the port.
+ *
+ */
+public final class Deadline {
+
+    private final long deadline;
+
+    private Deadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns a deadline that expires after the given time from now.
+     *
+     * @param duration
+     *            the time until the deadline expires
+     * @param unit
+     *            the unit of the duration
+     * @return the deadline
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /**
+     * Returns a deadline that expires at the given wall-clock time.
+     *
+     * @param timeMillis
+     *            the time in ms since the epoch, as returned by {@link System#currentTimeMillis()}
+     * @return the deadline
+     */
+    public static Deadline at(long timeMillis) {
+        return new Deadline(System.nanoTime() + (timeMillis - System.currentTimeMillis()) * 1000000L);
+    }
+
+    /**
+     * Returns the time remaining until the deadline expires.
+     *
+     * @return the remaining time in ms. Zero or negative if the deadline has expired.
+     */
+    public long remaining() {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return remaining / 1000000;
+        }
+        // round up so that a deadline that has not expired yet never reports a remaining time of zero
+        return (remaining + 999999) / 1000000;
+    }
+
+    /**
+     * Returns true if the deadline has expired.
+     *
+     * @return true if the deadline has expired
+     */
+    public boolean isExpired() {
+        return deadline - System.nanoTime() <= 0;
+    }
+
+}
@@ -24,21 +24,46 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.j62056.internal.AcknowledgeMessage;
 import org.openmuc.j62056.internal.AcknowledgeMode;
+import org.openmuc.j62056.internal.BaudRateChangeDelay;
+import org.openmuc.j62056.internal.BreakMessage;
+import org.openmuc.j62056.internal.EchoSuppressingInputStream;
+import org.openmuc.j62056.internal.FramePool.Frame;
 import org.openmuc.j62056.internal.Helper;
 import org.openmuc.j62056.internal.IdentificationMessage;
+import org.openmuc.j62056.internal.ModeDFrameReader;
 import org.openmuc.j62056.internal.ProtocolControlCharacter;
 import org.openmuc.j62056.internal.ProtocolMode;
 import org.openmuc.j62056.internal.RequestMessage;
+import org.openmuc.j62056.internal.RequestQueue;
+import org.openmuc.j62056.internal.RequestQueue.Ticket;
+import org.openmuc.j62056.internal.ResyncInputStream;
 import org.openmuc.j62056.internal.SelectMessage;
 import org.openmuc.j62056.internal.SelectReplyMessage;
+import org.openmuc.j62056.internal.TimeoutInputStream;
 import org.openmuc.jrxtx.DataBits;
 import org.openmuc.jrxtx.Parity;
 import org.openmuc.jrxtx.SerialPort;
 import org.openmuc.jrxtx.SerialPortBuilder;
+import org.openmuc.jrxtx.SerialPortException;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
 import org.openmuc.jrxtx.StopBits;
 
 /**
@@ -48,55 +73,394 @@ import org.openmuc.jrxtx.StopBits;
  */
 public class Iec21Port {
 
-    private final int baudRateChangeDelay;
+    private static final int DRAIN_QUIET_TIME = 50;
+    private static final int DRAIN_MAX_TIME = 500;
+    // time in ms without data after which the mode D receiver checks for reads to run in the gap
+    private static final int IDLE_CHECK_INTERVAL = 100;
+    // minimum time in ms left between the end of a read in a gap and the next expected mode D message
+    private static final int GAP_GUARD_TIME = 100;
+
+    private final BaudRateChangeDelay baudRateChangeDelay;
+    private final boolean baudRateChangeCalibration;
+    private final ManufacturerProfileRegistry manufacturerProfiles;
+    private final ConcurrentMap<String, BaudRateChangeDelay> profileBaudRateChangeDelays = new ConcurrentHashMap<>();
     private final int initialBaudRateModeABC;
     private final int initialBaudRateModeD;
-    private final int timeout;
+    private final int selectReplyTimeout;
+    private final int identificationTimeout;
+    private final int dataTimeout;
+    private final int interByteTimeoutModeABC;
+    private final int interByteTimeoutModeD;
+    private final int readoutDeadline;
+    private final int reconnectDelay;
+    private final int maxReconnectDelay;
+    private final int exceptionReportInterval;
     private final boolean verbose;
     private final boolean fixedBaudRate;
+    private final boolean echoSuppression;
+    private final String serialPortName;
+    private final String deviceAddress;
+    private final int serialPortTimeout;
+    private final ThreadFactory threadFactory;
+    private final Executor readExecutor;
+    private final Executor parserExecutor;
+    private final SerialPortOpener serialPortOpener;
 
-    private final SerialPort serialPort;
-    private final DataOutputStream os;
-    private final DataInputStream is;
+    private volatile SerialPort serialPort;
+    private volatile DataOutputStream os;
+    private volatile TimeoutInputStream timeoutInputStream;
+    private volatile ResyncInputStream resyncInputStream;
+    private volatile DataInputStream is;
     private final RequestMessage requestMessage;
+    private final String requestStartCharacters;
+    private final ConcurrentMap<String, RequestMessage> requestMessages = new ConcurrentHashMap<>();
     private final SelectMessage selectMessage;
     private final String selectExpect;
     private final char acknowledgeMode;
 
-    private ModeDListener listener = null;
-    private boolean closed = false;
+    private final RequestQueue requestQueue = new RequestQueue();
+    private final Object readLock = new Object();
+    private Thread readingThread = null;
+    private volatile ModeDReceiver receiver = null;
+    private volatile ConnectionState connectionState = ConnectionState.CONNECTED;
+    private volatile boolean closed = false;
+
+    private class ModeDReceiver implements Runnable {
+
+        private final ModeDListener listener;
+        private final ModeDParser parser;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Ticket ticket = null;
+        private Thread thread = null;
+        private volatile boolean running = true;
+        private long lastExceptionReport = 0;
+        private int numSuppressedExceptions = 0;
+
+        // guarded by this
+        private final ArrayDeque<GapRead> gapReads = new ArrayDeque<>();
+        // accessed by the receiving thread only
+        private long lastMessageEnd = 0;
+        private double messageInterval = -1;
+        private double readDuration = -1;
 
-    private class ModeDReceiver extends Thread {
+        private ModeDReceiver(ModeDListener listener) {
+            this.listener = listener;
+            parser = (parserExecutor == null) ? null : new ModeDParser(parserExecutor, listener);
+        }
 
         @Override
         public void run() {
-            while (!isClosed()) {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            try {
+                receive();
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    running = false;
+                    // do not leave an interrupt from stopRunning() behind on a pooled thread
+                    Thread.interrupted();
+                }
+                cancelGapReads();
+                finished.countDown();
+            }
+        }
+
+        private void receive() {
+            while (running && !isClosed()) {
                 try {
-                    IdentificationMessage identificationMessage = new IdentificationMessage(is);
-                    listener.newDataMessage(DataMessage.readModeDDataMessage(is, identificationMessage, serialPort));
+                    runGapRead();
+                    timeoutInputStream.startPhase(IDLE_CHECK_INTERVAL, interByteTimeoutModeD);
+                    resyncInputStream.startFrame();
+                    if (parser == null) {
+                        IdentificationMessage identificationMessage = new IdentificationMessage(is);
+                        DataMessage dataMessage = DataMessage.readModeDDataMessage(is, identificationMessage);
+                        messageReceived();
+                        listener.newDataMessage(dataMessage);
+                    }
+                    else {
+                        receiveFrame();
+                        messageReceived();
+                    }
                 } catch (Exception e) {
-                    if (isClosed()) {
+                    if (!running || isClosed()) {
                         break;
                     }
-                    listener.exceptionWhileListening(e);
+                    if (e instanceof SerialPortTimeoutException && resyncInputStream.getFrameLength() == 0) {
+                        // no message is being received
+                        continue;
+                    }
+                    reportException(e);
+
+                    if (e instanceof SerialPortException) {
+                        reconnect();
+                        continue;
+                    }
 
-                    int numBytesInStream;
                     try {
-                        numBytesInStream = is.available();
-                        if (numBytesInStream > 0) {
-                            byte[] bytesInStream = new byte[numBytesInStream];
-                            is.read(bytesInStream);
-                            if (verbose) {
-                                Helper.debug("Cleared input stream because of exception. Bytes read from stream: ",
-                                        bytesInStream);
-                            }
+                        int numBytesSkipped = resyncInputStream.resync();
+                        if (verbose) {
+                            Helper.debug("Skipped ", numBytesSkipped,
+                                    " bytes to find the start of the next message because of exception.");
+                        }
+                        if (numBytesSkipped > 0 && listener instanceof ModeDEventListener) {
+                            ((ModeDEventListener) listener).bytesSkipped(numBytesSkipped);
                         }
                     } catch (IOException e1) {
+                        // the serial port itself failed, e.g. because the USB adapter was unplugged
+                        reconnect();
+                    }
+                }
+            }
+        }
+
+        private void receiveFrame() throws IOException {
+            Frame frame = parser.acquireFrame();
+            try {
+                ModeDFrameReader.readFrame(is, frame);
+            } catch (IOException e) {
+                parser.releaseFrame(frame);
+                throw e;
+            }
+            parser.submit(frame);
+        }
+
+        /**
+         * Updates the estimated interval between mode D messages. Intervals that span several missed messages are
+         * divided by the number of messages missed.
+         */
+        private void messageReceived() {
+            long now = System.nanoTime();
+            if (lastMessageEnd != 0) {
+                double interval = (now - lastMessageEnd) / 1000000.0;
+                if (messageInterval < 0) {
+                    messageInterval = interval;
+                }
+                else {
+                    interval /= Math.max(1, Math.round(interval / messageInterval));
+                    messageInterval += (interval - messageInterval) / 4;
+                }
+            }
+            lastMessageEnd = now;
+        }
+
+        /**
+         * Runs the first queued read if the meter is silent and the read is expected to complete before the next mode D
+         * message, or if the read has waited for its maximum delay.
+         */
+        private void runGapRead() throws IOException {
+            GapRead gapRead;
+            synchronized (this) {
+                gapRead = gapReads.peekFirst();
+            }
+            if (gapRead == null || is.available() > 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (!gapFits(now) && gapRead.latestStart - now > 0) {
+                return;
+            }
+            synchronized (this) {
+                gapReads.pollFirst();
+            }
+            if (gapRead.task.isDone()) {
+                return;
+            }
+            if (verbose) {
+                Helper.debug("Reading meter in gap between mode D messages");
+            }
+            gapRead.task.run();
+            // a cancelled read interrupts the thread that ran it
+            if (running) {
+                Thread.interrupted();
+            }
+
+            // failed reads usually end with a timeout and would inflate the estimate
+            if (gapRead.task.succeeded) {
+                double duration = (System.nanoTime() - now) / 1000000.0;
+                readDuration = (readDuration < 0) ? duration : readDuration + (duration - readDuration) / 4;
+            }
+            if (verbose) {
+                Helper.debug("Resuming to listen for mode D messages");
+            }
+        }
+
+        private boolean gapFits(long now) {
+            if (messageInterval < 0 || readDuration < 0) {
+                return true;
+            }
+            double elapsed = (now - lastMessageEnd) / 1000000.0;
+            double remaining = messageInterval - elapsed % messageInterval;
+            return readDuration + GAP_GUARD_TIME <= remaining;
+        }
+
+        private synchronized void addGapRead(GapRead gapRead) throws IOException {
+            if (!running) {
+                throw new IOException("Port is not listening for mode D messages");
+            }
+            gapReads.addLast(gapRead);
+        }
+
+        private void cancelGapReads() {
+            while (true) {
+                GapRead gapRead;
+                synchronized (this) {
+                    gapRead = gapReads.pollFirst();
+                }
+                if (gapRead == null) {
+                    return;
+                }
+                gapRead.task.fail(new InterruptedIOException("Stopped listening before the read was started"));
+            }
+        }
+
+        private void reconnect() {
+            setConnectionState(ConnectionState.RECONNECTING, listener);
+            try {
+                serialPort.close();
+            } catch (IOException e) {
+            }
+
+            int delay = reconnectDelay;
+            while (running && !isClosed()) {
+                if (verbose) {
+                    Helper.debug("Reopening serial port in ", delay, "ms");
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    // stopListening() or close() was called
+                    continue;
+                }
+                try {
+                    openSerialPort(initialBaudRateModeD);
+                    if (isClosed()) {
+                        serialPort.close();
+                        return;
                     }
+                    setConnectionState(ConnectionState.CONNECTED, listener);
+                    return;
+                } catch (IOException e) {
+                    reportException(e);
+                    delay = Math.min(delay * 2, maxReconnectDelay);
+                }
+            }
+        }
+
+        private void reportException(Exception e) {
+            long now = System.currentTimeMillis();
+            if (now - lastExceptionReport < exceptionReportInterval) {
+                numSuppressedExceptions++;
+                if (verbose) {
+                    Helper.debug("Suppressed exception while listening: ", e.getMessage());
+                }
+                return;
+            }
+            if (numSuppressedExceptions > 0 && verbose) {
+                Helper.debug("Suppressed ", numSuppressedExceptions, " exceptions while listening");
+            }
+            lastExceptionReport = now;
+            numSuppressedExceptions = 0;
+            listener.exceptionWhileListening(e);
+        }
+
+        private void stopRunning() {
+            running = false;
+            timeoutInputStream.cancel();
+            synchronized (this) {
+                if (thread != null) {
+                    thread.interrupt();
                 }
             }
         }
 
+        private synchronized boolean isCurrentThread() {
+            return thread == Thread.currentThread();
+        }
+
+    }
+
+    private static class GapRead {
+
+        private final ReadTask task;
+        // value of System.nanoTime() after which the read is started in the next gap even if it may not fit
+        private final long latestStart;
+
+        private GapRead(ReadTask task, long latestStart) {
+            this.task = task;
+            this.latestStart = latestStart;
+        }
+    }
+
+    /**
+     * Opens the serial port of a port, also when it is reopened after a cancelled read or a reconnect.
+     */
+    interface SerialPortOpener {
+
+        SerialPort open(String serialPortName, int baudRate) throws IOException;
+    }
+
+    private static final SerialPortOpener SERIAL_PORT_OPENER = new SerialPortOpener() {
+        @Override
+        public SerialPort open(String serialPortName, int baudRate) throws IOException {
+            return SerialPortBuilder.newBuilder(serialPortName)
+                    .setDataBits(DataBits.DATABITS_7)
+                    .setStopBits(StopBits.STOPBITS_1)
+                    .setParity(Parity.EVEN)
+                    .setBaudRate(baudRate)
+                    .build();
+        }
+    };
+
+    private static class DefaultReadExecutor {
+        private static final ExecutorService executor = Executors
+                .newCachedThreadPool(ThreadFactories.platformThreadFactory("j62056-read-", true));
+    }
+
+    private class ReadTask extends ReadCallbackTask {
+
+        private volatile Thread runner = null;
+        private volatile boolean succeeded = false;
+
+        private ReadTask(Callable<DataMessage> callable, ReadCallback callback) {
+            super(callable, callback);
+        }
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                runner = null;
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            Thread runner = this.runner;
+            // the aborted read completes the task, so it has to be marked as cancelled first
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning && runner != null) {
+                cancelRead(runner);
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected void set(DataMessage dataMessage) {
+            succeeded = true;
+            super.set(dataMessage);
+        }
+
+        /**
+         * Completes a task that has not been started with the given exception.
+         */
+        private void fail(IOException e) {
+            setException(e);
+        }
+
     }
 
     /**
@@ -106,13 +470,29 @@ public class Iec21Port {
     public static class Builder {
 
         private int baudRateChangeDelay = 0;
+        private boolean baudRateChangeCalibration = false;
         // -1 indicates that the default initial baud rate should be used (i.e. 300 for modes A, B and C and 2400 for
         // mode D
         private int initialBaudrate = -1;
         private int timeout = 5000;
+        // -1 indicates that the general timeout should be used
+        private int selectReplyTimeout = -1;
+        private int identificationTimeout = -1;
+        private int dataTimeout = -1;
+        // -1 indicates that the general timeout should be used for modes A, B and C and the fragment timeout for mode D
+        private int interByteTimeout = -1;
+        private int readoutDeadline = 0;
+        private int reconnectDelay = 500;
+        private int maxReconnectDelay = 60000;
+        private int exceptionReportInterval = 1000;
+        private ThreadFactory threadFactory = null;
+        private Executor readExecutor = null;
+        private Executor parserExecutor = null;
+        private ManufacturerProfileRegistry manufacturerProfiles = null;
         private boolean verbose = false;
         private String deviceAddress = "";
         private boolean fixedBaudRate = false;
+        private boolean echoSuppression = false;
         private String requestStartCharacters = null;
         private String selectManufacturerData = null;
         private String selectExpectData = null;
@@ -140,6 +520,11 @@ public class Iec21Port {
          * of around 250ms because otherwise the baud rate is changed before the previous message (i.e. the
          * acknowledgment) has been completely sent.
          * <p>
+         * The port waits at least until the acknowledgment has been shifted out at the current baud rate (e.g. 200ms
+         * for the 6 characters of the acknowledgment at 300 baud), even if a shorter delay is set. If calibration is
+         * enabled (see {@link #enableBaudRateChangeCalibration(boolean)}), the delay set here is added to that
+         * transmission time as the initial allowance for the adapter to drain its send buffer.
+         * <p>
          * The default value is 0.
          *
          * @param baudRateChangeDelay
@@ -151,6 +536,28 @@ public class Iec21Port {
             return this;
         }
 
+        /**
+         * Enable or disable auto-calibration of the baud rate change delay.
+         * <p>
+         * If enabled the baud rate change delay is added to the transmission time of the acknowledgment and halved
+         * after every successful readout until readouts with the halved delay have failed several times, after which
+         * the last delay that worked is kept. If readouts keep failing later, the delay is raised again up to the
+         * configured baud rate change delay. Only failures after the baud rate change are taken into account. The
+         * calibrated delay is remembered for the serial port name and used by all ports created later in the same
+         * process with the same name. Use {@link MeterInventory#recordCalibrations()} and
+         * {@link MeterInventory#applyCalibrations()} to keep it across restarts.
+         * <p>
+         * Default is disabled.
+         *
+         * @param baudRateChangeCalibration
+         *            if true enable auto-calibration
+         * @return the builder
+         */
+        public Builder enableBaudRateChangeCalibration(boolean baudRateChangeCalibration) {
+            this.baudRateChangeCalibration = baudRateChangeCalibration;
+            return this;
+        }
+
         /**
          * Set the initial baud rate.
          * <p>
@@ -168,7 +575,8 @@ public class Iec21Port {
 
         /**
          * Set the maximum time in ms to wait for new data from the remote device. A timeout of zero is interpreted as
-         * an infinite timeout.
+         * an infinite timeout. This timeout is used for every phase of the message exchange whose timeout has not been
+         * set explicitly.
          * <p>
          * The default value is 5000 (= 5 seconds).
          *
@@ -181,6 +589,193 @@ public class Iec21Port {
             return this;
         }
 
+        /**
+         * Set the maximum time in ms to wait for the first byte of the select reply message. A timeout of zero is
+         * interpreted as an infinite timeout.
+         * <p>
+         * By default the timeout set with {@link #setTimeout(int)} is used.
+         *
+         * @param selectReplyTimeout
+         *            the select reply timeout
+         * @return the builder
+         */
+        public Builder setSelectReplyTimeout(int selectReplyTimeout) {
+            this.selectReplyTimeout = selectReplyTimeout;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms to wait for the first byte of the identification message after the request
+         * message has been sent. Meters usually answer within 200ms (see IEC 62056-21), so a short timeout allows to
+         * detect absent meters quickly. A timeout of zero is interpreted as an infinite timeout.
+         * <p>
+         * By default the timeout set with {@link #setTimeout(int)} is used.
+         *
+         * @param identificationTimeout
+         *            the identification timeout
+         * @return the builder
+         */
+        public Builder setIdentificationTimeout(int identificationTimeout) {
+            this.identificationTimeout = identificationTimeout;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms to wait for the first byte of the data message after the acknowledgment has been
+         * sent and the baud rate has been changed. A timeout of zero is interpreted as an infinite timeout.
+         * <p>
+         * By default the timeout set with {@link #setTimeout(int)} is used.
+         *
+         * @param dataTimeout
+         *            the data timeout
+         * @return the builder
+         */
+        public Builder setDataTimeout(int dataTimeout) {
+            this.dataTimeout = dataTimeout;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms to wait for the next byte once a message has started. A timeout of zero is
+         * interpreted as an infinite timeout.
+         * <p>
+         * By default the timeout set with {@link #setTimeout(int)} is used in modes A, B and C and 500ms is used in
+         * mode D.
+         *
+         * @param interByteTimeout
+         *            the inter-byte timeout
+         * @return the builder
+         */
+        public Builder setInterByteTimeout(int interByteTimeout) {
+            this.interByteTimeout = interByteTimeout;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms a complete {@link Iec21Port#read()} may take, regardless of how steadily the meter
+         * is sending data. A value of zero disables the deadline.
+         * <p>
+         * The default value is 0.
+         *
+         * @param readoutDeadline
+         *            the readout deadline
+         * @return the builder
+         */
+        public Builder setReadoutDeadline(int readoutDeadline) {
+            this.readoutDeadline = readoutDeadline;
+            return this;
+        }
+
+        /**
+         * Set the time in ms to wait before trying to reopen the serial port if it was lost while listening for mode D
+         * messages (e.g. because the USB adapter was unplugged). The delay is doubled after every failed attempt up to
+         * the maximum reconnect delay.
+         * <p>
+         * The default value is 500.
+         *
+         * @param reconnectDelay
+         *            the initial reconnect delay
+         * @return the builder
+         */
+        public Builder setReconnectDelay(int reconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms to wait between two attempts to reopen a lost serial port.
+         * <p>
+         * The default value is 60000 (= 1 minute).
+         *
+         * @param maxReconnectDelay
+         *            the maximum reconnect delay
+         * @return the builder
+         */
+        public Builder setMaxReconnectDelay(int maxReconnectDelay) {
+            this.maxReconnectDelay = maxReconnectDelay;
+            return this;
+        }
+
+        /**
+         * Set the minimum time in ms between two calls of {@link ModeDListener#exceptionWhileListening(Exception)}.
+         * Exceptions thrown within this interval after a reported exception are not reported.
+         * <p>
+         * The default value is 1000.
+         *
+         * @param exceptionReportInterval
+         *            the exception report interval
+         * @return the builder
+         */
+        public Builder setExceptionReportInterval(int exceptionReportInterval) {
+            this.exceptionReportInterval = exceptionReportInterval;
+            return this;
+        }
+
+        /**
+         * Set the thread factory used to create the thread that receives mode D messages after
+         * {@link Iec21Port#listen(ModeDListener)} has been called. {@link ThreadFactories} provides ready-made
+         * factories, e.g. for virtual threads.
+         * <p>
+         * By default a named non-daemon platform thread is created.
+         *
+         * @param threadFactory
+         *            the thread factory
+         * @return the builder
+         */
+        public Builder setThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Set the executor that performs the reads started with {@link Iec21Port#readAsync()}. Many ports may share the
+         * same executor.
+         * <p>
+         * By default a cached thread pool shared by all ports is used.
+         *
+         * @param readExecutor
+         *            the executor for asynchronous reads
+         * @return the builder
+         */
+        public Builder setReadExecutor(Executor readExecutor) {
+            this.readExecutor = readExecutor;
+            return this;
+        }
+
+        /**
+         * Set the executor that parses received mode D messages. If set, the receiving thread only assembles the raw
+         * bytes of each message and the executor turns them into data messages. Many ports may share the same
+         * executor, e.g. a fixed thread pool with one thread per core, to spread the parsing load across all cores.
+         * The listener is still called in the order the messages were received and by one thread at a time, but by
+         * the threads of the executor.
+         * <p>
+         * By default messages are parsed and delivered by the receiving thread.
+         *
+         * @param parserExecutor
+         *            the executor for parsing mode D messages
+         * @return the builder
+         */
+        public Builder setParserExecutor(Executor parserExecutor) {
+            this.parserExecutor = parserExecutor;
+            return this;
+        }
+
+        /**
+         * Set the manufacturer profiles to apply. As soon as the identification message of a meter has been received,
+         * the settings of the profile registered for its manufacturer ID override the settings of this port for the
+         * rest of the readout.
+         * <p>
+         * By default no profiles are applied.
+         *
+         * @param manufacturerProfiles
+         *            the manufacturer profiles
+         * @return the builder
+         */
+        public Builder setManufacturerProfiles(ManufacturerProfileRegistry manufacturerProfiles) {
+            this.manufacturerProfiles = manufacturerProfiles;
+            return this;
+        }
+
         /**
          * Set the device address which is transmitted as part of the request message that is sent to the meter.
          * <p>
@@ -239,8 +834,11 @@ public class Iec21Port {
          * @param acknowledgeMode
          *            value for Acknowledge Mode
          * @return the builder
+         * @throws IllegalArgumentException
+         *             if the character is not an acknowledge mode of IEC 62056-21, i.e. '0' to '9' or 'A' to 'Z'
          */
         public Builder setAcknowledgeMode(char acknowledgeMode) {
+            AcknowledgeMode.valueOf(acknowledgeMode);
             this.acknowledgeMode = acknowledgeMode;
             return this;
         }
@@ -274,6 +872,24 @@ public class Iec21Port {
             return this;
         }
 
+        /**
+         * Enable or disable suppression of echoed bytes.
+         * <p>
+         * Half-duplex RS-485 adapters and many optical heads echo every transmitted byte back into the receive line. If
+         * enabled, the bytes of every message sent are removed from the beginning of the received data before it is
+         * parsed. Received data that does not match the message sent is passed on unchanged.
+         * <p>
+         * Default is disabled.
+         *
+         * @param echoSuppression
+         *            if true enable echo suppression
+         * @return the builder
+         */
+        public Builder enableEchoSuppression(boolean echoSuppression) {
+            this.echoSuppression = echoSuppression;
+            return this;
+        }
+
         /**
          * Build and open the Iec21Port.
          *
@@ -290,6 +906,13 @@ public class Iec21Port {
     }
 
     private Iec21Port(Builder builder) throws IOException {
+        this(builder, SERIAL_PORT_OPENER);
+    }
+
+    /**
+     * Creates a port that opens its serial port with the given opener. Used by tests to read from a simulated meter.
+     */
+    Iec21Port(Builder builder, SerialPortOpener serialPortOpener) throws IOException {
 
         if (builder.initialBaudrate == -1) {
             initialBaudRateModeABC = 300;
@@ -300,46 +923,137 @@ public class Iec21Port {
             initialBaudRateModeD = builder.initialBaudrate;
         }
 
-        baudRateChangeDelay = builder.baudRateChangeDelay;
-        timeout = builder.timeout;
+        baudRateChangeDelay = new BaudRateChangeDelay(builder.serialPortName, builder.baudRateChangeDelay,
+                builder.baudRateChangeCalibration);
+        baudRateChangeCalibration = builder.baudRateChangeCalibration;
+        manufacturerProfiles = builder.manufacturerProfiles;
+        selectReplyTimeout = timeoutOrDefault(builder.selectReplyTimeout, builder.timeout);
+        identificationTimeout = timeoutOrDefault(builder.identificationTimeout, builder.timeout);
+        dataTimeout = timeoutOrDefault(builder.dataTimeout, builder.timeout);
+        interByteTimeoutModeABC = timeoutOrDefault(builder.interByteTimeout, builder.timeout);
+        interByteTimeoutModeD = timeoutOrDefault(builder.interByteTimeout, Helper.FRAGMENT_TIMEOUT);
+        readoutDeadline = builder.readoutDeadline;
+        reconnectDelay = builder.reconnectDelay;
+        maxReconnectDelay = builder.maxReconnectDelay;
+        exceptionReportInterval = builder.exceptionReportInterval;
         verbose = builder.verbose;
         requestMessage = new RequestMessage(builder.deviceAddress, builder.requestStartCharacters);
+        requestStartCharacters = builder.requestStartCharacters;
+        requestMessages.put(builder.deviceAddress, requestMessage);
         fixedBaudRate = builder.fixedBaudRate;
         selectMessage = new SelectMessage(builder.selectManufacturerData);
         selectExpect = builder.selectExpectData;
         acknowledgeMode = builder.acknowledgeMode;
+        serialPortName = builder.serialPortName;
+        deviceAddress = builder.deviceAddress;
+        serialPortTimeout = builder.timeout;
+        echoSuppression = builder.echoSuppression;
+        readExecutor = builder.readExecutor;
+        parserExecutor = builder.parserExecutor;
+        if (builder.threadFactory == null) {
+            threadFactory = ThreadFactories.platformThreadFactory("j62056-mode-d-" + serialPortName + "-", false);
+        }
+        else {
+            threadFactory = builder.threadFactory;
+        }
 
-        serialPort = SerialPortBuilder.newBuilder(builder.serialPortName)
-                .setDataBits(DataBits.DATABITS_7)
-                .setStopBits(StopBits.STOPBITS_1)
-                .setParity(Parity.EVEN)
-                .setBaudRate(initialBaudRateModeABC)
-                .build();
-        serialPort.setSerialPortTimeout(timeout);
-
-        is = new DataInputStream(serialPort.getInputStream());
-        os = new DataOutputStream(new BufferedOutputStream(serialPort.getOutputStream()));
+        this.serialPortOpener = serialPortOpener;
+        openSerialPort(initialBaudRateModeABC);
     }
 
-    public final SerialPort getSerialPort() {
-        return serialPort;
-    }
+    private void openSerialPort(int baudRate) throws IOException {
+        SerialPort serialPort = serialPortOpener.open(serialPortName, baudRate);
+        serialPort.setSerialPortTimeout(serialPortTimeout);
 
-    public final DataOutputStream getOutputStream() {
-        return os;
-    }
+        InputStream serialInputStream = serialPort.getInputStream();
+        OutputStream serialOutputStream = serialPort.getOutputStream();
+        if (echoSuppression) {
+            EchoSuppressingInputStream echoSuppressingInputStream = new EchoSuppressingInputStream(
+                    serialInputStream);
+            serialInputStream = echoSuppressingInputStream;
+            serialOutputStream = echoSuppressingInputStream.recordOutput(serialOutputStream);
+        }
 
-    public final DataInputStream getInputStream() {
-        return is;
+        timeoutInputStream = new TimeoutInputStream(serialInputStream, serialPort);
+        resyncInputStream = new ResyncInputStream(timeoutInputStream);
+        is = new DataInputStream(resyncInputStream);
+        os = new DataOutputStream(new BufferedOutputStream(serialOutputStream));
+        this.serialPort = serialPort;
     }
 
     /**
-     * Closes this communication port. Also closes the associated serial port, input stream and output stream.
-     * <p>
-     * The port cannot be opened again but has to be recreated.
+     * Reopens the serial port if it was closed to abort a blocked read, see {@link TimeoutInputStream#cancel()}.
      */
-    public void close() {
+    private void reopenIfCancelled(int baudRate) throws IOException {
+        if (!serialPort.isClosed() || isClosed()) {
+            return;
+        }
+        if (verbose) {
+            Helper.debug("Reopening serial port after cancelled read");
+        }
+        openSerialPort(baudRate);
+        if (isClosed()) {
+            serialPort.close();
+        }
+    }
+
+    private void setConnectionState(ConnectionState connectionState, ModeDListener listener) {
+        this.connectionState = connectionState;
+        if (verbose) {
+            Helper.debug("Connection state changed to ", connectionState);
+        }
+        if (listener instanceof ModeDEventListener) {
+            ((ModeDEventListener) listener).connectionStateChanged(connectionState);
+        }
+    }
+
+    private static int timeoutOrDefault(int timeout, int defaultTimeout) {
+        return timeout == -1 ? defaultTimeout : timeout;
+    }
+
+    public final SerialPort getSerialPort() {
+        return serialPort;
+    }
+
+    /**
+     * Returns the name of the serial port, e.g. "/dev/ttyUSB0".
+     *
+     * @return the serial port name
+     */
+    public String getSerialPortName() {
+        return serialPortName;
+    }
+
+    /**
+     * Returns the device address that is sent in the request message.
+     *
+     * @return the device address
+     */
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    public final DataOutputStream getOutputStream() {
+        return os;
+    }
+
+    public final DataInputStream getInputStream() {
+        return is;
+    }
+
+    /**
+     * Closes this communication port. Also closes the associated serial port, input stream and output stream.
+     * <p>
+     * The port cannot be opened again but has to be recreated.
+     */
+    public void close() {
         closed = true;
+        requestQueue.close();
+        ModeDReceiver receiver = this.receiver;
+        if (receiver != null) {
+            receiver.stopRunning();
+        }
+        connectionState = ConnectionState.CLOSED;
         try {
             serialPort.close();
         } catch (IOException e) {
@@ -352,6 +1066,9 @@ public class Iec21Port {
      * Requests a data message from the remote device using IEC 62056-21 Mode A, B or C. The data message received is
      * parsed and returned. The returned data message also contains some information fields from the identification
      * message sent by the meter.
+     * <p>
+     * This method may be called by several threads at the same time. The reads are performed one after another, see
+     * {@link #read(ReadPriority, int)}.
      *
      * @return The response data message.
      * @throws IOException
@@ -360,11 +1077,458 @@ public class Iec21Port {
      *             if a timeout is thrown while waiting for the meter response
      */
     public DataMessage read() throws IOException, InterruptedIOException {
+        return readWithVisitor(requestMessage, null, ReadPriority.NORMAL, 0);
+    }
+
+    /**
+     * Requests meter data from the meter with the given device address and returns the response. See {@link #read()}.
+     * <p>
+     * This allows to read all meters connected to a multi-drop bus (e.g. RS-485) through a single port. The request
+     * message of every device address is encoded once and reused for later reads.
+     *
+     * @param deviceAddress
+     *            the device address of the meter to read. It overrides the device address set with
+     *            {@link Builder#setDeviceAddress(String)} for this read only.
+     * @return The response data message.
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if a timeout is thrown while waiting for the meter response
+     */
+    public DataMessage read(String deviceAddress) throws IOException, InterruptedIOException {
+        return readWithVisitor(requestMessage(deviceAddress), null, ReadPriority.NORMAL, 0);
+    }
+
+    /**
+     * Requests meter data from the meter with the given device address with the given priority and returns the
+     * response. See {@link #read(String)} and {@link #read(ReadPriority, int)}.
+     *
+     * @param deviceAddress
+     *            the device address of the meter to read
+     * @param priority
+     *            the priority of the read
+     * @param queueTimeout
+     *            the maximum time in ms to wait for the port to become available. Zero means no limit.
+     * @return The response data message.
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if a timeout is thrown while waiting for the port or the meter response
+     */
+    public DataMessage read(String deviceAddress, ReadPriority priority, int queueTimeout)
+            throws IOException, InterruptedIOException {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority may not be NULL");
+        }
+        return readWithVisitor(requestMessage(deviceAddress), null, priority, queueTimeout);
+    }
+
+    private RequestMessage requestMessage(String deviceAddress) {
+        if (deviceAddress == null) {
+            throw new IllegalArgumentException("deviceAddress may not be NULL");
+        }
+        RequestMessage requestMessage = requestMessages.get(deviceAddress);
+        if (requestMessage == null) {
+            requestMessage = new RequestMessage(deviceAddress, requestStartCharacters);
+            RequestMessage existing = requestMessages.putIfAbsent(deviceAddress, requestMessage);
+            if (existing != null) {
+                requestMessage = existing;
+            }
+        }
+        return requestMessage;
+    }
+
+    /**
+     * Requests meter data with the given priority and returns the response. See {@link #read()}.
+     * <p>
+     * While the port is used by another thread, the read waits. Waiting reads are started in the order of their
+     * priority, reads of equal priority in the order of their queue deadlines, and otherwise in the order they were
+     * requested. Reads without a queue timeout come after reads of equal priority with a queue timeout.
+     *
+     * @param priority
+     *            the priority of the read
+     * @param queueTimeout
+     *            the maximum time in ms to wait for the port to become available. Zero means no limit.
+     * @return The response data message.
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if a timeout is thrown while waiting for the port or the meter response
+     */
+    public DataMessage read(ReadPriority priority, int queueTimeout) throws IOException, InterruptedIOException {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority may not be NULL");
+        }
+        return readWithVisitor(requestMessage, null, priority, queueTimeout);
+    }
+
+    /**
+     * Requests meter data and passes each data set of the response to the given visitor as soon as it has been
+     * received.
+     * <p>
+     * Unlike {@link #read()} the data sets are not collected, so the memory used does not depend on the size of the
+     * readout and the data sets can be processed while the remaining data is still being transferred. A data message
+     * whose block check character does not match is not reported by an exception but by
+     * {@link DataSetVisitor#endDataMessage(boolean)}.
+     *
+     * @param visitor
+     *            the visitor for the data sets received
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if a timeout is thrown while waiting for the meter response
+     */
+    public void read(DataSetVisitor visitor) throws IOException, InterruptedIOException {
+        if (visitor == null) {
+            throw new IllegalArgumentException("visitor may not be NULL");
+        }
+        readWithVisitor(requestMessage, visitor, ReadPriority.NORMAL, 0);
+    }
+
+    /**
+     * Requests meter data and returns the response, aborting the read when the given deadline expires. See
+     * {@link #read()}.
+     * <p>
+     * The deadline limits the total time of the read, including the time spent waiting for the port if it is used by
+     * another thread. The read can also be aborted by interrupting the reading thread or by calling
+     * {@link #abortRead()}. After an aborted or failed read the baud rate is reset and bytes still arriving from the
+     * meter are discarded, so the port can be used for the next read immediately.
+     *
+     * @param deadline
+     *            the deadline of the read
+     * @return The response data message.
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if the deadline expires, the read is aborted or a timeout is thrown while waiting for the meter
+     *             response
+     */
+    public DataMessage read(Deadline deadline) throws IOException, InterruptedIOException {
+        if (deadline == null) {
+            throw new IllegalArgumentException("deadline may not be NULL");
+        }
+        return readWithVisitor(requestMessage, null, ReadPriority.NORMAL, 0, deadline);
+    }
+
+    /**
+     * Requests meter data from the meter with the given device address and returns the response, aborting the read
+     * when the given deadline expires. See {@link #read(String)} and {@link #read(Deadline)}.
+     *
+     * @param deviceAddress
+     *            the device address of the meter to read
+     * @param deadline
+     *            the deadline of the read
+     * @return The response data message.
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if the deadline expires, the read is aborted or a timeout is thrown while waiting for the meter
+     *             response
+     */
+    public DataMessage read(String deviceAddress, Deadline deadline) throws IOException, InterruptedIOException {
+        if (deadline == null) {
+            throw new IllegalArgumentException("deadline may not be NULL");
+        }
+        return readWithVisitor(requestMessage(deviceAddress), null, ReadPriority.NORMAL, 0, deadline);
+    }
+
+    /**
+     * Aborts the read that is currently in progress, if any. The aborted read throws an {@link InterruptedIOException}.
+     * A read that is waiting for the meter is aborted by closing the serial port, which is reopened before the port is
+     * used again. Reads that are waiting for the port are not affected.
+     */
+    public void abortRead() {
+        synchronized (readLock) {
+            if (readingThread != null) {
+                timeoutInputStream.cancel();
+            }
+        }
+    }
+
+    private DataMessage readWithVisitor(RequestMessage requestMessage, DataSetVisitor visitor, ReadPriority priority,
+            int queueTimeout) throws IOException {
+        return readWithVisitor(requestMessage, visitor, priority, queueTimeout, null);
+    }
+
+    private DataMessage readWithVisitor(RequestMessage requestMessage, DataSetVisitor visitor, ReadPriority priority,
+            int queueTimeout, Deadline deadline) throws IOException {
+        Ticket ticket = beginExchange(priority, queueTimeout, deadline);
+        boolean failed = true;
+        try {
+            DataMessage dataMessage = readWithinDeadline(requestMessage, visitor);
+            failed = false;
+            return dataMessage;
+        } finally {
+            endExchange(ticket, failed);
+        }
+    }
+
+    /**
+     * Waits for exclusive use of the port and prepares it for a message exchange in modes A, B or C.
+     */
+    private Ticket beginExchange(ReadPriority priority, int queueTimeout, Deadline deadline) throws IOException {
 
         if (isClosed()) {
             throw new IOException("Port is closed");
         }
+        if (receiver != null) {
+            throw new IOException("Port is listening for mode D messages");
+        }
+
+        if (deadline != null) {
+            queueTimeout = (int) Math.min((queueTimeout == 0) ? Integer.MAX_VALUE : queueTimeout,
+                    remainingTime(deadline));
+        }
+        Ticket ticket = requestQueue.acquire(priority.ordinal(), queueTimeout);
+        if (receiver != null) {
+            requestQueue.release(ticket);
+            throw new IOException("Port is listening for mode D messages");
+        }
+        try {
+            reopenIfCancelled(initialBaudRateModeABC);
+        } catch (IOException e) {
+            requestQueue.release(ticket);
+            throw e;
+        }
+
+        synchronized (readLock) {
+            readingThread = Thread.currentThread();
+        }
+        int exchangeDeadline = readoutDeadline;
+        if (deadline != null) {
+            long remaining = deadline.remaining();
+            if (remaining <= 0) {
+                remaining = 1;
+            }
+            exchangeDeadline = (int) Math.min((exchangeDeadline == 0) ? Integer.MAX_VALUE : exchangeDeadline,
+                    remaining);
+        }
+        timeoutInputStream.setDeadline(exchangeDeadline);
+        return ticket;
+    }
+
+    private static long remainingTime(Deadline deadline) throws InterruptedIOException {
+        long remaining = deadline.remaining();
+        if (remaining <= 0) {
+            throw new InterruptedIOException("Deadline expired before the read could start.");
+        }
+        return remaining;
+    }
 
+    private void endExchange(Ticket ticket, boolean discardResponse) {
+        try {
+            finishExchange(discardResponse, initialBaudRateModeABC);
+        } finally {
+            requestQueue.release(ticket);
+        }
+    }
+
+    /**
+     * Clears the state of a message exchange and sets the given baud rate. Discards the rest of the meter response if
+     * the exchange failed or the meter is known to be still sending.
+     */
+    private void finishExchange(boolean discardResponse, int baudRate) {
+        timeoutInputStream.setDeadline(0);
+        synchronized (readLock) {
+            readingThread = null;
+            timeoutInputStream.clearCancel();
+        }
+        if (serialPort.isClosed()) {
+            try {
+                reopenIfCancelled(baudRate);
+            } catch (IOException e) {
+                // retried before the port is used again
+            }
+            return;
+        }
+        if (serialPort.getBaudRate() != baudRate && !isClosed()) {
+            try {
+                serialPort.setBaudRate(baudRate);
+            } catch (IOException e) {
+                // the exception that aborted the read is more relevant
+            }
+        }
+        if (discardResponse && !isClosed()) {
+            // the meter may still be sending the rest of its response
+            try {
+                int numBytesDiscarded = timeoutInputStream.drain(DRAIN_QUIET_TIME, DRAIN_MAX_TIME);
+                if (verbose && numBytesDiscarded > 0) {
+                    Helper.debug("Discarded ", numBytesDiscarded, " bytes of the meter response");
+                }
+            } catch (IOException e) {
+                // the exception that aborted the read is more relevant
+            }
+        }
+    }
+
+    /**
+     * Requests the identification message of the meter with the given device address without reading its data.
+     * Afterwards a break message is sent so that the meter returns to its initial state immediately. Meters using mode
+     * A or B send their data right after the identification message regardless of the break message, so the rest of
+     * their response is discarded before the port is used again.
+     * <p>
+     * This allows to find out quickly whether a meter is present and which protocol mode and baud rate it supports.
+     * Set a short identification timeout using {@link Builder#setIdentificationTimeout(int)} to detect absent meters
+     * quickly.
+     *
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the identification of the meter
+     * @throws IOException
+     *             if any kind of IO error occurs
+     * @throws InterruptedIOException
+     *             if a timeout is thrown while waiting for the meter response
+     */
+    public MeterIdentification identify(String deviceAddress) throws IOException, InterruptedIOException {
+        RequestMessage requestMessage = requestMessage(deviceAddress);
+        Ticket ticket = beginExchange(ReadPriority.NORMAL, 0, null);
+        boolean discardResponse = true;
+        try {
+            prepareExchange();
+            long requestedAt = System.nanoTime();
+            IdentificationMessage identificationMessage = requestIdentification(requestMessage);
+            int responseTime = (int) ((System.nanoTime() - requestedAt) / 1000000);
+
+            if (verbose) {
+                Helper.debug("Sending break message");
+            }
+            BreakMessage.send(os);
+
+            discardResponse = identificationMessage.getProtocolMode() != ProtocolMode.C;
+            return new MeterIdentification(serialPortName, initialBaudRateModeABC, requestStartCharacters,
+                    deviceAddress, identificationMessage, responseTime);
+        } finally {
+            endExchange(ticket, discardResponse);
+        }
+    }
+
+    /**
+     * Requests meter data asynchronously. The read is performed by the executor set with
+     * {@link Builder#setReadExecutor(Executor)}.
+     * <p>
+     * Cancelling the returned future with <code>mayInterruptIfRunning</code> set to true aborts a running message
+     * exchange within a few milliseconds. The port is left at the initial baud rate and can be used for the next read
+     * immediately.
+     *
+     * @return the future data message. {@link Future#get()} throws an {@link ExecutionException} caused by an
+     *         {@link IOException} if the read fails.
+     */
+    public Future<DataMessage> readAsync() {
+        return readAsync(null);
+    }
+
+    /**
+     * Requests meter data asynchronously and passes the result to the given callback. See {@link #readAsync()}.
+     *
+     * @param callback
+     *            the callback that is called when the read has completed, may be null
+     * @return the future data message
+     */
+    public Future<DataMessage> readAsync(ReadCallback callback) {
+        return readAsync(ReadPriority.NORMAL, callback);
+    }
+
+    /**
+     * Requests meter data asynchronously with the given priority and passes the result to the given callback. See
+     * {@link #readAsync()} and {@link #read(ReadPriority, int)}.
+     *
+     * @param priority
+     *            the priority of the read
+     * @param callback
+     *            the callback that is called when the read has completed, may be null
+     * @return the future data message
+     */
+    public Future<DataMessage> readAsync(final ReadPriority priority, ReadCallback callback) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority may not be NULL");
+        }
+        ReadTask task = new ReadTask(new Callable<DataMessage>() {
+            @Override
+            public DataMessage call() throws IOException {
+                return readWithVisitor(requestMessage, null, priority, 0);
+            }
+        }, callback);
+        if (readExecutor == null) {
+            DefaultReadExecutor.executor.execute(task);
+        }
+        else {
+            readExecutor.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Requests meter data in mode A, B or C while the port is listening for mode D messages, for meters that push mode
+     * D messages and answer requests on the same interface.
+     * <p>
+     * The read is run by the mode D receiver between two pushed messages: the receiver measures the interval between
+     * the messages and the duration of previous reads and starts the read once the meter is silent and the read is
+     * expected to complete before the next message. Afterwards the baud rate for mode D is restored and listening
+     * resumes. A read that does not fit into any gap is started in the next gap after the given maximum delay, in which
+     * case a pushed message may be lost.
+     * <p>
+     * The callback is called by the mode D receiver thread and should return quickly. Reads that have not been started
+     * when listening is stopped fail with an {@link InterruptedIOException}: it is passed to the callback and is the
+     * cause of the {@link ExecutionException} thrown by {@link Future#get()}.
+     *
+     * @param deviceAddress
+     *            the device address of the meter, an empty string for none
+     * @param maxDelay
+     *            the maximum time in ms to wait for a gap that is long enough for the read
+     * @param callback
+     *            the callback that is called when the read has completed, may be null
+     * @return the future data message
+     * @throws IOException
+     *             if the port is not listening for mode D messages
+     */
+    public Future<DataMessage> readWhileListening(String deviceAddress, int maxDelay, ReadCallback callback)
+            throws IOException {
+        final RequestMessage requestMessage = requestMessage(deviceAddress);
+        ModeDReceiver receiver = this.receiver;
+        if (receiver == null) {
+            throw new IOException("Port is not listening for mode D messages");
+        }
+        ReadTask task = new ReadTask(new Callable<DataMessage>() {
+            @Override
+            public DataMessage call() throws IOException {
+                return readInGap(requestMessage);
+            }
+        }, callback);
+        receiver.addGapRead(new GapRead(task, System.nanoTime() + maxDelay * 1000000L));
+        return task;
+    }
+
+    /**
+     * Performs a message exchange in modes A, B or C on the mode D receiver thread, which owns the port while
+     * listening.
+     */
+    private DataMessage readInGap(RequestMessage requestMessage) throws IOException {
+        synchronized (readLock) {
+            readingThread = Thread.currentThread();
+        }
+        timeoutInputStream.setDeadline(readoutDeadline);
+        boolean failed = true;
+        try {
+            DataMessage dataMessage = readWithinDeadline(requestMessage, null);
+            failed = false;
+            return dataMessage;
+        } finally {
+            finishExchange(failed, initialBaudRateModeD);
+        }
+    }
+
+    private void cancelRead(Thread thread) {
+        synchronized (readLock) {
+            if (readingThread == thread) {
+                timeoutInputStream.cancel();
+            }
+        }
+    }
+
+    /**
+     * Resets the baud rate and discards stale input before a new message exchange.
+     */
+    private void prepareExchange() throws IOException {
         if (serialPort.getBaudRate() != initialBaudRateModeABC) {
             if (verbose) {
                 Helper.debug("Changing baud rate from ", serialPort.getBaudRate(), " to ", initialBaudRateModeABC);
@@ -380,13 +1544,16 @@ public class Iec21Port {
                 Helper.debug("Cleared input stream. Bytes read from stream: ", bytesInStream);
             }
         }
+    }
 
+    private IdentificationMessage requestIdentification(RequestMessage requestMessage) throws IOException {
         // select message
         if (!selectMessage.isEmpty()) {
             selectMessage.send(os);
             if (verbose) {
                Helper.debug("Sending ", selectMessage.toString());
             }
+            timeoutInputStream.startPhase(selectReplyTimeout, interByteTimeoutModeABC);
             SelectReplyMessage replyMessage = new SelectReplyMessage(is);
             if (verbose) {
                 Helper.debug("Received ", replyMessage.toString());
@@ -402,11 +1569,49 @@ public class Iec21Port {
             Helper.debug("Sending ", requestMessage.toString());
         }
 
+        timeoutInputStream.startPhase(identificationTimeout, interByteTimeoutModeABC);
         IdentificationMessage identificationMessage = new IdentificationMessage(is);
         if (verbose) {
             Helper.debug("Received ", identificationMessage.toString());
         }
+        return identificationMessage;
+    }
+
+    private DataMessage readWithinDeadline(RequestMessage requestMessage, DataSetVisitor visitor)
+            throws IOException {
+
+        prepareExchange();
+        IdentificationMessage identificationMessage = requestIdentification(requestMessage);
 
+        ManufacturerProfile profile = null;
+        if (manufacturerProfiles != null) {
+            profile = manufacturerProfiles.get(identificationMessage.getManufactureId());
+            if (verbose && profile != null) {
+                Helper.debug("Applying manufacturer profile for ", profile.getManufacturerId());
+            }
+        }
+        boolean fixedBaudRate = this.fixedBaudRate;
+        char acknowledgeMode = this.acknowledgeMode;
+        BaudRateChangeDelay baudRateChangeDelay = this.baudRateChangeDelay;
+        int dataTimeout = this.dataTimeout;
+        int interByteTimeout = interByteTimeoutModeABC;
+        Set<String> registers = null;
+        if (profile != null) {
+            if (profile.getFixedBaudRate() != null) {
+                fixedBaudRate = profile.getFixedBaudRate();
+            }
+            if (profile.getAcknowledgeMode() != null) {
+                acknowledgeMode = profile.getAcknowledgeMode();
+            }
+            if (profile.getBaudRateChangeDelay() != -1) {
+                baudRateChangeDelay = profileBaudRateChangeDelay(profile);
+            }
+            dataTimeout = timeoutOrDefault(profile.getDataTimeout(), dataTimeout);
+            interByteTimeout = timeoutOrDefault(profile.getInterByteTimeout(), interByteTimeout);
+            registers = profile.getRegisters();
+        }
+
+        boolean baudRateChangeDelayed = false;
         if (identificationMessage.getProtocolMode() == ProtocolMode.C) {
             int baudRate = identificationMessage.getBaudRate();
             if (fixedBaudRate) {
@@ -420,13 +1625,12 @@ public class Iec21Port {
                 Helper.debug("Sending ", acknowledgeMessage.toString());
             }
             acknowledgeMessage.send(os);
-            if (!fixedBaudRate && baudRateChangeDelay > 0) {
+            long sentAt = System.nanoTime();
+            if (!fixedBaudRate) {
+                baudRateChangeDelayed = baudRate != serialPort.getBaudRate();
+                long slept = baudRateChangeDelay.await(acknowledgeMessage.length(), serialPort.getBaudRate(), sentAt);
                 if (verbose) {
-                    Helper.debug("Sleeping for : ", baudRateChangeDelay, "ms before changing the baud rate");
-                }
-                try {
-                    Thread.sleep(baudRateChangeDelay);
-                } catch (InterruptedException e) {
+                    Helper.debug("Slept for ", slept, "ms before changing the baud rate");
                 }
             }
         }
@@ -440,7 +1644,35 @@ public class Iec21Port {
             serialPort.setBaudRate(identificationMessage.getBaudRate());
         }
 
-        DataMessage dataMessage = DataMessage.readModeAbcDataMessage(is, identificationMessage);
+        timeoutInputStream.startPhase(dataTimeout, interByteTimeout);
+        DataMessage dataMessage = null;
+        boolean bccValid = true;
+        try {
+            if (visitor == null) {
+                dataMessage = DataMessage.readModeAbcDataMessage(is, identificationMessage, registers);
+            }
+            else {
+                if (registers != null) {
+                    visitor = new RegisterFilter(visitor, registers);
+                }
+                bccValid = DataMessage.readModeAbcDataMessage(is, identificationMessage, visitor);
+            }
+        } catch (IOException e) {
+            // a cancelled or interrupted read says nothing about the delay
+            if (baudRateChangeDelayed
+                    && (!(e instanceof InterruptedIOException) || e instanceof SerialPortTimeoutException)) {
+                baudRateChangeDelay.responseInvalid();
+            }
+            throw e;
+        }
+        if (baudRateChangeDelayed) {
+            if (bccValid) {
+                baudRateChangeDelay.responseValid();
+            }
+            else {
+                baudRateChangeDelay.responseInvalid();
+            }
+        }
         if (verbose) {
             Helper.debug("Received data message.");
         }
@@ -455,6 +1687,51 @@ public class Iec21Port {
         return dataMessage;
     }
 
+    private BaudRateChangeDelay profileBaudRateChangeDelay(ManufacturerProfile profile) {
+        String key = profile.getManufacturerId() + ':' + profile.getBaudRateChangeDelay();
+        BaudRateChangeDelay delay = profileBaudRateChangeDelays.get(key);
+        if (delay == null) {
+            delay = new BaudRateChangeDelay(serialPortName + ':' + profile.getManufacturerId(),
+                    profile.getBaudRateChangeDelay(), baudRateChangeCalibration);
+            BaudRateChangeDelay existing = profileBaudRateChangeDelays.putIfAbsent(key, delay);
+            if (existing != null) {
+                delay = existing;
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Passes on the data sets whose address is contained in the given set only.
+     */
+    private static class RegisterFilter implements DataSetVisitor {
+
+        private final DataSetVisitor visitor;
+        private final Set<String> registers;
+
+        private RegisterFilter(DataSetVisitor visitor, Set<String> registers) {
+            this.visitor = visitor;
+            this.registers = registers;
+        }
+
+        @Override
+        public void startDataMessage(String manufacturerId, String meterId, String enhancedId) {
+            visitor.startDataMessage(manufacturerId, meterId, enhancedId);
+        }
+
+        @Override
+        public void visitDataSet(DataSet dataSet) {
+            if (registers.contains(dataSet.getAddress())) {
+                visitor.visitDataSet(dataSet);
+            }
+        }
+
+        @Override
+        public void endDataMessage(boolean bccValid) {
+            visitor.endDataMessage(bccValid);
+        }
+    }
+
     /**
      * Returns true if this port has been closed.
      *
@@ -464,30 +1741,124 @@ public class Iec21Port {
         return closed;
     }
 
+    /**
+     * Returns the state of the serial port connection.
+     *
+     * @return the connection state
+     */
+    public ConnectionState getConnectionState() {
+        return connectionState;
+    }
+
     /**
      * Listen for mode D messages.
+     * <p>
+     * If another thread is reading from the port, listening starts after that read has completed. Reads requested
+     * while listening fail, use {@link #readWhileListening(String, int, ReadCallback)} instead.
+     * <p>
+     * If the serial port is lost while listening (e.g. because the USB adapter was unplugged), the port tries to reopen
+     * it with an increasing delay until it succeeds or listening is stopped.
      *
      * @param listener
      *            A listener for mode D messages
      * @throws IOException
-     *             throws IOException
+     *             if the port is closed or already listening
      */
     public void listen(ModeDListener listener) throws IOException {
+        listen(listener, null);
+    }
+
+    /**
+     * Listen for mode D messages using a thread provided by the given executor. This allows to share a thread pool
+     * between many ports. The executor has to provide a thread that is dedicated to this port until
+     * {@link #stopListening()} or {@link #close()} is called.
+     *
+     * @param listener
+     *            A listener for mode D messages
+     * @param executor
+     *            the executor that runs the receiver. If null a thread is created using the thread factory of this
+     *            port.
+     * @throws IOException
+     *             if the port is closed or already listening
+     */
+    public void listen(ModeDListener listener, Executor executor) throws IOException {
+
+        if (isClosed()) {
+            throw new IOException("Port is closed");
+        }
+        if (receiver != null) {
+            throw new IOException("Port is already listening for mode D messages");
+        }
+
+        Ticket ticket = requestQueue.acquire(ReadPriority.HIGH.ordinal(), 0);
+        try {
+            if (receiver != null) {
+                throw new IOException("Port is already listening for mode D messages");
+            }
+            reopenIfCancelled(initialBaudRateModeD);
+
+            if (serialPort.getBaudRate() != initialBaudRateModeD) {
+                if (verbose) {
+                    Helper.debug("Changing baud rate from ", serialPort.getBaudRate(), " to ", initialBaudRateModeD);
+                }
+                serialPort.setBaudRate(initialBaudRateModeD);
+            }
 
-        serialPort.setSerialPortTimeout(0);
-        if (serialPort.getBaudRate() != initialBaudRateModeD) {
             if (verbose) {
-                Helper.debug("Changing baud rate from ", serialPort.getBaudRate(), " to ", initialBaudRateModeD);
+                Helper.debug("Starting to listen for mode D messages");
             }
-            serialPort.setBaudRate(initialBaudRateModeD);
+            ModeDReceiver receiver = new ModeDReceiver(listener);
+            receiver.ticket = ticket;
+            this.receiver = receiver;
+            try {
+                if (executor == null) {
+                    threadFactory.newThread(receiver).start();
+                }
+                else {
+                    executor.execute(receiver);
+                }
+            } catch (RuntimeException e) {
+                this.receiver = null;
+                throw new IOException("Failed to start the mode D receiver: " + e.getMessage(), e);
+            }
+        } catch (IOException | RuntimeException e) {
+            requestQueue.release(ticket);
+            throw e;
         }
+    }
 
-        this.listener = listener;
-
+    /**
+     * Stop listening for mode D messages. Returns after the listener has been called for the last time, unless it is
+     * called by the listener itself. The port can be used to read or to listen again afterwards.
+     */
+    public void stopListening() {
+        ModeDReceiver receiver = this.receiver;
+        if (receiver == null) {
+            return;
+        }
+        receiver.stopRunning();
+        if (!receiver.isCurrentThread()) {
+            try {
+                receiver.finished.await();
+                if (receiver.parser != null) {
+                    // messages received before may still be parsed or waiting for delivery
+                    receiver.parser.awaitDelivery();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        timeoutInputStream.clearCancel();
+        try {
+            reopenIfCancelled(initialBaudRateModeABC);
+        } catch (IOException e) {
+            // retried before the port is used again
+        }
+        this.receiver = null;
+        requestQueue.release(receiver.ticket);
         if (verbose) {
-            Helper.debug("Starting to listen for mode D messages");
+            Helper.debug("Stopped listening for mode D messages");
         }
-        new ModeDReceiver().start();
     }
 
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link Iec21Port}s open between uses so that short-lived users do not have to open the serial port for every
+ * read.
+ * <p>
+ * Ports are identified by their serial port name and leased to one user at a time. A port that has not been leased
+ * for the idle timeout is closed. A port that is found closed or that a user has marked as broken is replaced by a
+ * newly opened port on the next lease.
+ *
+ */
+public class Iec21PortPool {
+
+    private final PortFactory portFactory;
+    private final int idleTimeout;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+    private boolean closed = false;
+
+    /**
+     * Opens the ports of a pool.
+     *
+     */
+    public interface PortFactory {
+
+        /**
+         * Builds and opens a port.
+         *
+         * @param serialPortName
+         *            the serial port name
+         * @return the opened port
+         * @throws IOException
+         *             if the port cannot be opened
+         */
+        Iec21Port open(String serialPortName) throws IOException;
+
+    }
+
+    private static class Entry {
+
+        private Iec21Port port = null;
+        // also true while the port of the entry is being closed, so it is not opened again before
+        private boolean leased = false;
+        private long lastReleased = 0;
+    }
+
+    /**
+     * The exclusive use of a port of the pool. Close the lease to return the port to the pool.
+     *
+     */
+    public class Lease implements Closeable {
+
+        private final String serialPortName;
+        private final Entry entry;
+        private final Iec21Port port;
+        private boolean broken = false;
+        private boolean released = false;
+
+        private Lease(String serialPortName, Entry entry, Iec21Port port) {
+            this.serialPortName = serialPortName;
+            this.entry = entry;
+            this.port = port;
+        }
+
+        /**
+         * Returns the leased port.
+         *
+         * @return the port
+         */
+        public Iec21Port getPort() {
+            return port;
+        }
+
+        /**
+         * Marks the port as broken, e.g. after an unexpected I/O error. The port is closed when the lease is closed
+         * and a new port is opened for the next lease.
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        /**
+         * Returns the port to the pool.
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    /**
+     * Creates a pool whose ports are opened with the default settings of {@link Iec21Port.Builder}.
+     *
+     * @param idleTimeout
+     *            the time in ms after which a port that has not been leased is closed
+     */
+    public Iec21PortPool(int idleTimeout) {
+        this(new PortFactory() {
+            @Override
+            public Iec21Port open(String serialPortName) throws IOException {
+                return new Iec21Port.Builder(serialPortName).buildAndOpen();
+            }
+        }, idleTimeout);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param portFactory
+     *            the factory that opens the ports
+     * @param idleTimeout
+     *            the time in ms after which a port that has not been leased is closed
+     */
+    public Iec21PortPool(PortFactory portFactory, int idleTimeout) {
+        if (portFactory == null) {
+            throw new IllegalArgumentException("portFactory may not be NULL");
+        }
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("idleTimeout must be at least 1");
+        }
+        this.portFactory = portFactory;
+        this.idleTimeout = idleTimeout;
+        evictor = Executors
+                .newSingleThreadScheduledExecutor(ThreadFactories.platformThreadFactory("j62056-pool-evictor-", true));
+        long period = Math.max(idleTimeout / 2, 1);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdlePorts();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases the port with the given serial port name, opening it if necessary. Waits while the port is leased by
+     * another user.
+     *
+     * @param serialPortName
+     *            the serial port name
+     * @param timeout
+     *            the maximum time in ms to wait for the port. Zero means no limit.
+     * @return the lease
+     * @throws InterruptedIOException
+     *             if the timeout elapses or the thread is interrupted while waiting
+     * @throws IOException
+     *             if the pool is closed or the port cannot be opened
+     */
+    public Lease acquire(String serialPortName, int timeout) throws IOException {
+        Entry entry;
+        Iec21Port port;
+        synchronized (this) {
+            long deadline = System.nanoTime() + timeout * 1000000L;
+            while (true) {
+                if (closed) {
+                    throw new IOException("Pool is closed");
+                }
+                entry = entries.get(serialPortName);
+                if (entry == null) {
+                    entry = new Entry();
+                    entries.put(serialPortName, entry);
+                }
+                if (!entry.leased) {
+                    break;
+                }
+                try {
+                    if (timeout == 0) {
+                        wait();
+                    }
+                    else {
+                        long remaining = (deadline - System.nanoTime()) / 1000000;
+                        if (remaining <= 0) {
+                            throw new InterruptedIOException("Timed out waiting for port " + serialPortName);
+                        }
+                        wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for port " + serialPortName);
+                }
+            }
+            entry.leased = true;
+            port = entry.port;
+            entry.port = null;
+        }
+
+        // open outside of the lock because opening a serial port may take a while
+        if (port != null && port.isClosed()) {
+            port = null;
+        }
+        if (port == null) {
+            try {
+                port = portFactory.open(serialPortName);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    entry.leased = false;
+                    entries.remove(serialPortName);
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+        return new Lease(serialPortName, entry, port);
+    }
+
+    private void release(Lease lease) {
+        Entry entry = lease.entry;
+        synchronized (this) {
+            if (lease.released) {
+                return;
+            }
+            lease.released = true;
+            if (!closed && !lease.broken && !lease.port.isClosed()) {
+                entry.port = lease.port;
+                entry.lastReleased = System.nanoTime();
+                entry.leased = false;
+                notifyAll();
+                return;
+            }
+        }
+        // the entry stays leased until the port is closed, so the serial port is not opened twice
+        lease.port.close();
+        removeClosedEntry(lease.serialPortName, entry);
+    }
+
+    private synchronized void removeClosedEntry(String serialPortName, Entry entry) {
+        entry.leased = false;
+        if (entries.get(serialPortName) == entry) {
+            entries.remove(serialPortName);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Closes all ports that have not been leased for the idle timeout. Called periodically by the pool.
+     */
+    public void evictIdlePorts() {
+        Map<String, Entry> entriesToClose = new HashMap<>();
+        List<Iec21Port> portsToClose = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                if (!entry.leased && entry.port != null && (now - entry.lastReleased) / 1000000 >= idleTimeout) {
+                    entriesToClose.put(mapEntry.getKey(), entry);
+                    portsToClose.add(entry.port);
+                    entry.port = null;
+                    entry.leased = true;
+                }
+            }
+        }
+        for (Iec21Port port : portsToClose) {
+            port.close();
+        }
+        for (Map.Entry<String, Entry> mapEntry : entriesToClose.entrySet()) {
+            removeClosedEntry(mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of ports that are open and not leased.
+     *
+     * @return the number of idle ports
+     */
+    public synchronized int getNumIdlePorts() {
+        int numIdle = 0;
+        for (Entry entry : entries.values()) {
+            if (!entry.leased && entry.port != null) {
+                numIdle++;
+            }
+        }
+        return numIdle;
+    }
+
+    /**
+     * Closes all idle ports and the pool. Leased ports are closed when their lease is closed.
+     */
+    public void close() {
+        List<Iec21Port> portsToClose = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!entry.leased) {
+                    if (entry.port != null) {
+                        portsToClose.add(entry.port);
+                    }
+                    iterator.remove();
+                }
+            }
+            notifyAll();
+        }
+        evictor.shutdownNow();
+        for (Iec21Port port : portsToClose) {
+            port.close();
+        }
+    }
+
+}
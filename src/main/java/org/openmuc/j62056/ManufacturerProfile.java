@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openmuc.j62056.internal.AcknowledgeMode;
+
+/**
+ * Settings for the meters of one manufacturer that override the settings of an {@link Iec21Port} as soon as the
+ * identification message of such a meter has been received. Settings that are not set are taken from the port. Create
+ * a profile using {@link Builder} and register it with a {@link ManufacturerProfileRegistry}.
+ *
+ */
+public class ManufacturerProfile {
+
+    private final String manufacturerId;
+    private final int baudRateChangeDelay;
+    private final int dataTimeout;
+    private final int interByteTimeout;
+    private final Boolean fixedBaudRate;
+    private final Character acknowledgeMode;
+    private final Set<String> registers;
+
+    /**
+     * A builder for manufacturer profiles.
+     *
+     */
+    public static class Builder {
+
+        private final String manufacturerId;
+        private int baudRateChangeDelay = -1;
+        private int dataTimeout = -1;
+        private int interByteTimeout = -1;
+        private Boolean fixedBaudRate = null;
+        private Character acknowledgeMode = null;
+        private Set<String> registers = null;
+
+        /**
+         * Create a manufacturer profile builder.
+         *
+         * @param manufacturerId
+         *            the three letter manufacturer ID sent in the identification message. Case is ignored.
+         */
+        public Builder(String manufacturerId) {
+            if (manufacturerId == null) {
+                throw new IllegalArgumentException("manufacturerId may not be NULL");
+            }
+            this.manufacturerId = manufacturerId.toUpperCase();
+        }
+
+        /**
+         * See {@link Iec21Port.Builder#setBaudRateChangeDelay(int)}.
+         *
+         * @param baudRateChangeDelay
+         *            the baud rate change delay added to the transmission time
+         * @return the builder
+         */
+        public Builder setBaudRateChangeDelay(int baudRateChangeDelay) {
+            this.baudRateChangeDelay = baudRateChangeDelay;
+            return this;
+        }
+
+        /**
+         * See {@link Iec21Port.Builder#setDataTimeout(int)}.
+         *
+         * @param dataTimeout
+         *            the data timeout
+         * @return the builder
+         */
+        public Builder setDataTimeout(int dataTimeout) {
+            this.dataTimeout = dataTimeout;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in ms to wait for the next byte of the data message. See
+         * {@link Iec21Port.Builder#setInterByteTimeout(int)}.
+         *
+         * @param interByteTimeout
+         *            the inter-byte timeout
+         * @return the builder
+         */
+        public Builder setInterByteTimeout(int interByteTimeout) {
+            this.interByteTimeout = interByteTimeout;
+            return this;
+        }
+
+        /**
+         * See {@link Iec21Port.Builder#enableFixedBaudrate(boolean)}.
+         *
+         * @param fixedBaudRate
+         *            if true enable fixed baud rate
+         * @return the builder
+         */
+        public Builder enableFixedBaudrate(boolean fixedBaudRate) {
+            this.fixedBaudRate = fixedBaudRate;
+            return this;
+        }
+
+        /**
+         * See {@link Iec21Port.Builder#setAcknowledgeMode(char)}.
+         *
+         * @param acknowledgeMode
+         *            value for Acknowledge Mode
+         * @return the builder
+         * @throws IllegalArgumentException
+         *             if the character is not an acknowledge mode of IEC 62056-21, i.e. '0' to '9' or 'A' to 'Z'
+         */
+        public Builder setAcknowledgeMode(char acknowledgeMode) {
+            AcknowledgeMode.valueOf(acknowledgeMode);
+            this.acknowledgeMode = acknowledgeMode;
+            return this;
+        }
+
+        /**
+         * Set the addresses of the data sets that are returned. All other data sets of the data message are dropped.
+         * <p>
+         * By default all data sets are returned.
+         *
+         * @param registers
+         *            the addresses of the data sets to return, e.g. "1.8.0"
+         * @return the builder
+         */
+        public Builder setRegisters(Set<String> registers) {
+            this.registers = (registers == null) ? null : new HashSet<>(registers);
+            return this;
+        }
+
+        /**
+         * Build the manufacturer profile.
+         *
+         * @return the manufacturer profile
+         */
+        public ManufacturerProfile build() {
+            return new ManufacturerProfile(this);
+        }
+
+    }
+
+    private ManufacturerProfile(Builder builder) {
+        manufacturerId = builder.manufacturerId;
+        baudRateChangeDelay = builder.baudRateChangeDelay;
+        dataTimeout = builder.dataTimeout;
+        interByteTimeout = builder.interByteTimeout;
+        fixedBaudRate = builder.fixedBaudRate;
+        acknowledgeMode = builder.acknowledgeMode;
+        registers = (builder.registers == null) ? null : Collections.unmodifiableSet(builder.registers);
+    }
+
+    /**
+     * Returns the manufacturer ID in upper case.
+     *
+     * @return the manufacturer ID
+     */
+    public String getManufacturerId() {
+        return manufacturerId;
+    }
+
+    /**
+     * Returns the baud rate change delay or -1 if the delay of the port is used.
+     *
+     * @return the baud rate change delay
+     */
+    public int getBaudRateChangeDelay() {
+        return baudRateChangeDelay;
+    }
+
+    /**
+     * Returns the data timeout or -1 if the timeout of the port is used.
+     *
+     * @return the data timeout
+     */
+    public int getDataTimeout() {
+        return dataTimeout;
+    }
+
+    /**
+     * Returns the inter-byte timeout or -1 if the timeout of the port is used.
+     *
+     * @return the inter-byte timeout
+     */
+    public int getInterByteTimeout() {
+        return interByteTimeout;
+    }
+
+    /**
+     * Returns whether the baud rate is fixed or null if the setting of the port is used.
+     *
+     * @return true if the baud rate is fixed
+     */
+    public Boolean getFixedBaudRate() {
+        return fixedBaudRate;
+    }
+
+    /**
+     * Returns the acknowledge mode character or null if the setting of the port is used.
+     *
+     * @return the acknowledge mode
+     */
+    public Character getAcknowledgeMode() {
+        return acknowledgeMode;
+    }
+
+    /**
+     * Returns the addresses of the data sets that are returned or null if all data sets are returned.
+     *
+     * @return the register addresses
+     */
+    public Set<String> getRegisters() {
+        return registers;
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A set of {@link ManufacturerProfile}s looked up by manufacturer ID. Pass a registry to
+ * {@link Iec21Port.Builder#setManufacturerProfiles(ManufacturerProfileRegistry)} to apply the profiles automatically.
+ * <p>
+ * Profiles can be registered directly or loaded from properties of the form
+ * <code>&lt;manufacturer ID&gt;.&lt;setting&gt;=&lt;value&gt;</code> with the settings baudRateChangeDelay,
+ * dataTimeout, interByteTimeout, fixedBaudRate, acknowledgeMode and registers (a comma separated list of data set
+ * addresses), e.g. <code>LGZ.baudRateChangeDelay=50</code>.
+ *
+ */
+public class ManufacturerProfileRegistry {
+
+    private final ConcurrentMap<String, ManufacturerProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty registry.
+     */
+    public ManufacturerProfileRegistry() {
+    }
+
+    /**
+     * Adds a profile. A profile with the same manufacturer ID is replaced.
+     *
+     * @param profile
+     *            the profile
+     */
+    public void register(ManufacturerProfile profile) {
+        profiles.put(profile.getManufacturerId(), profile);
+    }
+
+    /**
+     * Returns the profile for the given manufacturer ID.
+     *
+     * @param manufacturerId
+     *            the manufacturer ID, case is ignored
+     * @return the profile or null if there is none
+     */
+    public ManufacturerProfile get(String manufacturerId) {
+        return profiles.get(manufacturerId.toUpperCase());
+    }
+
+    /**
+     * Loads profiles from the given properties stream and adds them to this registry, replacing profiles with the
+     * same manufacturer ID.
+     *
+     * @param is
+     *            the properties stream
+     * @throws IOException
+     *             if the stream cannot be read or contains an invalid setting
+     */
+    public void load(InputStream is) throws IOException {
+        Properties properties = new Properties();
+        properties.load(is);
+
+        Map<String, ManufacturerProfile.Builder> builders = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot <= 0) {
+                throw new IOException("Invalid manufacturer profile setting: " + key);
+            }
+            String manufacturerId = key.substring(0, dot).toUpperCase();
+            String setting = key.substring(dot + 1);
+            String value = properties.getProperty(key).trim();
+
+            ManufacturerProfile.Builder builder = builders.get(manufacturerId);
+            if (builder == null) {
+                builder = new ManufacturerProfile.Builder(manufacturerId);
+                builders.put(manufacturerId, builder);
+            }
+
+            try {
+                switch (setting) {
+                case "baudRateChangeDelay":
+                    builder.setBaudRateChangeDelay(Integer.parseInt(value));
+                    break;
+                case "dataTimeout":
+                    builder.setDataTimeout(Integer.parseInt(value));
+                    break;
+                case "interByteTimeout":
+                    builder.setInterByteTimeout(Integer.parseInt(value));
+                    break;
+                case "fixedBaudRate":
+                    builder.enableFixedBaudrate(Boolean.parseBoolean(value));
+                    break;
+                case "acknowledgeMode":
+                    if (value.length() != 1) {
+                        throw new IOException("Invalid acknowledge mode: " + key + "=" + value);
+                    }
+                    try {
+                        builder.setAcknowledgeMode(value.charAt(0));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Invalid acknowledge mode: " + key + "=" + value, e);
+                    }
+                    break;
+                case "registers":
+                    builder.setRegisters(new HashSet<>(Arrays.asList(value.split("\\s*,\\s*"))));
+                    break;
+                default:
+                    throw new IOException("Unknown manufacturer profile setting: " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid manufacturer profile setting: " + key + "=" + value, e);
+            }
+        }
+
+        for (ManufacturerProfile.Builder builder : builders.values()) {
+            register(builder.build());
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Owns a set of {@link Iec21Port}s and shares them between any number of users through the
+ * {@link MeterAccessService} interface.
+ * <p>
+ * Reads are serialised and prioritised by the ports themselves. Concurrent reads of the same meter are coalesced into
+ * one readout using a {@link CachingReader}, which also returns data messages that are younger than the configured
+ * maximum age without accessing the meter. Mode D messages are distributed to all subscribers of a port by a
+ * {@link ModeDPublisher} until {@link #stopListening(String)} is called.
+ *
+ */
+public class MeterAccessManager implements MeterAccessService {
+
+    private static final int MAX_CACHED_METERS = 1024;
+    private static final int MODE_D_BUFFER_SIZE = 16;
+
+    private final Map<String, Iec21Port> ports = new LinkedHashMap<>();
+    private final Map<String, ModeDChannel> channels = new LinkedHashMap<>();
+    private final CachingReader cachingReader;
+    private final int maxAge;
+    private final Executor readExecutor;
+    private final ExecutorService ownReadExecutor;
+    private boolean closed = false;
+
+    /**
+     * The mode D messages of a port. The first subscriber makes the port listen while holding the lock of the channel,
+     * so concurrent subscribers of the same port wait for it without blocking the other ports.
+     */
+    private static class ModeDChannel {
+
+        private final ModeDPublisher publisher = new ModeDPublisher(ModeDPublisher.OverflowPolicy.DROP_OLDEST,
+                MODE_D_BUFFER_SIZE);
+
+        // guarded by this
+        private boolean listening = false;
+        private boolean stopped = false;
+    }
+
+    /**
+     * Creates a meter access manager without ports.
+     *
+     * @param maxAge
+     *            the time in ms a data message is returned again to later reads of the same meter. Zero only shares
+     *            reads that run at the same time.
+     * @param readExecutor
+     *            the executor that performs asynchronous reads. If null a cached thread pool owned by the manager is
+     *            used.
+     */
+    public MeterAccessManager(int maxAge, Executor readExecutor) {
+        this.maxAge = maxAge;
+        cachingReader = new CachingReader(MAX_CACHED_METERS, maxAge);
+        if (readExecutor == null) {
+            ownReadExecutor = Executors
+                    .newCachedThreadPool(ThreadFactories.platformThreadFactory("j62056-meter-access-", true));
+            this.readExecutor = ownReadExecutor;
+        }
+        else {
+            ownReadExecutor = null;
+            this.readExecutor = readExecutor;
+        }
+    }
+
+    /**
+     * Opens a port and adds it to the ports managed.
+     *
+     * @param builder
+     *            the builder of the port
+     * @throws IOException
+     *             if the port cannot be opened or a port with the same serial port name has already been added
+     */
+    public void addPort(Iec21Port.Builder builder) throws IOException {
+        addPort(builder.buildAndOpen());
+    }
+
+    void addPort(Iec21Port port) throws IOException {
+        synchronized (this) {
+            if (!closed && !ports.containsKey(port.getSerialPortName())) {
+                ports.put(port.getSerialPortName(), port);
+                return;
+            }
+        }
+        port.close();
+        throw new IOException("Port " + port.getSerialPortName() + " has already been added or manager is closed");
+    }
+
+    private synchronized Iec21Port getPort(String serialPortName) throws IOException {
+        if (closed) {
+            throw new IOException("Meter access manager is closed");
+        }
+        Iec21Port port = ports.get(serialPortName);
+        if (port == null) {
+            throw new IOException("Unknown port: " + serialPortName);
+        }
+        return port;
+    }
+
+    @Override
+    public synchronized List<String> getSerialPortNames() {
+        return new ArrayList<>(ports.keySet());
+    }
+
+    @Override
+    public DataMessage read(String serialPortName, String deviceAddress, ReadPriority priority) throws IOException {
+        return cachingReader.read(getPort(serialPortName), deviceAddress, priority, maxAge);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cancelling the returned future only ends the wait of this caller. A readout that has already started is
+     * completed, because other callers may share it, and its data message is cached.
+     */
+    @Override
+    public Future<DataMessage> readAsync(final String serialPortName, final String deviceAddress,
+            final ReadPriority priority, final ReadCallback callback) {
+        ReadCallbackTask task = new ReadCallbackTask(new Callable<DataMessage>() {
+            @Override
+            public DataMessage call() throws IOException {
+                return read(serialPortName, deviceAddress, priority);
+            }
+        }, callback) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // interrupting the runner would abort a readout shared with other callers
+                return super.cancel(false);
+            }
+        };
+        readExecutor.execute(task);
+        return task;
+    }
+
+    @Override
+    public void subscribe(String serialPortName, ModeDSubscriber subscriber) throws IOException {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber may not be NULL");
+        }
+        Iec21Port port = getPort(serialPortName);
+        while (true) {
+            ModeDChannel channel;
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Meter access manager is closed");
+                }
+                channel = channels.get(serialPortName);
+                if (channel == null) {
+                    channel = new ModeDChannel();
+                    channels.put(serialPortName, channel);
+                }
+            }
+            synchronized (channel) {
+                if (channel.stopped) {
+                    // stopListening() or close() removed the channel in the meantime
+                    continue;
+                }
+                if (!channel.listening) {
+                    port.listen(channel.publisher);
+                    channel.listening = true;
+                }
+                channel.publisher.subscribe(subscriber);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void stopListening(String serialPortName) throws IOException {
+        Iec21Port port = getPort(serialPortName);
+        ModeDChannel channel;
+        synchronized (this) {
+            channel = channels.remove(serialPortName);
+        }
+        if (channel != null) {
+            stop(channel, port);
+        }
+    }
+
+    private static void stop(ModeDChannel channel, Iec21Port port) {
+        synchronized (channel) {
+            channel.stopped = true;
+            if (channel.listening && port != null) {
+                port.stopListening();
+            }
+            channel.listening = false;
+            channel.publisher.complete();
+        }
+    }
+
+    /**
+     * Closes all ports. Subscribers of mode D messages are completed.
+     */
+    public void close() {
+        List<Iec21Port> portsToClose;
+        List<ModeDChannel> channelsToStop;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            portsToClose = new ArrayList<>(ports.values());
+            channelsToStop = new ArrayList<>(channels.values());
+            ports.clear();
+            channels.clear();
+        }
+        for (Iec21Port port : portsToClose) {
+            port.close();
+        }
+        for (ModeDChannel channel : channelsToStop) {
+            stop(channel, null);
+        }
+        if (ownReadExecutor != null) {
+            ownReadExecutor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Shared access to the meters of a set of ports that are owned by one party, e.g. a {@link MeterAccessManager}. Reads
+ * of the same port are performed one after another in the order of their priority, and concurrent reads of the same
+ * meter share a single readout.
+ *
+ */
+public interface MeterAccessService {
+
+    /**
+     * Returns the names of the serial ports that can be accessed.
+     *
+     * @return the serial port names
+     */
+    List<String> getSerialPortNames();
+
+    /**
+     * Reads a meter.
+     *
+     * @param serialPortName
+     *            the name of the serial port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter, the empty string if none is needed
+     * @param priority
+     *            the priority of the read
+     * @return the data message
+     * @throws IOException
+     *             if the port is unknown or reading the meter fails
+     */
+    DataMessage read(String serialPortName, String deviceAddress, ReadPriority priority) throws IOException;
+
+    /**
+     * Reads a meter asynchronously.
+     *
+     * @param serialPortName
+     *            the name of the serial port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter, the empty string if none is needed
+     * @param priority
+     *            the priority of the read
+     * @param callback
+     *            the callback that is called when the read has completed, may be null
+     * @return the future data message
+     */
+    Future<DataMessage> readAsync(String serialPortName, String deviceAddress, ReadPriority priority,
+            ReadCallback callback);
+
+    /**
+     * Subscribes to the mode D messages received on the given port. The port starts listening with the first
+     * subscription and cannot be read while it is listening.
+     *
+     * @param serialPortName
+     *            the name of the serial port
+     * @param subscriber
+     *            the subscriber
+     * @throws IOException
+     *             if the port is unknown or cannot listen
+     */
+    void subscribe(String serialPortName, ModeDSubscriber subscriber) throws IOException;
+
+    /**
+     * Stops listening for mode D messages on the given port so that it can be read again. All subscribers of the port
+     * are completed after their buffered data messages have been delivered. A single subscriber unsubscribes by
+     * cancelling its {@link ModeDSubscription}. Does nothing if the port is not listening.
+     *
+     * @param serialPortName
+     *            the name of the serial port
+     * @throws IOException
+     *             if the port is unknown
+     */
+    void stopListening(String serialPortName) throws IOException;
+
+}
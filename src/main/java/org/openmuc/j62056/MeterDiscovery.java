@@ -0,0 +1,292 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openmuc.j62056.internal.Helper;
+
+/**
+ * Finds the meters connected to a set of serial ports.
+ * <p>
+ * Every port is probed with every combination of initial baud rate, request start characters and device address.
+ * A probe only requests the identification message using {@link Iec21Port#identify(String)}, so it costs at most the
+ * identification timeout if no meter answers. Once a meter has answered to a device address, the remaining
+ * combinations for that address are skipped. The ports are scanned in parallel, one thread per port. Create a
+ * discovery using {@link Builder}.
+ *
+ */
+public class MeterDiscovery {
+
+    private final Map<String, List<String>> deviceAddresses;
+    private final List<Integer> initialBaudRates;
+    private final List<String> requestStartCharacters;
+    private final int identificationTimeout;
+    private final int baudRateChangeDelay;
+    private final boolean echoSuppression;
+    private final boolean verbose;
+
+    /**
+     * A builder for meter discoveries.
+     *
+     */
+    public static class Builder {
+
+        private final Map<String, List<String>> deviceAddresses = new LinkedHashMap<>();
+        private List<Integer> initialBaudRates = Collections.singletonList(300);
+        private List<String> requestStartCharacters = Collections.singletonList("/?");
+        private int identificationTimeout = 500;
+        private int baudRateChangeDelay = 0;
+        private boolean echoSuppression = false;
+        private boolean verbose = false;
+
+        /**
+         * Adds a serial port to scan for a meter that answers requests without a device address.
+         *
+         * @param serialPortName
+         *            the serial port name, e.g. "/dev/ttyUSB0"
+         * @return the builder
+         */
+        public Builder addPort(String serialPortName) {
+            return addPort(serialPortName, Collections.singletonList(""));
+        }
+
+        /**
+         * Adds a serial port to scan for meters with the given device addresses, e.g. the meters of an RS-485 bus.
+         *
+         * @param serialPortName
+         *            the serial port name, e.g. "/dev/ttyUSB0"
+         * @param deviceAddresses
+         *            the candidate device addresses. The empty string stands for a request without device address.
+         * @return the builder
+         */
+        public Builder addPort(String serialPortName, List<String> deviceAddresses) {
+            if (serialPortName == null || deviceAddresses == null) {
+                throw new IllegalArgumentException("serialPortName and deviceAddresses may not be NULL");
+            }
+            this.deviceAddresses.put(serialPortName, new ArrayList<>(deviceAddresses));
+            return this;
+        }
+
+        /**
+         * Sets the initial baud rates to try, in the given order.
+         * <p>
+         * The default is 300 baud only.
+         *
+         * @param initialBaudRates
+         *            the initial baud rates
+         * @return the builder
+         */
+        public Builder setInitialBaudRates(Integer... initialBaudRates) {
+            this.initialBaudRates = Arrays.asList(initialBaudRates);
+            return this;
+        }
+
+        /**
+         * Sets the request start characters to try, in the given order. See
+         * {@link Iec21Port.Builder#setRequestStartCharacters(String)}.
+         * <p>
+         * The default is "/?" only.
+         *
+         * @param requestStartCharacters
+         *            the request start characters
+         * @return the builder
+         */
+        public Builder setRequestStartCharacters(String... requestStartCharacters) {
+            this.requestStartCharacters = Arrays.asList(requestStartCharacters);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time in ms to wait for the identification message of a meter.
+         * <p>
+         * The default value is 500.
+         *
+         * @param identificationTimeout
+         *            the identification timeout
+         * @return the builder
+         */
+        public Builder setIdentificationTimeout(int identificationTimeout) {
+            this.identificationTimeout = identificationTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the baud rate change delay of the probed ports. See
+         * {@link Iec21Port.Builder#setBaudRateChangeDelay(int)}.
+         *
+         * @param baudRateChangeDelay
+         *            the baud rate change delay
+         * @return the builder
+         */
+        public Builder setBaudRateChangeDelay(int baudRateChangeDelay) {
+            this.baudRateChangeDelay = baudRateChangeDelay;
+            return this;
+        }
+
+        /**
+         * Enable or disable echo suppression on the probed ports. See
+         * {@link Iec21Port.Builder#enableEchoSuppression(boolean)}.
+         *
+         * @param echoSuppression
+         *            if true enable echo suppression
+         * @return the builder
+         */
+        public Builder enableEchoSuppression(boolean echoSuppression) {
+            this.echoSuppression = echoSuppression;
+            return this;
+        }
+
+        /**
+         * Enable or disable verbose output to standard out.
+         *
+         * @param verbose
+         *            if true enable verbose mode
+         * @return the builder
+         */
+        public Builder enableVerboseMode(boolean verbose) {
+            this.verbose = verbose;
+            return this;
+        }
+
+        /**
+         * Builds the meter discovery.
+         *
+         * @return the meter discovery
+         */
+        public MeterDiscovery build() {
+            return new MeterDiscovery(this);
+        }
+
+    }
+
+    private MeterDiscovery(Builder builder) {
+        deviceAddresses = new LinkedHashMap<>(builder.deviceAddresses);
+        initialBaudRates = builder.initialBaudRates;
+        requestStartCharacters = builder.requestStartCharacters;
+        identificationTimeout = builder.identificationTimeout;
+        baudRateChangeDelay = builder.baudRateChangeDelay;
+        echoSuppression = builder.echoSuppression;
+        verbose = builder.verbose;
+    }
+
+    /**
+     * Scans all ports and returns the meters found. Ports that cannot be opened are skipped.
+     *
+     * @return the identifications of the meters found, in the order of the ports
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the scan to complete
+     */
+    public List<MeterIdentification> discover() throws InterruptedException {
+        if (deviceAddresses.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(deviceAddresses.size(),
+                ThreadFactories.platformThreadFactory("j62056-discovery-", true));
+        try {
+            List<Future<List<MeterIdentification>>> futures = new ArrayList<>(deviceAddresses.size());
+            for (final Map.Entry<String, List<String>> entry : deviceAddresses.entrySet()) {
+                futures.add(executor.submit(new Callable<List<MeterIdentification>>() {
+                    @Override
+                    public List<MeterIdentification> call() {
+                        return scanPort(entry.getKey(), entry.getValue());
+                    }
+                }));
+            }
+
+            List<MeterIdentification> meters = new ArrayList<>();
+            for (Future<List<MeterIdentification>> future : futures) {
+                try {
+                    meters.addAll(future.get());
+                } catch (ExecutionException e) {
+                    if (verbose) {
+                        Helper.debug("Scanning failed: ", e.getCause().getMessage());
+                    }
+                }
+            }
+            return meters;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<MeterIdentification> scanPort(String serialPortName, List<String> deviceAddresses) {
+        List<MeterIdentification> meters = new ArrayList<>();
+        Set<String> remaining = new HashSet<>(deviceAddresses);
+
+        for (int initialBaudRate : initialBaudRates) {
+            for (String startCharacters : requestStartCharacters) {
+                if (remaining.isEmpty() || Thread.currentThread().isInterrupted()) {
+                    return meters;
+                }
+
+                Iec21Port port;
+                try {
+                    port = new Iec21Port.Builder(serialPortName).setInitialBaudrate(initialBaudRate)
+                            .setRequestStartCharacters(startCharacters)
+                            .setIdentificationTimeout(identificationTimeout)
+                            .setBaudRateChangeDelay(baudRateChangeDelay)
+                            .enableEchoSuppression(echoSuppression)
+                            .enableVerboseMode(verbose)
+                            .buildAndOpen();
+                } catch (IOException e) {
+                    if (verbose) {
+                        Helper.debug("Skipping port ", serialPortName, ": ", e.getMessage());
+                    }
+                    return meters;
+                }
+
+                try {
+                    for (String deviceAddress : deviceAddresses) {
+                        if (!remaining.contains(deviceAddress)) {
+                            continue;
+                        }
+                        try {
+                            meters.add(port.identify(deviceAddress));
+                            remaining.remove(deviceAddress);
+                        } catch (IOException e) {
+                            if (port.isClosed() || Thread.currentThread().isInterrupted()) {
+                                return meters;
+                            }
+                        }
+                    }
+                } finally {
+                    port.close();
+                }
+            }
+        }
+        return meters;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * A snapshot of the health of a meter as tracked by a {@link MeterHealthTracker}.
+ *
+ */
+public class MeterHealth {
+
+    private final MeterHealthState state;
+    private final int numConsecutiveFailures;
+    private final double failureRate;
+    private final double timeoutRate;
+    private final double bccErrorRate;
+    private final long nextProbe;
+
+    MeterHealth(MeterHealthState state, int numConsecutiveFailures, double failureRate, double timeoutRate,
+            double bccErrorRate, long nextProbe) {
+        this.state = state;
+        this.numConsecutiveFailures = numConsecutiveFailures;
+        this.failureRate = failureRate;
+        this.timeoutRate = timeoutRate;
+        this.bccErrorRate = bccErrorRate;
+        this.nextProbe = nextProbe;
+    }
+
+    public MeterHealthState getState() {
+        return state;
+    }
+
+    public int getNumConsecutiveFailures() {
+        return numConsecutiveFailures;
+    }
+
+    /**
+     * Returns the moving average of the share of reads that failed for any reason.
+     *
+     * @return the failure rate between 0 and 1
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Returns the moving average of the share of reads that failed because the meter did not respond in time.
+     *
+     * @return the timeout rate between 0 and 1
+     */
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    /**
+     * Returns the moving average of the share of reads whose data message had a wrong block check character.
+     *
+     * @return the BCC error rate between 0 and 1
+     */
+    public double getBccErrorRate() {
+        return bccErrorRate;
+    }
+
+    /**
+     * Returns the time in ms since the epoch after which a quarantined meter is probed again, or 0 if the meter is not
+     * quarantined.
+     *
+     * @return the time of the next probe
+     */
+    public long getNextProbe() {
+        return nextProbe;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"meter health\": {\"state\": \"" + state + "\", \"consecutive failures\": " + numConsecutiveFailures
+                + ", \"failure rate\": " + failureRate + ", \"timeout rate\": " + timeoutRate
+                + ", \"BCC error rate\": " + bccErrorRate + ", \"next probe\": " + nextProbe + "}}";
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * The health state of a meter as tracked by a {@link MeterHealthTracker}.
+ *
+ */
+public enum MeterHealthState {
+    /**
+     * The meter is read normally.
+     */
+    HEALTHY,
+    /**
+     * The meter failed too often in a row and is not read until its backoff time has elapsed.
+     */
+    QUARANTINED,
+    /**
+     * The backoff time of the quarantined meter has elapsed and a single read is being tried to find out whether it
+     * works again.
+     */
+    PROBING
+}
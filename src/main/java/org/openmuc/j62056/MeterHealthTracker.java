@@ -0,0 +1,291 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the health of meters and keeps meters that keep failing from using up bus time.
+ * <p>
+ * After the given number of consecutive failed reads a meter is quarantined: it is not read until its backoff time
+ * has elapsed. Then a single read is let through as a probe. If the probe succeeds the meter is healthy again,
+ * otherwise it is quarantined again with twice the backoff time, up to the maximum backoff time. A probe whose result
+ * is not reported within the probe timeout is considered lost and the meter is quarantined again with the same backoff
+ * time, so the next probe can start right away. In addition the moving averages of the failure, timeout and BCC error
+ * rates of every meter are kept.
+ * <p>
+ * Meters are read through {@link #read(Iec21Port, String)}, or the results of reads performed elsewhere are reported
+ * using {@link #allowRead(Iec21Port, String)}, {@link #readSucceeded(Iec21Port, String)} and
+ * {@link #readFailed(Iec21Port, String, IOException)}.
+ *
+ */
+public class MeterHealthTracker {
+
+    private static final double SMOOTHING_FACTOR = 0.1;
+    private static final int DEFAULT_PROBE_TIMEOUT = 300000;
+
+    private final int failureThreshold;
+    private final int initialBackoff;
+    private final int maxBackoff;
+    private final int probeTimeout;
+
+    private final ConcurrentMap<MeterKey, Record> records = new ConcurrentHashMap<>();
+
+    private static class Record {
+
+        private MeterHealthState state = MeterHealthState.HEALTHY;
+        private int numConsecutiveFailures = 0;
+        private double failureRate = 0;
+        private double timeoutRate = 0;
+        private double bccErrorRate = 0;
+        private int backoff = 0;
+        // System.nanoTime() values, valid while quarantined or probing
+        private long nextProbe = 0;
+        private long probeStarted = 0;
+    }
+
+    /**
+     * Creates a health tracker with a probe timeout of five minutes.
+     *
+     * @param failureThreshold
+     *            the number of consecutive failures after which a meter is quarantined
+     * @param initialBackoff
+     *            the time in ms a meter is quarantined for the first time
+     * @param maxBackoff
+     *            the maximum time in ms a meter is quarantined
+     */
+    public MeterHealthTracker(int failureThreshold, int initialBackoff, int maxBackoff) {
+        this(failureThreshold, initialBackoff, maxBackoff, DEFAULT_PROBE_TIMEOUT);
+    }
+
+    /**
+     * Creates a health tracker.
+     *
+     * @param failureThreshold
+     *            the number of consecutive failures after which a meter is quarantined
+     * @param initialBackoff
+     *            the time in ms a meter is quarantined for the first time
+     * @param maxBackoff
+     *            the maximum time in ms a meter is quarantined
+     * @param probeTimeout
+     *            the time in ms after which a probe whose result has not been reported is considered lost. Should be
+     *            longer than the longest possible read including the time it waits for the port.
+     */
+    public MeterHealthTracker(int failureThreshold, int initialBackoff, int maxBackoff, int probeTimeout) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        if (probeTimeout < 1) {
+            throw new IllegalArgumentException("probeTimeout must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = Math.max(maxBackoff, initialBackoff);
+        this.probeTimeout = probeTimeout;
+    }
+
+    private Record getRecord(Iec21Port port, String deviceAddress) {
+        MeterKey key = new MeterKey(port, deviceAddress);
+        Record record = records.get(key);
+        if (record == null) {
+            Record newRecord = new Record();
+            record = records.putIfAbsent(key, newRecord);
+            if (record == null) {
+                record = newRecord;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Reads the given meter using {@link Iec21Port#read(String)} unless it is quarantined, and records the result.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the data message
+     * @throws MeterQuarantinedException
+     *             if the meter is quarantined
+     * @throws IOException
+     *             if reading the meter fails
+     */
+    public DataMessage read(Iec21Port port, String deviceAddress) throws IOException {
+        if (!allowRead(port, deviceAddress)) {
+            throw new MeterQuarantinedException("Meter " + deviceAddress + " on " + port.getSerialPortName()
+                    + " is quarantined after repeated failures");
+        }
+        DataMessage dataMessage;
+        try {
+            dataMessage = port.read(deviceAddress);
+        } catch (IOException e) {
+            readFailed(port, deviceAddress, e);
+            throw e;
+        }
+        readSucceeded(port, deviceAddress);
+        return dataMessage;
+    }
+
+    /**
+     * Returns whether the given meter may be read now. If the meter is quarantined and its backoff time has elapsed,
+     * true is returned once and the meter is probed. The result of every read that was allowed has to be reported,
+     * otherwise the meter is not probed again before the probe timeout has elapsed.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return true if the meter may be read
+     */
+    public boolean allowRead(Iec21Port port, String deviceAddress) {
+        Record record = getRecord(port, deviceAddress);
+        synchronized (record) {
+            long now = System.nanoTime();
+            expireProbe(record, now);
+            switch (record.state) {
+            case HEALTHY:
+                return true;
+            case QUARANTINED:
+                if (now - record.nextProbe >= 0) {
+                    record.state = MeterHealthState.PROBING;
+                    record.probeStarted = now;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Records a successful read of the given meter.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     */
+    public void readSucceeded(Iec21Port port, String deviceAddress) {
+        Record record = getRecord(port, deviceAddress);
+        synchronized (record) {
+            record.state = MeterHealthState.HEALTHY;
+            record.numConsecutiveFailures = 0;
+            record.backoff = 0;
+            record.failureRate -= SMOOTHING_FACTOR * record.failureRate;
+            record.timeoutRate -= SMOOTHING_FACTOR * record.timeoutRate;
+            record.bccErrorRate -= SMOOTHING_FACTOR * record.bccErrorRate;
+        }
+    }
+
+    /**
+     * Records a failed read of the given meter. Reads that were interrupted (as opposed to timed out) say nothing
+     * about the meter and are ignored, except that a probe may be repeated.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @param e
+     *            the exception that caused the failure
+     */
+    public void readFailed(Iec21Port port, String deviceAddress, IOException e) {
+        Record record = getRecord(port, deviceAddress);
+        synchronized (record) {
+            if (e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+                if (record.state == MeterHealthState.PROBING) {
+                    record.state = MeterHealthState.QUARANTINED;
+                }
+                return;
+            }
+            boolean timeout = e instanceof InterruptedIOException;
+            boolean bccError = e instanceof BccMismatchException;
+            record.failureRate += SMOOTHING_FACTOR * (1 - record.failureRate);
+            record.timeoutRate += SMOOTHING_FACTOR * ((timeout ? 1 : 0) - record.timeoutRate);
+            record.bccErrorRate += SMOOTHING_FACTOR * ((bccError ? 1 : 0) - record.bccErrorRate);
+            record.numConsecutiveFailures++;
+
+            if (record.state == MeterHealthState.PROBING) {
+                record.backoff = (int) Math.min(2L * record.backoff, maxBackoff);
+                quarantine(record);
+            }
+            else if (record.state == MeterHealthState.HEALTHY
+                    && record.numConsecutiveFailures >= failureThreshold) {
+                record.backoff = initialBackoff;
+                quarantine(record);
+            }
+        }
+    }
+
+    private static void quarantine(Record record) {
+        record.state = MeterHealthState.QUARANTINED;
+        record.nextProbe = System.nanoTime() + record.backoff * 1000000L;
+    }
+
+    private void expireProbe(Record record, long now) {
+        if (record.state == MeterHealthState.PROBING && now - record.probeStarted >= probeTimeout * 1000000L) {
+            // the result of the probe was never reported, the next probe may start at once
+            record.state = MeterHealthState.QUARANTINED;
+        }
+    }
+
+    /**
+     * Returns the health of the given meter.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the health of the meter. A meter without recorded reads is healthy.
+     */
+    public MeterHealth getHealth(Iec21Port port, String deviceAddress) {
+        Record record = records.get(new MeterKey(port, deviceAddress));
+        if (record == null) {
+            return new MeterHealth(MeterHealthState.HEALTHY, 0, 0, 0, 0, 0);
+        }
+        synchronized (record) {
+            long now = System.nanoTime();
+            expireProbe(record, now);
+            long nextProbe = 0;
+            if (record.state != MeterHealthState.HEALTHY) {
+                nextProbe = System.currentTimeMillis() + Math.max(0, (record.nextProbe - now) / 1000000);
+            }
+            return new MeterHealth(record.state, record.numConsecutiveFailures, record.failureRate,
+                    record.timeoutRate, record.bccErrorRate, nextProbe);
+        }
+    }
+
+    /**
+     * Makes the given meter healthy again, e.g. after it has been repaired.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     */
+    public void reset(Iec21Port port, String deviceAddress) {
+        records.remove(new MeterKey(port, deviceAddress));
+    }
+
+}
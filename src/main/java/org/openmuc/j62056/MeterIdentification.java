@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import org.openmuc.j62056.internal.IdentificationMessage;
+
+/**
+ * The identification of a meter and the settings under which it answered, as returned by
+ * {@link Iec21Port#identify(String)} and {@link MeterDiscovery}.
+ *
+ */
+public class MeterIdentification {
+
+    private final String serialPortName;
+    private final int initialBaudRate;
+    private final String requestStartCharacters;
+    private final String deviceAddress;
+    private final String manufacturerId;
+    private final String meterId;
+    private final String enhancedId;
+    private final char protocolMode;
+    private final int maxBaudRate;
+    private final int responseTime;
+
+    MeterIdentification(String serialPortName, int initialBaudRate, String requestStartCharacters,
+            String deviceAddress, IdentificationMessage identificationMessage, int responseTime) {
+        this(serialPortName, initialBaudRate, requestStartCharacters, deviceAddress,
+                identificationMessage.getManufactureId(), identificationMessage.getMeterId(),
+                identificationMessage.getEnhancedId(), identificationMessage.getProtocolMode().name().charAt(0),
+                (identificationMessage.getBaudRate() == -1) ? initialBaudRate : identificationMessage.getBaudRate(),
+                responseTime);
+    }
+
+    MeterIdentification(String serialPortName, int initialBaudRate, String requestStartCharacters,
+            String deviceAddress, String manufacturerId, String meterId, String enhancedId, char protocolMode,
+            int maxBaudRate, int responseTime) {
+        this.serialPortName = serialPortName;
+        this.initialBaudRate = initialBaudRate;
+        this.requestStartCharacters = (requestStartCharacters == null) ? "/?" : requestStartCharacters;
+        this.deviceAddress = deviceAddress;
+        this.manufacturerId = manufacturerId;
+        this.meterId = meterId;
+        this.enhancedId = enhancedId;
+        this.protocolMode = protocolMode;
+        this.maxBaudRate = maxBaudRate;
+        this.responseTime = responseTime;
+    }
+
+    /**
+     * Returns the name of the serial port the meter answered on.
+     *
+     * @return the serial port name
+     */
+    public String getSerialPortName() {
+        return serialPortName;
+    }
+
+    /**
+     * Returns the baud rate at which the meter answered the request message.
+     *
+     * @return the initial baud rate
+     */
+    public int getInitialBaudRate() {
+        return initialBaudRate;
+    }
+
+    /**
+     * Returns the start characters of the request message the meter answered.
+     *
+     * @return the request start characters
+     */
+    public String getRequestStartCharacters() {
+        return requestStartCharacters;
+    }
+
+    /**
+     * Returns the device address the meter answered to. The empty string if no address was sent.
+     *
+     * @return the device address
+     */
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    /**
+     * Returns the three letter manufacturer ID.
+     *
+     * @return the manufacturer ID
+     */
+    public String getManufacturerId() {
+        return manufacturerId;
+    }
+
+    /**
+     * Returns the meter ID sent in the identification message.
+     *
+     * @return the meter ID
+     */
+    public String getMeterId() {
+        return meterId;
+    }
+
+    /**
+     * Returns the enhanced ID/capability characters. The empty string if the meter did not send any.
+     *
+     * @return the enhanced ID
+     */
+    public String getEnhancedId() {
+        return enhancedId;
+    }
+
+    /**
+     * Returns the protocol mode the meter uses: 'A', 'B' or 'C'.
+     *
+     * @return the protocol mode
+     */
+    public char getProtocolMode() {
+        return protocolMode;
+    }
+
+    /**
+     * Returns the highest baud rate the meter offered for the data readout. For mode A meters this is the initial
+     * baud rate.
+     *
+     * @return the maximum baud rate
+     */
+    public int getMaxBaudRate() {
+        return maxBaudRate;
+    }
+
+    /**
+     * Returns the time in ms from sending the request message until the identification message had been received.
+     *
+     * @return the response time
+     */
+    public int getResponseTime() {
+        return responseTime;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"meter identification\": {\"serial port\": \"" + serialPortName + "\", \"initial baud rate\": "
+                + initialBaudRate + ", \"request start characters\": \"" + requestStartCharacters
+                + "\", \"device address\": \"" + deviceAddress + "\", \"manufacturer ID\": \"" + manufacturerId
+                + "\", \"meter ID\": \"" + meterId + "\", \"enhanced ID/capability\": \"" + enhancedId
+                + "\", \"protocol mode\": \"" + protocolMode + "\", \"max baud rate\": " + maxBaudRate
+                + ", \"response time\": " + responseTime + "}}";
+    }
+
+}
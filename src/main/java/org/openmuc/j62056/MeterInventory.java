@@ -0,0 +1,481 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.j62056.internal.BaudRateChangeDelay;
+
+/**
+ * Remembers the capabilities and timing of every known meter, so that a collector does not have to learn them again
+ * after a restart.
+ * <p>
+ * A meter is identified by its serial port name and device address. Its entry holds the fields of its identification
+ * message, the settings under which it answered, its identification response time and the average duration of its
+ * readouts. In addition the inventory can hold the calibrated baud rate change delays of the ports (see
+ * {@link Iec21Port.Builder#enableBaudRateChangeCalibration(boolean)}). The inventory is saved to a text file with one
+ * tab separated line per meter and per calibrated port.
+ *
+ */
+public class MeterInventory {
+
+    private static final String HEADER = "#j62056 meter inventory 1";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int NUM_FIELDS = 13;
+    private static final String CALIBRATION_MARKER = "@calibration";
+    private static final int TIMING_MARGIN = 500;
+
+    private final File file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Integer> calibrations = new LinkedHashMap<>();
+
+    /**
+     * The known capabilities and timing of a meter.
+     *
+     */
+    public static final class Entry {
+
+        private final String serialPortName;
+        private final String deviceAddress;
+        private final String manufacturerId;
+        private final String meterId;
+        private final String enhancedId;
+        private final char protocolMode;
+        private final int initialBaudRate;
+        private final String requestStartCharacters;
+        private final int maxBaudRate;
+        private final int responseTime;
+        private final int readoutDuration;
+        private final int numReadouts;
+        private final long lastReadout;
+
+        private Entry(String serialPortName, String deviceAddress, String manufacturerId, String meterId,
+                String enhancedId, char protocolMode, int initialBaudRate, String requestStartCharacters,
+                int maxBaudRate, int responseTime, int readoutDuration, int numReadouts, long lastReadout) {
+            this.serialPortName = serialPortName;
+            this.deviceAddress = deviceAddress;
+            this.manufacturerId = manufacturerId;
+            this.meterId = meterId;
+            this.enhancedId = enhancedId;
+            this.protocolMode = protocolMode;
+            this.initialBaudRate = initialBaudRate;
+            this.requestStartCharacters = requestStartCharacters;
+            this.maxBaudRate = maxBaudRate;
+            this.responseTime = responseTime;
+            this.readoutDuration = readoutDuration;
+            this.numReadouts = numReadouts;
+            this.lastReadout = lastReadout;
+        }
+
+        public String getSerialPortName() {
+            return serialPortName;
+        }
+
+        public String getDeviceAddress() {
+            return deviceAddress;
+        }
+
+        public String getManufacturerId() {
+            return manufacturerId;
+        }
+
+        public String getMeterId() {
+            return meterId;
+        }
+
+        public String getEnhancedId() {
+            return enhancedId;
+        }
+
+        public char getProtocolMode() {
+            return protocolMode;
+        }
+
+        public int getInitialBaudRate() {
+            return initialBaudRate;
+        }
+
+        public String getRequestStartCharacters() {
+            return requestStartCharacters;
+        }
+
+        public int getMaxBaudRate() {
+            return maxBaudRate;
+        }
+
+        /**
+         * Returns the time in ms the meter took to send its identification message when it was last identified.
+         *
+         * @return the response time
+         */
+        public int getResponseTime() {
+            return responseTime;
+        }
+
+        /**
+         * Returns the average duration in ms of the readouts of this meter or -1 if no readout has been recorded.
+         *
+         * @return the average readout duration
+         */
+        public int getReadoutDuration() {
+            return readoutDuration;
+        }
+
+        /**
+         * Returns the number of successful readouts recorded.
+         *
+         * @return the number of readouts
+         */
+        public int getNumReadouts() {
+            return numReadouts;
+        }
+
+        /**
+         * Returns the time of the last successful readout in ms since the epoch or 0 if no readout has been recorded.
+         *
+         * @return the time of the last readout
+         */
+        public long getLastReadout() {
+            return lastReadout;
+        }
+
+        /**
+         * Applies the settings under which the meter answered to the given builder: the initial baud rate, the request
+         * start characters and the device address. If the timing of the meter is known, the identification timeout is
+         * set to twice its response time and the readout deadline to twice its average readout duration, each plus
+         * 500 ms, so that an absent meter is detected quickly.
+         *
+         * @param builder
+         *            the builder of the port for this meter
+         * @return the builder
+         */
+        public Iec21Port.Builder configure(Iec21Port.Builder builder) {
+            builder.setInitialBaudrate(initialBaudRate)
+                    .setRequestStartCharacters(requestStartCharacters)
+                    .setDeviceAddress(deviceAddress);
+            if (responseTime > 0) {
+                builder.setIdentificationTimeout(2 * responseTime + TIMING_MARGIN);
+            }
+            if (readoutDuration > 0) {
+                builder.setReadoutDeadline(2 * readoutDuration + TIMING_MARGIN);
+            }
+            return builder;
+        }
+    }
+
+    /**
+     * Creates an empty inventory that is saved to the given file. Call {@link #load()} to read a previously saved
+     * inventory.
+     *
+     * @param file
+     *            the inventory file
+     */
+    public MeterInventory(File file) {
+        this.file = file;
+    }
+
+    private static String key(String serialPortName, String deviceAddress) {
+        return serialPortName + '\t' + deviceAddress;
+    }
+
+    /**
+     * Returns the entry of the given meter.
+     *
+     * @param serialPortName
+     *            the serial port name
+     * @param deviceAddress
+     *            the device address
+     * @return the entry or null if the meter is not known
+     */
+    public synchronized Entry get(String serialPortName, String deviceAddress) {
+        return entries.get(key(serialPortName, deviceAddress));
+    }
+
+    /**
+     * Returns the entries of all known meters.
+     *
+     * @return the entries
+     */
+    public synchronized List<Entry> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Records the identification of a meter, e.g. as found by {@link MeterDiscovery}. The readout statistics of a
+     * known meter are kept.
+     *
+     * @param identification
+     *            the identification of the meter
+     */
+    public synchronized void recordIdentification(MeterIdentification identification) {
+        String key = key(identification.getSerialPortName(), identification.getDeviceAddress());
+        Entry old = entries.get(key);
+        entries.put(key, new Entry(identification.getSerialPortName(), identification.getDeviceAddress(),
+                identification.getManufacturerId(), identification.getMeterId(), identification.getEnhancedId(),
+                identification.getProtocolMode(), identification.getInitialBaudRate(),
+                identification.getRequestStartCharacters(), identification.getMaxBaudRate(),
+                identification.getResponseTime(), (old == null) ? -1 : old.readoutDuration,
+                (old == null) ? 0 : old.numReadouts, (old == null) ? 0 : old.lastReadout));
+    }
+
+    /**
+     * Records a successful readout of a known meter. The average readout duration gives a quarter of the weight to
+     * the new duration. Readouts of unknown meters are ignored. A {@link PollScheduler} records its readouts itself if
+     * the inventory is set with {@link PollScheduler#setInventory(MeterInventory)}.
+     *
+     * @param serialPortName
+     *            the serial port name
+     * @param deviceAddress
+     *            the device address
+     * @param duration
+     *            the duration of the readout in ms
+     */
+    public synchronized void recordReadout(String serialPortName, String deviceAddress, int duration) {
+        String key = key(serialPortName, deviceAddress);
+        Entry old = entries.get(key);
+        if (old == null) {
+            return;
+        }
+        int readoutDuration = (old.readoutDuration == -1) ? duration : (3 * old.readoutDuration + duration) / 4;
+        entries.put(key,
+                new Entry(old.serialPortName, old.deviceAddress, old.manufacturerId, old.meterId, old.enhancedId,
+                        old.protocolMode, old.initialBaudRate, old.requestStartCharacters, old.maxBaudRate,
+                        old.responseTime, readoutDuration, old.numReadouts + 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records the baud rate change delays calibrated so far in this process, replacing the ones recorded before.
+     */
+    public synchronized void recordCalibrations() {
+        calibrations.clear();
+        calibrations.putAll(BaudRateChangeDelay.getCalibratedAllowances());
+    }
+
+    /**
+     * Makes the recorded baud rate change delays available to all ports that are created later with calibration
+     * enabled, so that they do not have to calibrate again.
+     */
+    public synchronized void applyCalibrations() {
+        for (Map.Entry<String, Integer> entry : calibrations.entrySet()) {
+            BaudRateChangeDelay.restoreCalibratedAllowance(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the recorded calibrated baud rate change delay of the given port.
+     *
+     * @param serialPortName
+     *            the serial port name
+     * @return the delay in ms added to the transmission time or -1 if none is recorded
+     */
+    public synchronized int getCalibratedBaudRateChangeDelay(String serialPortName) {
+        Integer allowance = calibrations.get(serialPortName);
+        return (allowance == null) ? -1 : allowance;
+    }
+
+    /**
+     * Removes a meter from the inventory.
+     *
+     * @param serialPortName
+     *            the serial port name
+     * @param deviceAddress
+     *            the device address
+     */
+    public synchronized void remove(String serialPortName, String deviceAddress) {
+        entries.remove(key(serialPortName, deviceAddress));
+    }
+
+    /**
+     * Replaces the content of this inventory with the content of its file. If the file does not exist the inventory
+     * is left empty.
+     *
+     * @throws IOException
+     *             if the file cannot be read or is malformed
+     */
+    public synchronized void load() throws IOException {
+        entries.clear();
+        calibrations.clear();
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                return;
+            }
+            if (!line.equals(HEADER)) {
+                throw new IOException("Unknown meter inventory format: " + line);
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> fields = parseFields(line);
+                if (fields.size() == 3 && fields.get(0).equals(CALIBRATION_MARKER)) {
+                    try {
+                        calibrations.put(fields.get(1), Integer.parseInt(fields.get(2)));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed calibration in line " + lineNumber, e);
+                    }
+                    continue;
+                }
+                Entry entry = parseEntry(fields, lineNumber);
+                entries.put(key(entry.serialPortName, entry.deviceAddress), entry);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Saves this inventory to its file. The file is replaced atomically where the file system supports it, so a
+     * crash while saving leaves the previous file intact.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), CHARSET));
+        try {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Entry entry : entries.values()) {
+                writer.write(formatEntry(entry));
+                writer.newLine();
+            }
+            for (Map.Entry<String, Integer> calibration : calibrations.entrySet()) {
+                StringBuilder sb = new StringBuilder();
+                appendField(sb, CALIBRATION_MARKER);
+                appendField(sb, calibration.getKey());
+                sb.append(calibration.getValue());
+                writer.write(sb.toString());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String formatEntry(Entry entry) {
+        StringBuilder sb = new StringBuilder();
+        appendField(sb, entry.serialPortName);
+        appendField(sb, entry.deviceAddress);
+        appendField(sb, entry.manufacturerId);
+        appendField(sb, entry.meterId);
+        appendField(sb, entry.enhancedId);
+        appendField(sb, String.valueOf(entry.protocolMode));
+        appendField(sb, String.valueOf(entry.initialBaudRate));
+        appendField(sb, entry.requestStartCharacters);
+        appendField(sb, String.valueOf(entry.maxBaudRate));
+        appendField(sb, String.valueOf(entry.responseTime));
+        appendField(sb, String.valueOf(entry.readoutDuration));
+        appendField(sb, String.valueOf(entry.numReadouts));
+        appendField(sb, String.valueOf(entry.lastReadout));
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    private static void appendField(StringBuilder sb, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        sb.append('\t');
+    }
+
+    private static List<String> parseFields(String line) {
+        List<String> fields = new ArrayList<>(NUM_FIELDS);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            }
+            else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                sb.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            }
+            else {
+                sb.append(c);
+            }
+        }
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    private static Entry parseEntry(List<String> fields, int lineNumber) throws IOException {
+        if (fields.size() != NUM_FIELDS || fields.get(5).length() != 1) {
+            throw new IOException("Malformed meter inventory entry in line " + lineNumber);
+        }
+        try {
+            return new Entry(fields.get(0), fields.get(1), fields.get(2), fields.get(3), fields.get(4),
+                    fields.get(5).charAt(0), Integer.parseInt(fields.get(6)), fields.get(7),
+                    Integer.parseInt(fields.get(8)), Integer.parseInt(fields.get(9)), Integer.parseInt(fields.get(10)),
+                    Integer.parseInt(fields.get(11)), Long.parseLong(fields.get(12)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed meter inventory entry in line " + lineNumber, e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * Identifies a meter by the port it is connected to and its device address.
+ */
+final class MeterKey {
+
+    final Iec21Port port;
+    final String deviceAddress;
+
+    MeterKey(Iec21Port port, String deviceAddress) {
+        this.port = port;
+        this.deviceAddress = deviceAddress;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof MeterKey)) {
+            return false;
+        }
+        MeterKey other = (MeterKey) obj;
+        return port == other.port && deviceAddress.equals(other.deviceAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(port) * 31 + deviceAddress.hashCode();
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * Listener for incoming Mode D messages that is also informed about the state of the reception. Register it through
+ * {@link Iec21Port#listen(ModeDListener)} like a regular {@link ModeDListener}.
+ *
+ */
+public interface ModeDEventListener extends ModeDListener {
+
+    /**
+     * Is called if bytes had to be skipped to find the start of the next message after a message could not be
+     * parsed.
+     * 
+     * @param numBytes
+     *            the number of bytes skipped
+     */
+    public void bytesSkipped(int numBytes);
+
+    /**
+     * Is called if the serial port was lost while listening and when it has been reopened again.
+     * 
+     * @param connectionState
+     *            the new connection state
+     */
+    public void connectionStateChanged(ConnectionState connectionState);
+
+}
@@ -22,7 +22,8 @@ package org.openmuc.j62056;
 
 /**
  * Listener for incoming Mode D messages. The object of that class is registered as a listener through the
- * {@link Iec21Port#listen(ModeDListener)}
+ * {@link Iec21Port#listen(ModeDListener)}. Implement {@link ModeDEventListener} instead to be informed about the state
+ * of the reception as well.
  *
  */
 public interface ModeDListener {
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openmuc.j62056.internal.FramePool;
+import org.openmuc.j62056.internal.FramePool.Frame;
+import org.openmuc.j62056.internal.IdentificationMessage;
+
+/**
+ * Parses raw mode D frames on a shared executor and delivers the resulting data messages to the listener in the order
+ * the frames were received. Frames of one port may be parsed in parallel, but the listener is called by one thread at a
+ * time. At most {@value #MAX_OUTSTANDING_FRAMES} frames may be parsed or waiting for delivery at the same time, further
+ * frames are only submitted after the listener has received an earlier result. A runtime exception thrown by the
+ * listener is passed to the uncaught exception handler of the delivering thread.
+ */
+class ModeDParser {
+
+    private static final int MAX_POOLED_FRAMES = 16;
+    static final int MAX_OUTSTANDING_FRAMES = 16;
+
+    private final Executor executor;
+    private final ModeDListener listener;
+    private final FramePool framePool = new FramePool(MAX_POOLED_FRAMES);
+
+    // results (data messages or exceptions) by sequence number that have not been delivered yet
+    private final ConcurrentMap<Long, Object> results = new ConcurrentHashMap<>();
+    private final AtomicBoolean delivering = new AtomicBoolean(false);
+    private final Semaphore outstandingFrames = new Semaphore(MAX_OUTSTANDING_FRAMES);
+    private long nextSequence = 0;
+    // only accessed while delivering is set
+    private long nextDelivery = 0;
+    private volatile Thread deliveringThread = null;
+
+    ModeDParser(Executor executor, ModeDListener listener) {
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns an empty frame to be filled by the receiver.
+     */
+    Frame acquireFrame() {
+        return framePool.acquire();
+    }
+
+    /**
+     * Returns a frame that could not be filled.
+     */
+    void releaseFrame(Frame frame) {
+        framePool.release(frame);
+    }
+
+    /**
+     * Submits a complete frame for parsing. Waits while too many frames are outstanding. Must always be called by the
+     * same thread. The frame is released in any case.
+     *
+     * @throws InterruptedIOException
+     *             if the thread is interrupted while waiting, the frame is discarded
+     */
+    void submit(final Frame frame) throws InterruptedIOException {
+        try {
+            outstandingFrames.acquire();
+        } catch (InterruptedException e) {
+            framePool.release(frame);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the parser.");
+        }
+        final long sequence = nextSequence++;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Object result;
+                    try {
+                        result = parse(frame);
+                    } catch (Exception e) {
+                        result = e;
+                    } finally {
+                        framePool.release(frame);
+                    }
+                    results.put(sequence, result);
+                    deliver();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the sequence number is used, so it has to be filled for the following results to be delivered
+            framePool.release(frame);
+            results.put(sequence, new IOException("Parser executor rejected the frame: " + e.getMessage(), e));
+            deliver();
+        }
+    }
+
+    /**
+     * Waits until the listener has received the results of all frames submitted so far. Returns immediately if called
+     * by the listener.
+     *
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    void awaitDelivery() throws InterruptedException {
+        if (deliveringThread == Thread.currentThread()) {
+            return;
+        }
+        // a permit is released after the listener has returned for each frame
+        outstandingFrames.acquire(MAX_OUTSTANDING_FRAMES);
+        outstandingFrames.release(MAX_OUTSTANDING_FRAMES);
+    }
+
+    private static DataMessage parse(Frame frame) throws IOException {
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(frame.getBuffer(), 0, frame.getLength()));
+        IdentificationMessage identificationMessage = new IdentificationMessage(is);
+        return DataMessage.readModeDDataMessage(is, identificationMessage);
+    }
+
+    private void deliver() {
+        do {
+            if (!delivering.compareAndSet(false, true)) {
+                return;
+            }
+            deliveringThread = Thread.currentThread();
+            Object result;
+            while ((result = results.remove(nextDelivery)) != null) {
+                nextDelivery++;
+                try {
+                    if (result instanceof DataMessage) {
+                        listener.newDataMessage((DataMessage) result);
+                    }
+                    else {
+                        listener.exceptionWhileListening((Exception) result);
+                    }
+                } catch (RuntimeException e) {
+                    // a failing listener must not block the delivery of the following messages
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                } finally {
+                    outstandingFrames.release();
+                }
+            }
+            deliveringThread = null;
+            delivering.set(false);
+            // another worker may have added the next result after the last check
+        } while (results.containsKey(nextDelivery));
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes received mode D messages to any number of subscribers with demand-based delivery.
+ * <p>
+ * Register the publisher as the listener of a port using {@link Iec21Port#listen(ModeDListener)}. Data messages are
+ * handed to the subscribers by an executor, so a slow subscriber never delays the reception from the serial port. Each
+ * subscriber only receives as many messages as it has requested. Messages that arrive while a subscriber has no
+ * outstanding demand are buffered according to the {@link OverflowPolicy}. If a subscriber throws a runtime exception,
+ * its subscription is cancelled and the exception is passed to the uncaught exception handler of the delivering
+ * thread.
+ *
+ */
+public class ModeDPublisher implements ModeDListener {
+
+    /**
+     * Determines what happens to a data message that arrives while the buffer of a subscriber is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The oldest buffered data message is discarded.
+         */
+        DROP_OLDEST,
+        /**
+         * All buffered data messages are discarded so that only the latest data message is kept. The buffer size is
+         * ignored.
+         */
+        KEEP_LATEST,
+        /**
+         * The new data message is discarded.
+         */
+        BUFFER
+    }
+
+    private static final int MAX_BUFFERED_EXCEPTIONS = 16;
+
+    private static class DefaultExecutor {
+        private static final ExecutorService executor = Executors
+                .newCachedThreadPool(ThreadFactories.platformThreadFactory("j62056-publisher-", true));
+    }
+
+    private final OverflowPolicy overflowPolicy;
+    private final int bufferSize;
+    private final Executor executor;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean completed = false;
+
+    private class Subscription implements ModeDSubscription, Runnable {
+
+        private final ModeDSubscriber subscriber;
+        private final AtomicInteger pendingRuns = new AtomicInteger(0);
+
+        // guarded by this
+        private final ArrayDeque<DataMessage> dataMessages = new ArrayDeque<>();
+        private final ArrayDeque<Exception> exceptions = new ArrayDeque<>();
+        private long demand = 0;
+        private long numDropped = 0;
+        private boolean cancelled = false;
+
+        // only accessed by the delivering thread
+        private boolean subscribed = false;
+        private boolean done = false;
+
+        private Subscription(ModeDSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(DataMessage dataMessage) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (overflowPolicy == OverflowPolicy.KEEP_LATEST) {
+                    numDropped += dataMessages.size();
+                    dataMessages.clear();
+                }
+                else if (dataMessages.size() >= bufferSize) {
+                    numDropped++;
+                    if (overflowPolicy == OverflowPolicy.BUFFER) {
+                        return;
+                    }
+                    dataMessages.poll();
+                }
+                dataMessages.add(dataMessage);
+            }
+            schedule();
+        }
+
+        private void offer(Exception e) {
+            synchronized (this) {
+                if (cancelled || exceptions.size() == MAX_BUFFERED_EXCEPTIONS) {
+                    return;
+                }
+                exceptions.add(e);
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Number of requested data messages has to be positive");
+            }
+            synchronized (this) {
+                demand += n;
+                if (demand < 0) {
+                    demand = Long.MAX_VALUE;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                dataMessages.clear();
+                exceptions.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        @Override
+        public synchronized long getNumDropped() {
+            return numDropped;
+        }
+
+        @Override
+        public synchronized int getNumBuffered() {
+            return dataMessages.size();
+        }
+
+        private void schedule() {
+            if (pendingRuns.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pendingRuns.set(0);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int runs = pendingRuns.get();
+            do {
+                try {
+                    deliver();
+                } catch (RuntimeException e) {
+                    done = true;
+                    cancel();
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+                runs = pendingRuns.addAndGet(-runs);
+            } while (runs != 0);
+        }
+
+        private void deliver() {
+            if (done) {
+                return;
+            }
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            while (true) {
+                Exception e = null;
+                DataMessage dataMessage = null;
+                synchronized (this) {
+                    if (cancelled) {
+                        done = true;
+                        return;
+                    }
+                    if (!exceptions.isEmpty()) {
+                        e = exceptions.poll();
+                    }
+                    else if (demand > 0 && !dataMessages.isEmpty()) {
+                        dataMessage = dataMessages.poll();
+                        demand--;
+                    }
+                    else if (completed && dataMessages.isEmpty()) {
+                        done = true;
+                    }
+                    else {
+                        return;
+                    }
+                }
+                if (e != null) {
+                    subscriber.exceptionWhileListening(e);
+                }
+                else if (dataMessage != null) {
+                    subscriber.onNext(dataMessage);
+                }
+                else {
+                    subscriptions.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Creates a publisher that delivers data messages using a thread pool shared by all publishers.
+     * 
+     * @param overflowPolicy
+     *            the policy applied if the buffer of a subscriber is full
+     * @param bufferSize
+     *            the maximum number of data messages buffered per subscriber
+     */
+    public ModeDPublisher(OverflowPolicy overflowPolicy, int bufferSize) {
+        this(overflowPolicy, bufferSize, null);
+    }
+
+    /**
+     * Creates a publisher that delivers data messages using the given executor.
+     * 
+     * @param overflowPolicy
+     *            the policy applied if the buffer of a subscriber is full
+     * @param bufferSize
+     *            the maximum number of data messages buffered per subscriber
+     * @param executor
+     *            the executor used to call the subscribers. If null a thread pool shared by all publishers is used.
+     */
+    public ModeDPublisher(OverflowPolicy overflowPolicy, int bufferSize, Executor executor) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy may not be NULL");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize has to be positive");
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.bufferSize = bufferSize;
+        this.executor = (executor == null) ? DefaultExecutor.executor : executor;
+    }
+
+    /**
+     * Adds a subscriber. Its {@link ModeDSubscriber#onSubscribe(ModeDSubscription)} method is called asynchronously.
+     * 
+     * @param subscriber
+     *            the subscriber
+     */
+    public void subscribe(ModeDSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber may not be NULL");
+        }
+        Subscription subscription = new Subscription(subscriber);
+        if (!completed) {
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Completes all subscriptions after their buffered data messages have been delivered. Call this method after
+     * {@link Iec21Port#stopListening()} or {@link Iec21Port#close()}.
+     */
+    public void complete() {
+        completed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    @Override
+    public void newDataMessage(DataMessage dataMessage) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(dataMessage);
+        }
+    }
+
+    @Override
+    public void exceptionWhileListening(Exception e) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(e);
+        }
+    }
+
+}
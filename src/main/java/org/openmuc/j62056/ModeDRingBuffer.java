@@ -0,0 +1,326 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A preallocated ring buffer that decouples the mode D receiver from one or more listeners.
+ * <p>
+ * Register the ring buffer as the listener of a port using {@link Iec21Port#listen(ModeDListener)} and add the actual
+ * listeners with {@link #addListener(ModeDListener)}. The receiver thread only stores each data message in the next
+ * slot of the ring and never waits for a listener. The slots are preallocated and reused, so publishing a data message
+ * allocates nothing. Every listener is called by its own consumer thread and sees all data messages in order. A
+ * consumer that falls behind by more than the capacity of the ring skips the overwritten messages, which are counted as
+ * overflows. A runtime exception thrown by a listener is passed to the uncaught exception handler of its consumer
+ * thread.
+ *
+ */
+public class ModeDRingBuffer implements ModeDListener {
+
+    /**
+     * Determines how a consumer thread waits for the next data message.
+     */
+    public enum WaitStrategy {
+        /**
+         * Spin without pausing. Lowest latency, occupies a core per consumer.
+         */
+        BUSY_SPIN,
+        /**
+         * Spin and yield the processor to other threads.
+         */
+        YIELDING,
+        /**
+         * Spin, yield and then park for a short time. Adds up to a millisecond of latency.
+         */
+        SLEEPING,
+        /**
+         * Block on a lock until signaled by the receiver. Uses no CPU while idle.
+         */
+        BLOCKING
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final long SLEEP_NANOS = 1000000;
+    // sequence number of a slot whose content is being replaced
+    private static final long WRITING = -1;
+
+    private final Slot[] slots;
+    private final int capacity;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final ThreadFactory threadFactory;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile boolean closed = false;
+
+    /**
+     * A slot of the ring. The receiver marks the slot as being written, sets its content and then sets the sequence
+     * number of the new content. A consumer reads the sequence number before and after the content, so it detects a
+     * slot that was overwritten while it was reading. All fields are volatile to keep these reads in order.
+     */
+    private static class Slot {
+
+        private volatile long sequence = WRITING;
+        private volatile DataMessage dataMessage;
+        private volatile Exception exception;
+    }
+
+    /**
+     * A consumer thread that delivers the data messages of the ring buffer to one listener.
+     */
+    public class Consumer implements Runnable {
+
+        private final ModeDListener listener;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final AtomicLong numOverflows = new AtomicLong(0);
+
+        private Consumer(ModeDListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Returns the number of data messages received but not yet delivered to the listener.
+         * 
+         * @return the lag
+         */
+        public long getLag() {
+            return Math.min(cursor.get() - sequence.get(), capacity);
+        }
+
+        /**
+         * Returns the number of data messages that were overwritten before they could be delivered to the listener.
+         * 
+         * @return the number of overflows
+         */
+        public long getNumOverflows() {
+            return numOverflows.get();
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (!closed) {
+                if (!awaitSequence(next)) {
+                    continue;
+                }
+                Slot slot = slots[(int) next & mask];
+                long slotSequence = slot.sequence;
+                DataMessage dataMessage = slot.dataMessage;
+                Exception exception = slot.exception;
+                if (slotSequence != next || slot.sequence != next) {
+                    // overwritten by the receiver, continue with the oldest message still in the ring
+                    long oldest = Math.max(cursor.get() - capacity + 1, next + 1);
+                    numOverflows.addAndGet(oldest - next);
+                    sequence.set(oldest - 1);
+                    next = oldest;
+                    continue;
+                }
+                try {
+                    if (exception != null) {
+                        listener.exceptionWhileListening(exception);
+                    }
+                    else {
+                        listener.newDataMessage(dataMessage);
+                    }
+                } catch (RuntimeException e) {
+                    // a failing listener must not stop the delivery of the following messages
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+                sequence.set(next);
+                next++;
+            }
+        }
+
+        private boolean awaitSequence(long next) {
+            int tries = 0;
+            while (cursor.get() < next) {
+                if (closed) {
+                    return false;
+                }
+                switch (waitStrategy) {
+                case BUSY_SPIN:
+                    break;
+                case YIELDING:
+                    Thread.yield();
+                    break;
+                case SLEEPING:
+                    if (tries < SPIN_TRIES) {
+                        tries++;
+                        Thread.yield();
+                    }
+                    else {
+                        LockSupport.parkNanos(SLEEP_NANOS);
+                    }
+                    break;
+                case BLOCKING:
+                    lock.lock();
+                    try {
+                        while (cursor.get() < next && !closed) {
+                            published.awaitUninterruptibly();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    break;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Creates a ring buffer whose consumer threads are daemon platform threads.
+     * 
+     * @param capacity
+     *            the number of slots, is rounded up to the next power of two
+     * @param waitStrategy
+     *            the strategy used by the consumer threads to wait for new data messages
+     */
+    public ModeDRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, null);
+    }
+
+    /**
+     * Creates a ring buffer.
+     * 
+     * @param capacity
+     *            the number of slots, is rounded up to the next power of two
+     * @param waitStrategy
+     *            the strategy used by the consumer threads to wait for new data messages
+     * @param threadFactory
+     *            the factory for the consumer threads. If null daemon platform threads are used.
+     */
+    public ModeDRingBuffer(int capacity, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity has to be between 1 and 2^30");
+        }
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("waitStrategy may not be NULL");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.capacity = size;
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.threadFactory = (threadFactory == null)
+                ? ThreadFactories.platformThreadFactory("j62056-ring-buffer-", true) : threadFactory;
+    }
+
+    /**
+     * Adds a listener and starts its consumer thread. The listener receives all data messages published after this
+     * call.
+     * 
+     * @param listener
+     *            the listener
+     * @return the consumer delivering to the listener, provides the lag and overflow counters
+     */
+    public Consumer addListener(ModeDListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Ring buffer is closed");
+        }
+        Consumer consumer = new Consumer(listener);
+        consumer.sequence.set(cursor.get());
+        consumers.add(consumer);
+        threadFactory.newThread(consumer).start();
+        return consumer;
+    }
+
+    /**
+     * Returns the sequence number of the last data message published, starting at 0.
+     * 
+     * @return the cursor
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Returns the number of data messages overwritten before they were delivered, summed over all consumers.
+     * 
+     * @return the number of overflows
+     */
+    public long getNumOverflows() {
+        long numOverflows = 0;
+        for (Consumer consumer : consumers) {
+            numOverflows += consumer.getNumOverflows();
+        }
+        return numOverflows;
+    }
+
+    /**
+     * Stops all consumer threads. Data messages not yet delivered are discarded.
+     */
+    public void close() {
+        closed = true;
+        signalConsumers();
+    }
+
+    @Override
+    public void newDataMessage(DataMessage dataMessage) {
+        publish(dataMessage, null);
+    }
+
+    @Override
+    public void exceptionWhileListening(Exception e) {
+        publish(null, e);
+    }
+
+    private void publish(DataMessage dataMessage, Exception exception) {
+        long next = cursor.get() + 1;
+        Slot slot = slots[(int) next & mask];
+        slot.sequence = WRITING;
+        slot.dataMessage = dataMessage;
+        slot.exception = exception;
+        // the content is visible before the cursor that makes consumers read it
+        slot.sequence = next;
+        cursor.set(next);
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            signalConsumers();
+        }
+    }
+
+    private void signalConsumers() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * Subscriber for mode D messages published by a {@link ModeDPublisher}. All methods of a subscriber are called by one
+ * thread at a time, never by the thread receiving from the serial port.
+ *
+ */
+public interface ModeDSubscriber {
+
+    /**
+     * Is called once before any other method. No data messages are delivered until they are requested using
+     * {@link ModeDSubscription#request(long)}.
+     * 
+     * @param subscription
+     *            the subscription
+     */
+    public void onSubscribe(ModeDSubscription subscription);
+
+    /**
+     * Is called for every data message requested.
+     * 
+     * @param dataMessage
+     *            the data message received
+     */
+    public void onNext(DataMessage dataMessage);
+
+    /**
+     * Is called if an exception is thrown while listening for incoming mode D data messages. Unlike
+     * {@link #onComplete()} this does not end the subscription.
+     * 
+     * @param e
+     *            the exception thrown
+     */
+    public void exceptionWhileListening(Exception e);
+
+    /**
+     * Is called after the last data message if the publisher has been completed. No methods are called afterwards.
+     */
+    public void onComplete();
+
+}
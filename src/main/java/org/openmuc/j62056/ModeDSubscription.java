@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * A subscription of a {@link ModeDSubscriber} to a {@link ModeDPublisher}.
+ *
+ */
+public interface ModeDSubscription {
+
+    /**
+     * Requests further data messages. Data messages that arrive while there is no outstanding demand are buffered
+     * according to the overflow policy of the publisher.
+     * 
+     * @param n
+     *            the number of additional data messages that may be delivered, has to be positive
+     */
+    public void request(long n);
+
+    /**
+     * Cancels the subscription. Buffered data messages are discarded.
+     */
+    public void cancel();
+
+    /**
+     * Returns the number of data messages that were discarded because the buffer was full.
+     * 
+     * @return the number of dropped data messages
+     */
+    public long getNumDropped();
+
+    /**
+     * Returns the number of data messages that have been received but not yet delivered.
+     * 
+     * @return the number of buffered data messages
+     */
+    public int getNumBuffered();
+
+}
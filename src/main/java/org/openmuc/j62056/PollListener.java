@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of a {@link PollScheduler}.
+ *
+ */
+public interface PollListener {
+
+    /**
+     * Called when a meter has been read successfully.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @param dataMessage
+     *            the data message received
+     */
+    void dataMessageReceived(Iec21Port port, String deviceAddress, DataMessage dataMessage);
+
+    /**
+     * Called when reading a meter has failed.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @param e
+     *            the exception that caused the failure
+     */
+    void readFailed(Iec21Port port, String deviceAddress, IOException e);
+
+}
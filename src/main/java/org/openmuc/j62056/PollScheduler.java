@@ -0,0 +1,429 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Polls meters periodically, reading the meters of every port one after another and all ports in parallel.
+ * <p>
+ * For every meter an exponentially weighted moving average of its readout duration (including failed readouts) and
+ * of its success rate is kept. Within a cycle the meters of a port are read in the order of their expected cost, i.e.
+ * their average duration divided by their success rate, so that fast and reliable meters are read first and as many
+ * meters as possible are read before the cycle ends. Meters that are not reached before the end of the cycle are
+ * moved forward by one aging step for every cycle they were left out, so slow meters are read eventually. The
+ * cycles of the ports start at random offsets and with a random jitter, so that not all ports start reading at the
+ * same time. Within a cycle the reads are paced: the cycle is divided into one slot per meter and no read starts
+ * before its slot, so the reads of a port are spread over the cycle instead of being sent in a burst at its start. If
+ * the reads take longer than their slots, they follow each other without waiting. If a {@link MeterHealthTracker} is
+ * set, quarantined meters are skipped.
+ *
+ */
+public class PollScheduler {
+
+    private final int interval;
+    private final int jitter;
+    private final double smoothingFactor;
+    private final int agingStep;
+    private final PollListener listener;
+
+    private final Map<Iec21Port, Bus> buses = new LinkedHashMap<>();
+    private final Random random = new Random();
+    private ThreadFactory threadFactory = null;
+    private volatile MeterHealthTracker healthTracker = null;
+    private volatile MeterInventory inventory = null;
+
+    private static class Meter {
+
+        private final String deviceAddress;
+        private double averageDuration = -1;
+        private double successRate = 1;
+        private int numCyclesLeftOut = 0;
+
+        private Meter(String deviceAddress) {
+            this.deviceAddress = deviceAddress;
+        }
+
+        private double getExpectedCost(int agingStep) {
+            if (averageDuration < 0) {
+                // meters that have never been read are read as soon as possible to learn their duration
+                return Double.NEGATIVE_INFINITY;
+            }
+            return averageDuration / Math.max(successRate, 0.05) - (double) numCyclesLeftOut * agingStep;
+        }
+    }
+
+    private class Bus {
+
+        private final Iec21Port port;
+        private final List<Meter> meters = new ArrayList<>();
+        // incremented by start() and stop(), a polling thread runs while the generation it was started with is current
+        private volatile int generation = 0;
+        private Thread thread = null;
+
+        private Bus(Iec21Port port) {
+            this.port = port;
+        }
+
+        private void run(int generation) {
+            long nextCycle = System.nanoTime() + nextRandom(interval) * 1000000L;
+            while (isRunning(generation) && !port.isClosed()) {
+                long sleepTime = (nextCycle - System.nanoTime()) / 1000000;
+                if (sleepTime > 0) {
+                    synchronized (this) {
+                        if (isRunning(generation)) {
+                            try {
+                                wait(sleepTime);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                    }
+                    continue;
+                }
+                long cycleStart = System.nanoTime();
+                pollCycle(generation, cycleStart, cycleStart + interval * 1000000L);
+                nextCycle = cycleStart + (interval + nextRandom(2 * jitter + 1) - jitter) * 1000000L;
+            }
+        }
+
+        private void pollCycle(int generation, long cycleStart, long cycleEnd) {
+            List<Meter> order;
+            synchronized (PollScheduler.this) {
+                order = new ArrayList<>(meters);
+                Collections.sort(order, new Comparator<Meter>() {
+                    @Override
+                    public int compare(Meter m1, Meter m2) {
+                        return Double.compare(m1.getExpectedCost(agingStep), m2.getExpectedCost(agingStep));
+                    }
+                });
+            }
+
+            long slot = (order.isEmpty()) ? 0 : (cycleEnd - cycleStart) / order.size();
+            int i = 0;
+            for (; i < order.size() && isRunning(generation); i++) {
+                if (!waitUntil(generation, cycleStart + i * slot) || System.nanoTime() - cycleEnd >= 0) {
+                    break;
+                }
+                MeterHealthTracker healthTracker = PollScheduler.this.healthTracker;
+                if (healthTracker != null && !healthTracker.allowRead(port, order.get(i).deviceAddress)) {
+                    continue;
+                }
+                poll(order.get(i), healthTracker);
+            }
+            synchronized (PollScheduler.this) {
+                for (; i < order.size(); i++) {
+                    order.get(i).numCyclesLeftOut++;
+                }
+            }
+        }
+
+        /**
+         * Waits until the given time unless the scheduler is stopped before.
+         *
+         * @return false if the scheduler was stopped
+         */
+        private boolean waitUntil(int generation, long time) {
+            synchronized (this) {
+                long waitTime = time - System.nanoTime();
+                while (isRunning(generation) && waitTime > 0) {
+                    try {
+                        wait(waitTime / 1000000, (int) (waitTime % 1000000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    waitTime = time - System.nanoTime();
+                }
+                return isRunning(generation);
+            }
+        }
+
+        private boolean isRunning(int generation) {
+            return this.generation == generation;
+        }
+
+        private void poll(Meter meter, MeterHealthTracker healthTracker) {
+            long start = System.nanoTime();
+            DataMessage dataMessage = null;
+            IOException exception = null;
+            try {
+                dataMessage = port.read(meter.deviceAddress, ReadPriority.LOW, 0);
+            } catch (IOException e) {
+                exception = e;
+            }
+            double duration = (System.nanoTime() - start) / 1000000.0;
+
+            synchronized (PollScheduler.this) {
+                meter.numCyclesLeftOut = 0;
+                if (meter.averageDuration < 0) {
+                    meter.averageDuration = duration;
+                }
+                else {
+                    meter.averageDuration += smoothingFactor * (duration - meter.averageDuration);
+                }
+                meter.successRate += smoothingFactor * (((exception == null) ? 1 : 0) - meter.successRate);
+            }
+
+            if (exception == null) {
+                if (healthTracker != null) {
+                    healthTracker.readSucceeded(port, meter.deviceAddress);
+                }
+                MeterInventory inventory = PollScheduler.this.inventory;
+                if (inventory != null) {
+                    inventory.recordReadout(port.getSerialPortName(), meter.deviceAddress, (int) duration);
+                }
+                listener.dataMessageReceived(port, meter.deviceAddress, dataMessage);
+            }
+            else {
+                if (healthTracker != null) {
+                    healthTracker.readFailed(port, meter.deviceAddress, exception);
+                }
+                listener.readFailed(port, meter.deviceAddress, exception);
+            }
+        }
+
+        private void start() {
+            final int generation;
+            synchronized (this) {
+                generation = ++this.generation;
+            }
+            thread = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    Bus.this.run(generation);
+                }
+            });
+            thread.start();
+        }
+
+        private Thread stop() {
+            synchronized (this) {
+                generation++;
+                notifyAll();
+            }
+            Thread thread = this.thread;
+            this.thread = null;
+            return thread;
+        }
+    }
+
+    /**
+     * Creates a poll scheduler.
+     *
+     * @param interval
+     *            the length of a cycle in ms. Every meter is read at most once per cycle.
+     * @param jitter
+     *            the maximum time in ms by which the start of a cycle is moved randomly
+     * @param smoothingFactor
+     *            the weight between 0 and 1 of a new observation in the moving averages, e.g. 0.2
+     * @param agingStep
+     *            the time in ms that is subtracted from the expected cost of a meter for every cycle it was left out
+     * @param listener
+     *            the listener that receives the results
+     */
+    public PollScheduler(int interval, int jitter, double smoothingFactor, int agingStep, PollListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener may not be NULL");
+        }
+        if (smoothingFactor <= 0 || smoothingFactor > 1) {
+            throw new IllegalArgumentException("smoothingFactor must be greater than 0 and at most 1");
+        }
+        this.interval = interval;
+        this.jitter = Math.min(jitter, interval);
+        this.smoothingFactor = smoothingFactor;
+        this.agingStep = agingStep;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the health tracker that decides which meters are skipped and records the results of all reads.
+     *
+     * @param healthTracker
+     *            the health tracker or null to read all meters
+     */
+    public void setHealthTracker(MeterHealthTracker healthTracker) {
+        this.healthTracker = healthTracker;
+    }
+
+    /**
+     * Sets the meter inventory that records the duration of every successful read, see
+     * {@link MeterInventory#recordReadout(String, String, int)}.
+     *
+     * @param inventory
+     *            the meter inventory or null to record nothing
+     */
+    public void setInventory(MeterInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    private synchronized int nextRandom(int bound) {
+        return (bound <= 0) ? 0 : random.nextInt(bound);
+    }
+
+    /**
+     * Adds a meter to poll. If the scheduler is running and the port is new, polling of the port starts immediately.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @throws IllegalArgumentException
+     *             if a meter with the same device address has already been added for the port
+     */
+    public synchronized void addMeter(Iec21Port port, String deviceAddress) {
+        if (findMeter(port, deviceAddress) != null) {
+            throw new IllegalArgumentException(
+                    "Meter " + deviceAddress + " has already been added for port " + port.getSerialPortName());
+        }
+        Bus bus = buses.get(port);
+        if (bus == null) {
+            bus = new Bus(port);
+            buses.put(port, bus);
+            if (threadFactory != null) {
+                bus.start();
+            }
+        }
+        bus.meters.add(new Meter(deviceAddress));
+    }
+
+    /**
+     * Removes a meter. The meter may still be read once if its port is in the middle of a cycle.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     */
+    public void removeMeter(Iec21Port port, String deviceAddress) {
+        Thread thread = null;
+        synchronized (this) {
+            Bus bus = buses.get(port);
+            if (bus == null) {
+                return;
+            }
+            bus.meters.remove(findMeter(bus, deviceAddress));
+            if (bus.meters.isEmpty()) {
+                buses.remove(port);
+                thread = bus.stop();
+            }
+        }
+        join(thread);
+    }
+
+    /**
+     * Returns the average readout duration of the given meter.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the average duration in ms or -1 if the meter is unknown or has not been read yet
+     */
+    public synchronized double getAverageDuration(Iec21Port port, String deviceAddress) {
+        Meter meter = findMeter(port, deviceAddress);
+        return (meter == null) ? -1 : meter.averageDuration;
+    }
+
+    /**
+     * Returns the moving average of the success rate of the given meter.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter
+     * @return the success rate between 0 and 1 or -1 if the meter is unknown
+     */
+    public synchronized double getSuccessRate(Iec21Port port, String deviceAddress) {
+        Meter meter = findMeter(port, deviceAddress);
+        return (meter == null) ? -1 : meter.successRate;
+    }
+
+    private Meter findMeter(Iec21Port port, String deviceAddress) {
+        Bus bus = buses.get(port);
+        return (bus == null) ? null : findMeter(bus, deviceAddress);
+    }
+
+    private static Meter findMeter(Bus bus, String deviceAddress) {
+        for (Meter meter : bus.meters) {
+            if (meter.deviceAddress.equals(deviceAddress)) {
+                return meter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts polling. Every port is polled by its own thread created by the given thread factory.
+     *
+     * @param threadFactory
+     *            the thread factory, see {@link ThreadFactories}
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if (this.threadFactory != null) {
+            return;
+        }
+        this.threadFactory = threadFactory;
+        for (Bus bus : buses.values()) {
+            bus.start();
+        }
+    }
+
+    /**
+     * Stops polling and waits until all polling threads have completed their current read.
+     */
+    public void stop() {
+        List<Thread> threads = new ArrayList<>();
+        synchronized (this) {
+            threadFactory = null;
+            for (Bus bus : buses.values()) {
+                Thread thread = bus.stop();
+                if (thread != null) {
+                    threads.add(thread);
+                }
+            }
+        }
+        for (Thread thread : threads) {
+            join(thread);
+        }
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads meters on many ports with a fixed number of worker threads.
+ * <p>
+ * Every port has its own queue of read requests that are executed one after another, so a port never runs two
+ * exchanges at once and a worker never blocks waiting for a busy port. A port with pending requests that is not being
+ * read is ready. Every worker has a deque of ready ports: it takes ports from the head of its own deque and, when it
+ * runs out of work, steals ports from the tail of the deques of the other workers. After an exchange the port is put
+ * back at the tail of the worker's deque if it has more requests, so all ready ports get their turn.
+ * <p>
+ * Exchanges spend most of their time waiting for the meter, so the number of workers should be close to the number of
+ * ports rather than the number of processor cores.
+ * <p>
+ * A runtime exception thrown by a callback is passed to the uncaught exception handler of the worker thread, which
+ * then continues with the next request. The queue of a port is discarded as soon as it is empty, so the engine does not
+ * keep ports alive that are no longer read.
+ *
+ */
+public class PortReadEngine {
+
+    private final Worker[] workers;
+    private final ConcurrentMap<Iec21Port, PortQueue> portQueues = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private int numReady = 0;
+    private int nextWorker = 0;
+    private boolean running = false;
+    private volatile boolean closed = false;
+
+    private static class Request {
+
+        private final String deviceAddress;
+        private final ReadPriority priority;
+        private final ReadCallback callback;
+
+        private Request(String deviceAddress, ReadPriority priority, ReadCallback callback) {
+            this.deviceAddress = deviceAddress;
+            this.priority = priority;
+            this.callback = callback;
+        }
+    }
+
+    private static class PortQueue {
+
+        private final Iec21Port port;
+        private final ArrayDeque<Request> requests = new ArrayDeque<>();
+        // guarded by this
+        // true while the port is in the deque of a worker or being read
+        private boolean scheduled = false;
+        // true once the queue has been removed from the engine because it was empty
+        private boolean removed = false;
+
+        private PortQueue(Iec21Port port) {
+            this.port = port;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final int index;
+        private final ArrayDeque<PortQueue> deque = new ArrayDeque<>();
+        private Thread thread = null;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private void push(PortQueue portQueue) {
+            synchronized (deque) {
+                deque.addLast(portQueue);
+            }
+            synchronized (PortReadEngine.this) {
+                numReady++;
+                PortReadEngine.this.notify();
+            }
+        }
+
+        private PortQueue poll(boolean steal) {
+            PortQueue portQueue;
+            synchronized (deque) {
+                portQueue = steal ? deque.pollLast() : deque.pollFirst();
+            }
+            if (portQueue != null) {
+                synchronized (PortReadEngine.this) {
+                    numReady--;
+                }
+            }
+            return portQueue;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                PortQueue portQueue = nextPort();
+                if (portQueue == null) {
+                    return;
+                }
+                execute(portQueue);
+            }
+        }
+
+        private PortQueue nextPort() {
+            while (true) {
+                if (closed) {
+                    // the remaining requests are failed by close()
+                    return null;
+                }
+                PortQueue portQueue = poll(false);
+                for (int i = 1; portQueue == null && i < workers.length; i++) {
+                    portQueue = workers[(index + i) % workers.length].poll(true);
+                }
+                if (portQueue != null) {
+                    return portQueue;
+                }
+                synchronized (PortReadEngine.this) {
+                    while (numReady == 0 && running) {
+                        try {
+                            PortReadEngine.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return null;
+                        }
+                    }
+                    if (!running) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        private void execute(PortQueue portQueue) {
+            try {
+                Request request;
+                synchronized (portQueue) {
+                    request = portQueue.requests.pollFirst();
+                }
+                if (request != null) {
+                    read(portQueue.port, request);
+                }
+            } finally {
+                reschedule(portQueue);
+            }
+        }
+
+        private void read(Iec21Port port, Request request) {
+            DataMessage dataMessage = null;
+            IOException exception = null;
+            try {
+                dataMessage = port.read(request.deviceAddress, request.priority, 0);
+            } catch (IOException e) {
+                exception = e;
+            } catch (RuntimeException e) {
+                exception = new IOException("Unexpected exception while reading.", e);
+            }
+            try {
+                if (exception == null) {
+                    request.callback.dataMessageReceived(dataMessage);
+                }
+                else {
+                    request.callback.readFailed(exception);
+                }
+            } catch (RuntimeException e) {
+                callbackFailed(e);
+            }
+        }
+
+        private void reschedule(PortQueue portQueue) {
+            synchronized (portQueue) {
+                if (portQueue.requests.isEmpty()) {
+                    portQueue.scheduled = false;
+                    portQueue.removed = true;
+                    portQueues.remove(portQueue.port, portQueue);
+                    return;
+                }
+            }
+            push(portQueue);
+        }
+    }
+
+    private static void callbackFailed(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     * Creates a read engine. The workers are created when the engine is started.
+     *
+     * @param numWorkers
+     *            the number of worker threads
+     */
+    public PortReadEngine(int numWorkers) {
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("numWorkers must be at least 1");
+        }
+        workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param threadFactory
+     *            the thread factory, see {@link ThreadFactories}
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Worker worker : workers) {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Queues a read of the given meter. Requests for the same port are executed in the order they were submitted. If
+     * the engine is closed at the same time, the request either fails with an {@link InterruptedIOException} or an
+     * {@link IllegalStateException} is thrown.
+     *
+     * @param port
+     *            the port the meter is connected to
+     * @param deviceAddress
+     *            the device address of the meter, an empty string for the default address of the port
+     * @param priority
+     *            the priority of the exchange in the request queue of the port
+     * @param callback
+     *            the callback that receives the result. It is called by a worker thread and should return quickly.
+     */
+    public void submit(Iec21Port port, String deviceAddress, ReadPriority priority, ReadCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback may not be NULL");
+        }
+        Worker worker;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Engine is closed.");
+            }
+            worker = workers[nextWorker];
+            nextWorker = (nextWorker + 1) % workers.length;
+        }
+
+        Request request = new Request(deviceAddress, priority, callback);
+        PortQueue portQueue;
+        boolean schedule;
+        while (true) {
+            portQueue = portQueues.get(port);
+            if (portQueue == null) {
+                PortQueue newPortQueue = new PortQueue(port);
+                portQueue = portQueues.putIfAbsent(port, newPortQueue);
+                if (portQueue == null) {
+                    portQueue = newPortQueue;
+                }
+            }
+            synchronized (portQueue) {
+                if (portQueue.removed) {
+                    // emptied by a worker in the meantime, a new queue has to be created
+                    continue;
+                }
+                portQueue.requests.addLast(request);
+                schedule = !portQueue.scheduled;
+                portQueue.scheduled = true;
+            }
+            break;
+        }
+
+        if (closed) {
+            // close() may have drained the queue before the request was added
+            boolean removed;
+            synchronized (portQueue) {
+                removed = portQueue.requests.remove(request);
+            }
+            if (removed) {
+                request.callback.readFailed(new InterruptedIOException("Read engine was closed."));
+            }
+            return;
+        }
+        if (schedule) {
+            worker.push(portQueue);
+        }
+    }
+
+    /**
+     * Reads all given meters once and waits until all reads have completed. The engine has to be started.
+     *
+     * @param meters
+     *            the device addresses of the meters to read per port
+     * @param listener
+     *            the listener that receives the results. It is called by the worker threads.
+     * @throws InterruptedIOException
+     *             if the calling thread is interrupted while waiting. The remaining reads are still executed.
+     */
+    public void pollCycle(Map<Iec21Port, ? extends Collection<String>> meters, final PollListener listener)
+            throws InterruptedIOException {
+        int numMeters = 0;
+        for (Collection<String> deviceAddresses : meters.values()) {
+            numMeters += deviceAddresses.size();
+        }
+        final CountDownLatch latch = new CountDownLatch(numMeters);
+
+        for (Map.Entry<Iec21Port, ? extends Collection<String>> entry : meters.entrySet()) {
+            final Iec21Port port = entry.getKey();
+            for (final String deviceAddress : entry.getValue()) {
+                submit(port, deviceAddress, ReadPriority.LOW, new ReadCallback() {
+                    @Override
+                    public void dataMessageReceived(DataMessage dataMessage) {
+                        try {
+                            listener.dataMessageReceived(port, deviceAddress, dataMessage);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void readFailed(IOException e) {
+                        try {
+                            listener.readFailed(port, deviceAddress, e);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the poll cycle to complete.");
+        }
+    }
+
+    /**
+     * Returns the number of requests that have not been started yet.
+     *
+     * @return the number of pending requests
+     */
+    public int getNumPendingRequests() {
+        int numPending = 0;
+        for (PortQueue portQueue : portQueues.values()) {
+            synchronized (portQueue) {
+                numPending += portQueue.requests.size();
+            }
+        }
+        return numPending;
+    }
+
+    /**
+     * Returns the number of ports with requests that are pending or being executed.
+     *
+     * @return the number of busy ports
+     */
+    public int getNumPorts() {
+        return portQueues.size();
+    }
+
+    /**
+     * Stops the workers after their current exchange. Requests that have not been started yet fail with an
+     * {@link InterruptedIOException}. The ports are not closed.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = false;
+            notifyAll();
+        }
+        for (Worker worker : workers) {
+            Thread thread = worker.thread;
+            if (thread != null && thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        for (PortQueue portQueue : portQueues.values()) {
+            ArrayDeque<Request> requests;
+            synchronized (portQueue) {
+                requests = new ArrayDeque<>(portQueue.requests);
+                portQueue.requests.clear();
+                portQueue.removed = true;
+                portQueues.remove(portQueue.port, portQueue);
+            }
+            for (Request request : requests) {
+                try {
+                    request.callback.readFailed(new InterruptedIOException("Read engine was closed."));
+                } catch (RuntimeException e) {
+                    callbackFailed(e);
+                }
+            }
+        }
+    }
+
+}
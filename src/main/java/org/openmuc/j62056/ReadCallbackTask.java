@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A read task that reports its result to a {@link ReadCallback} when it completes. A cancelled read is reported with an
+ * {@link InterruptedIOException}, a failure that is not an {@link IOException} is wrapped in one.
+ */
+class ReadCallbackTask extends FutureTask<DataMessage> {
+
+    private final ReadCallback callback;
+
+    ReadCallbackTask(Callable<DataMessage> callable, ReadCallback callback) {
+        super(callable);
+        this.callback = callback;
+    }
+
+    @Override
+    protected void done() {
+        if (callback == null) {
+            return;
+        }
+        if (isCancelled()) {
+            callback.readFailed(new InterruptedIOException("Read was cancelled"));
+            return;
+        }
+        try {
+            callback.dataMessageReceived(get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                callback.readFailed((IOException) cause);
+            }
+            else {
+                callback.readFailed(new IOException(cause.getMessage(), cause));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+/**
+ * The priority of a request for an {@link Iec21Port}. If several threads use the same port, waiting requests are
+ * served in the order of their priority.
+ *
+ */
+public enum ReadPriority {
+    /**
+     * For reads that a user is waiting for, e.g. an on-demand read from a user interface.
+     */
+    HIGH,
+    /**
+     * The priority of requests for which no priority is given.
+     */
+    NORMAL,
+    /**
+     * For background reads, e.g. periodic polling.
+     */
+    LOW
+}
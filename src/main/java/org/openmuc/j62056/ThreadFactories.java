@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for the threads that receive mode D messages. Pass one of them to
+ * {@link Iec21Port.Builder#setThreadFactory(ThreadFactory)}.
+ *
+ */
+public class ThreadFactories {
+
+    // stack size of the fallback for virtual threads, mode D reception only needs a shallow stack
+    private static final long SMALL_STACK_SIZE = 128 * 1024;
+
+    /**
+     * Returns a factory for named platform threads.
+     *
+     * @param namePrefix
+     *            the prefix of the thread names, a sequence number is appended
+     * @param daemon
+     *            if true the threads are daemon threads that do not keep the JVM alive
+     * @return the thread factory
+     */
+    public static ThreadFactory platformThreadFactory(final String namePrefix, final boolean daemon) {
+        return new NamedThreadFactory(namePrefix, daemon, 0);
+    }
+
+    /**
+     * Returns a factory for virtual threads. A blocked virtual thread only occupies a few kilobytes of heap, so
+     * thousands of ports can listen at the same time.
+     * <p>
+     * Virtual threads require Java 21 or later. On older Java versions daemon platform threads with a reduced stack
+     * size are created instead.
+     * <p>
+     * On Java 21 to 23 a virtual thread that blocks inside a <code>synchronized</code> block is pinned to its carrier
+     * thread. This is the case while reading from the serial port, because <code>SerialInputStream.read()</code> of
+     * jrxtx is synchronized and sleeps while it polls for data, and also while waiting in the synchronized read
+     * methods of the echo suppression or in the request queue of a port. Every listening port then occupies a
+     * carrier thread, so the number of ports that can listen at the same time is limited by the size of the carrier
+     * pool. Java 24 and later do not pin virtual threads in synchronized blocks (JEP 491).
+     *
+     * @param namePrefix
+     *            the prefix of the thread names, a sequence number is appended
+     * @return the thread factory
+     */
+    public static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = ofVirtual.getReturnType();
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return new NamedThreadFactory(namePrefix, true, SMALL_STACK_SIZE);
+        }
+    }
+
+    /**
+     * Returns true if {@link #virtualThreadFactory(String)} creates virtual threads on this Java version.
+     *
+     * @return true if virtual threads are available
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final boolean daemon;
+        private final long stackSize;
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        private NamedThreadFactory(String namePrefix, boolean daemon, long stackSize) {
+            this.namePrefix = namePrefix;
+            this.daemon = daemon;
+            this.stackSize = stackSize;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(null, runnable, namePrefix + threadNumber.getAndIncrement(), stackSize);
+            thread.setDaemon(daemon);
+            return thread;
+        }
+
+    }
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private ThreadFactories() {
+    }
+
+}
@@ -45,7 +45,7 @@ class ConsoleLineParser {
 
     public final IntCliParameter baudRateChangeDelay = new CliParameterBuilder("-d")
             .setDescription(
-                    "Delay of baud rate change in ms. USB to serial converters often require a delay of up to 250ms.")
+                    "Total delay in ms between sending the acknowledgment and changing the baud rate. The delay is at least the transmission time of the acknowledgment at the initial baud rate (200ms at 300 baud). USB to serial converters may require a few tens of ms more than that.")
             .buildIntParameter("baud_rate_change_delay", 0);
 
     public final IntCliParameter timeout = new CliParameterBuilder("-t").setDescription("The timeout in ms.")
@@ -59,6 +59,11 @@ class ConsoleLineParser {
                     "Fixed baud rate. In mode C the baud rate starts with 300 and then by default changes to a value suggested by the meter. The baud rate will NOT be changed with this flag enabled.")
             .buildFlagParameter();
 
+    public final FlagCliParameter echoSuppression = new CliParameterBuilder("-e")
+            .setDescription(
+                    "Suppress the echo of transmitted bytes. Required for adapters that echo every byte sent into the receive line (e.g. half-duplex RS-485).")
+            .buildFlagParameter();
+
     public final FlagCliParameter listen = new CliParameterBuilder("-l")
             .setDescription("Listen for mode D messages instead of reading the meter using mode A, B or C.")
             .buildFlagParameter();
@@ -79,6 +84,7 @@ class ConsoleLineParser {
         parameters.add(timeout);
         parameters.add(verbose);
         parameters.add(fixedBaudRate);
+        parameters.add(echoSuppression);
         parameters.add(listen);
         parameters.add(deviceAddress);
         parameters.add(requestStartCharacters);
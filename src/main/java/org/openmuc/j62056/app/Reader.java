@@ -23,9 +23,10 @@ package org.openmuc.j62056.app;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 
+import org.openmuc.j62056.ConnectionState;
 import org.openmuc.j62056.DataMessage;
 import org.openmuc.j62056.Iec21Port;
-import org.openmuc.j62056.ModeDListener;
+import org.openmuc.j62056.ModeDEventListener;
 import org.openmuc.j62056.internal.cli.CliParseException;
 
 /**
@@ -34,7 +35,7 @@ import org.openmuc.j62056.internal.cli.CliParseException;
  */
 public class Reader {
 
-    private static class ModeDListenerImpl implements ModeDListener {
+    private static class ModeDListenerImpl implements ModeDEventListener {
 
         @Override
         public void newDataMessage(DataMessage dataMessage) {
@@ -47,6 +48,16 @@ public class Reader {
             e.printStackTrace();
         }
 
+        @Override
+        public void bytesSkipped(int numBytes) {
+            System.err.println("Skipped " + numBytes + " bytes to find the start of the next message.");
+        }
+
+        @Override
+        public void connectionStateChanged(ConnectionState connectionState) {
+            System.err.println("Connection state changed to " + connectionState);
+        }
+
     }
 
     public static void main(String[] args) {
@@ -68,6 +79,7 @@ public class Reader {
                     .setInitialBaudrate(cliParser.initialBaudRate.getValue())
                     .enableVerboseMode(cliParser.verbose.isSelected())
                     .enableFixedBaudrate(cliParser.fixedBaudRate.isSelected())
+                    .enableEchoSuppression(cliParser.echoSuppression.isSelected())
                     .setDeviceAddress(cliParser.deviceAddress.getValue())
                     .setRequestStartCharacters(cliParser.requestStartCharacters.getValue())
                     .buildAndOpen();
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.coordination;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A lease store that keeps the leases in a file, e.g. on a file system shared by all nodes. Every operation locks the
+ * file exclusively, reads all leases, and writes them back if they changed. Use
+ * {@link #tryAcquireAll(Collection, String, long)} and {@link #releaseAll(Collection, String)} to change many leases
+ * with a single write. The file has one line per lease with the
+ * resource name, the owner name and the expiry time in ms since the epoch separated by tabs.
+ * <p>
+ * The file system has to support file locks across all nodes. Local file systems do, network file systems often only
+ * if configured accordingly.
+ *
+ */
+public class FileLeaseStore implements LeaseStore {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    // file locks are held by the JVM, so threads of the same JVM have to be serialised separately
+    private static final ConcurrentMap<String, Object> jvmLocks = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Object jvmLock;
+
+    private static class Lease {
+
+        private final String owner;
+        private final long expiry;
+
+        private Lease(String owner, long expiry) {
+            this.owner = owner;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * Creates a lease store that uses the given file. The file is created if it does not exist.
+     *
+     * @param file
+     *            the lease file
+     * @throws IOException
+     *             if the canonical path of the file cannot be determined
+     */
+    public FileLeaseStore(File file) throws IOException {
+        this.file = file;
+        String path = file.getCanonicalPath();
+        Object lock = new Object();
+        Object existing = jvmLocks.putIfAbsent(path, lock);
+        jvmLock = (existing == null) ? lock : existing;
+    }
+
+    private static void checkName(String name) {
+        if (name.indexOf('\t') != -1 || name.indexOf('\n') != -1 || name.indexOf('\r') != -1) {
+            throw new IllegalArgumentException("Names may not contain tabs or line breaks: " + name);
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String resource, String owner, long duration) throws IOException {
+        return !tryAcquireAll(Collections.singleton(resource), owner, duration).isEmpty();
+    }
+
+    @Override
+    public Set<String> tryAcquireAll(Collection<String> resources, String owner, long duration) throws IOException {
+        for (String resource : resources) {
+            checkName(resource);
+        }
+        checkName(owner);
+        synchronized (jvmLock) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                FileLock lock = raf.getChannel().lock();
+                try {
+                    long now = System.currentTimeMillis();
+                    Map<String, Lease> leases = read(raf, now);
+                    Set<String> acquired = new LinkedHashSet<>();
+                    for (String resource : resources) {
+                        Lease lease = leases.get(resource);
+                        if (lease == null || lease.owner.equals(owner)) {
+                            leases.put(resource, new Lease(owner, now + duration));
+                            acquired.add(resource);
+                        }
+                    }
+                    if (!acquired.isEmpty()) {
+                        write(raf, leases);
+                    }
+                    return acquired;
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    @Override
+    public void release(String resource, String owner) throws IOException {
+        releaseAll(Collections.singleton(resource), owner);
+    }
+
+    @Override
+    public void releaseAll(Collection<String> resources, String owner) throws IOException {
+        synchronized (jvmLock) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                FileLock lock = raf.getChannel().lock();
+                try {
+                    Map<String, Lease> leases = read(raf, System.currentTimeMillis());
+                    boolean changed = false;
+                    for (String resource : resources) {
+                        Lease lease = leases.get(resource);
+                        if (lease != null && lease.owner.equals(owner)) {
+                            leases.remove(resource);
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        write(raf, leases);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getOwners() throws IOException {
+        synchronized (jvmLock) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                FileLock lock = raf.getChannel().lock();
+                try {
+                    Map<String, String> owners = new HashMap<>();
+                    for (Map.Entry<String, Lease> entry : read(raf, System.currentTimeMillis()).entrySet()) {
+                        owners.put(entry.getKey(), entry.getValue().owner);
+                    }
+                    return owners;
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * Reads all leases that have not expired. Malformed lines are skipped.
+     */
+    private static Map<String, Lease> read(RandomAccessFile raf, long now) throws IOException {
+        byte[] bytes = new byte[(int) raf.length()];
+        raf.seek(0);
+        raf.readFully(bytes);
+
+        Map<String, Lease> leases = new LinkedHashMap<>();
+        for (String line : new String(bytes, CHARSET).split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                continue;
+            }
+            long expiry;
+            try {
+                expiry = Long.parseLong(fields[2]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (expiry > now) {
+                leases.put(fields[0], new Lease(fields[1], expiry));
+            }
+        }
+        return leases;
+    }
+
+    private static void write(RandomAccessFile raf, Map<String, Lease> leases) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            String line = entry.getKey() + '\t' + entry.getValue().owner + '\t' + entry.getValue().expiry + '\n';
+            os.write(line.getBytes(CHARSET));
+        }
+        byte[] bytes = os.toByteArray();
+        raf.seek(0);
+        raf.write(bytes);
+        raf.setLength(bytes.length);
+        raf.getChannel().force(false);
+    }
+
+}
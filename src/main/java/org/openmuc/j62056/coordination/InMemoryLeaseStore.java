@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.coordination;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lease store that keeps the leases in memory. It can only coordinate nodes that run in the same JVM and is meant
+ * for testing and for single-process deployments.
+ *
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+
+    private final Map<String, Lease> leases = new HashMap<>();
+
+    private static class Lease {
+
+        private final String owner;
+        private final long expiry;
+
+        private Lease(String owner, long expiry) {
+            this.owner = owner;
+            this.expiry = expiry;
+        }
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(String resource, String owner, long duration) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.get(resource);
+        if (lease != null && lease.expiry > now && !lease.owner.equals(owner)) {
+            return false;
+        }
+        leases.put(resource, new Lease(owner, now + duration));
+        return true;
+    }
+
+    @Override
+    public synchronized Set<String> tryAcquireAll(Collection<String> resources, String owner, long duration) {
+        Set<String> acquired = new LinkedHashSet<>();
+        for (String resource : resources) {
+            if (tryAcquire(resource, owner, duration)) {
+                acquired.add(resource);
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public synchronized void release(String resource, String owner) {
+        Lease lease = leases.get(resource);
+        if (lease != null && lease.owner.equals(owner)) {
+            leases.remove(resource);
+        }
+    }
+
+    @Override
+    public synchronized void releaseAll(Collection<String> resources, String owner) {
+        for (String resource : resources) {
+            release(resource, owner);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, String> getOwners() {
+        long now = System.currentTimeMillis();
+        Map<String, String> owners = new HashMap<>();
+        Iterator<Map.Entry<String, Lease>> iterator = leases.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Lease> entry = iterator.next();
+            if (entry.getValue().expiry > now) {
+                owners.put(entry.getKey(), entry.getValue().owner);
+            }
+            else {
+                iterator.remove();
+            }
+        }
+        return owners;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.coordination;
+
+/**
+ * Receives the lease changes of a {@link PollingCoordinator}.
+ *
+ */
+public interface LeaseListener {
+
+    /**
+     * Called when the node has acquired the lease on a resource. From now on the node should poll the resource.
+     *
+     * @param resource
+     *            the name of the resource
+     */
+    void leaseAcquired(String resource);
+
+    /**
+     * Called when the node has lost or released the lease on a resource. The node has to stop polling the resource
+     * immediately because another node may acquire it.
+     *
+     * @param resource
+     *            the name of the resource
+     */
+    void leaseLost(String resource);
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.coordination;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores time-limited leases on named resources (e.g. meters or buses) that are shared by several collector nodes.
+ * A resource is leased by at most one owner at a time. A lease that is not renewed expires and can then be acquired by
+ * another owner.
+ * <p>
+ * Expiry times are wall-clock times, so the clocks of all nodes sharing a store have to be synchronized to well within
+ * the lease duration.
+ *
+ */
+public interface LeaseStore {
+
+    /**
+     * Acquires or renews the lease on the given resource for the given owner. Succeeds if the resource is not leased,
+     * its lease has expired or it is already leased by the owner.
+     *
+     * @param resource
+     *            the name of the resource
+     * @param owner
+     *            the name of the owner
+     * @param duration
+     *            the time in ms from now after which the lease expires
+     * @return true if the owner holds the lease afterwards
+     * @throws IOException
+     *             if the store cannot be accessed
+     */
+    boolean tryAcquire(String resource, String owner, long duration) throws IOException;
+
+    /**
+     * Acquires or renews the leases on all given resources for the given owner in a single access of the store, see
+     * {@link #tryAcquire(String, String, long)}.
+     *
+     * @param resources
+     *            the names of the resources
+     * @param owner
+     *            the name of the owner
+     * @param duration
+     *            the time in ms from now after which the leases expire
+     * @return the names of the given resources whose lease the owner holds afterwards
+     * @throws IOException
+     *             if the store cannot be accessed
+     */
+    Set<String> tryAcquireAll(Collection<String> resources, String owner, long duration) throws IOException;
+
+    /**
+     * Releases the lease on the given resource if it is held by the given owner.
+     *
+     * @param resource
+     *            the name of the resource
+     * @param owner
+     *            the name of the owner
+     * @throws IOException
+     *             if the store cannot be accessed
+     */
+    void release(String resource, String owner) throws IOException;
+
+    /**
+     * Releases the leases on all given resources that are held by the given owner in a single access of the store.
+     *
+     * @param resources
+     *            the names of the resources
+     * @param owner
+     *            the name of the owner
+     * @throws IOException
+     *             if the store cannot be accessed
+     */
+    void releaseAll(Collection<String> resources, String owner) throws IOException;
+
+    /**
+     * Returns the owners of all leases that have not expired.
+     *
+     * @return a map from resource name to owner name
+     * @throws IOException
+     *             if the store cannot be accessed
+     */
+    Map<String, String> getOwners() throws IOException;
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.coordination;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Distributes a set of resources, e.g. meters or buses, among several collector nodes so that every resource is
+ * polled by exactly one node.
+ * <p>
+ * Every node runs a coordinator with the same set of resource names and a shared {@link LeaseStore}. A node may only
+ * poll the resources it holds a lease on. In every round the coordinator renews the lease of the node itself and the
+ * leases on its resources with a single access of the store, and computes the fair share of every node, i.e. the number
+ * of resources divided by the number of live nodes rounded up. A node holding more than its fair share releases the
+ * excess if other nodes with spare capacity hold less than their fair share. Resources without lease (e.g. because
+ * their node has died) are acquired first by nodes below their fair share and then by any node with spare capacity. A
+ * node that cannot handle more resources, e.g. because it is overloaded, lowers its capacity and sheds the resources
+ * above it.
+ * <p>
+ * A lease is renewed every third of its duration. If the store cannot be reached, the node considers its leases lost as
+ * soon as they might have expired. If the lease of the node itself is held by another owner, all leases are considered
+ * lost and the round fails, because the node ID is not unique. Resource names must not start with {@value #NODE_PREFIX}
+ * or {@value #SPARE_PREFIX}, which are used for the leases of the nodes themselves.
+ *
+ */
+public class PollingCoordinator {
+
+    public static final String NODE_PREFIX = "node:";
+    public static final String SPARE_PREFIX = "spare:";
+
+    private final LeaseStore store;
+    private final String nodeId;
+    private final List<String> resources;
+    private final long leaseDuration;
+    private final LeaseListener listener;
+
+    // resource name -> local time in ns until which the lease is certainly held
+    private final Map<String, Long> owned = new LinkedHashMap<>();
+    private int capacity = Integer.MAX_VALUE;
+    private volatile boolean running = false;
+    private Thread thread = null;
+
+    /**
+     * Creates a polling coordinator.
+     *
+     * @param store
+     *            the lease store shared by all nodes
+     * @param nodeId
+     *            the unique name of this node
+     * @param resources
+     *            the names of all resources to distribute, the same on all nodes
+     * @param leaseDuration
+     *            the time in ms after which the lease on a resource expires if its node does not renew it
+     * @param listener
+     *            the listener that is told which resources to poll
+     */
+    public PollingCoordinator(LeaseStore store, String nodeId, Collection<String> resources, long leaseDuration,
+            LeaseListener listener) {
+        if (store == null || nodeId == null || listener == null) {
+            throw new IllegalArgumentException("store, nodeId and listener may not be NULL");
+        }
+        if (leaseDuration < 3) {
+            throw new IllegalArgumentException("leaseDuration must be at least 3 ms");
+        }
+        for (String resource : resources) {
+            if (resource.startsWith(NODE_PREFIX) || resource.startsWith(SPARE_PREFIX)) {
+                throw new IllegalArgumentException("Illegal resource name: " + resource);
+            }
+        }
+        this.store = store;
+        this.nodeId = nodeId;
+        this.resources = new ArrayList<>(new LinkedHashSet<>(resources));
+        this.leaseDuration = leaseDuration;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the maximum number of resources this node polls. Resources above the capacity are released in the next
+     * round.
+     *
+     * @param capacity
+     *            the maximum number of resources
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity may not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the resources this node currently holds a lease on.
+     *
+     * @return the names of the resources
+     */
+    public synchronized Set<String> getOwnedResources() {
+        expireOwned(System.nanoTime(), null);
+        return new LinkedHashSet<>(owned.keySet());
+    }
+
+    /**
+     * Returns true if this node currently holds a lease on the given resource. Should be checked right before the
+     * resource is polled.
+     *
+     * @param resource
+     *            the name of the resource
+     * @return true if the lease is held
+     */
+    public synchronized boolean isOwned(String resource) {
+        Long validUntil = owned.get(resource);
+        return validUntil != null && validUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * Runs one round of renewing, releasing and acquiring leases. Called periodically once the coordinator is started,
+     * but may also be called directly.
+     *
+     * @throws IOException
+     *             if the lease store cannot be accessed
+     */
+    public void coordinate() throws IOException {
+        List<String> acquired = new ArrayList<>();
+        List<String> lost = new ArrayList<>();
+        List<String> released = new ArrayList<>();
+        try {
+            coordinate(acquired, lost, released);
+        } finally {
+            for (String resource : lost) {
+                listener.leaseLost(resource);
+            }
+            for (String resource : acquired) {
+                listener.leaseAcquired(resource);
+            }
+        }
+        // released only after the listener has stopped polling them
+        if (!released.isEmpty()) {
+            store.releaseAll(released, nodeId);
+        }
+    }
+
+    private synchronized void coordinate(List<String> acquired, List<String> lost, List<String> released)
+            throws IOException {
+        expireOwned(System.nanoTime(), lost);
+
+        // renew the lease of the node and of all owned resources with a single access of the store
+        String nodeResource = NODE_PREFIX + nodeId;
+        List<String> renewals = new ArrayList<>(owned.size() + 1);
+        renewals.add(nodeResource);
+        renewals.addAll(owned.keySet());
+        long validUntil = System.nanoTime() + leaseDuration * 1000000L;
+        Set<String> renewed = store.tryAcquireAll(renewals, nodeId, leaseDuration);
+        if (!renewed.contains(nodeResource)) {
+            // another node uses the same ID, polling anything could mean polling twice
+            lost.addAll(owned.keySet());
+            owned.clear();
+            throw new IOException("Lease " + nodeResource + " is held by another owner");
+        }
+        Iterator<Map.Entry<String, Long>> ownedIterator = owned.entrySet().iterator();
+        while (ownedIterator.hasNext()) {
+            Map.Entry<String, Long> entry = ownedIterator.next();
+            if (renewed.contains(entry.getKey())) {
+                entry.setValue(validUntil);
+            }
+            else {
+                ownedIterator.remove();
+                lost.add(entry.getKey());
+            }
+        }
+
+        Map<String, String> owners = store.getOwners();
+
+        int numNodes = 0;
+        Set<String> spareNodes = new LinkedHashSet<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            if (entry.getKey().startsWith(NODE_PREFIX)) {
+                numNodes++;
+            }
+            else if (entry.getKey().startsWith(SPARE_PREFIX)) {
+                spareNodes.add(entry.getValue());
+            }
+        }
+        for (String resource : resources) {
+            String owner = owners.get(resource);
+            if (owner != null) {
+                Integer count = counts.get(owner);
+                counts.put(owner, (count == null) ? 1 : count + 1);
+            }
+        }
+        int fairShare = (resources.size() + Math.max(numNodes, 1) - 1) / Math.max(numNodes, 1);
+
+        // number of resources that other nodes with spare capacity could take over
+        int deficit = 0;
+        boolean othersBelowFairShare = false;
+        for (String spareNode : spareNodes) {
+            if (spareNode.equals(nodeId)) {
+                continue;
+            }
+            Integer count = counts.get(spareNode);
+            int missing = fairShare - ((count == null) ? 0 : count);
+            if (missing > 0) {
+                deficit += missing;
+                othersBelowFairShare = true;
+            }
+        }
+
+        int limit = Math.min(capacity, Math.max(fairShare, owned.size() - deficit));
+        Iterator<String> iterator = new ArrayList<>(owned.keySet()).iterator();
+        int numKept = 0;
+        while (iterator.hasNext()) {
+            String resource = iterator.next();
+            if (numKept >= limit) {
+                owned.remove(resource);
+                lost.add(resource);
+                released.add(resource);
+            }
+            else {
+                numKept++;
+            }
+        }
+
+        int target = (othersBelowFairShare) ? Math.min(capacity, fairShare) : capacity;
+        List<String> candidates = new ArrayList<>();
+        for (String resource : resources) {
+            if (owned.size() + candidates.size() >= target) {
+                break;
+            }
+            if (!owned.containsKey(resource) && !owners.containsKey(resource)) {
+                candidates.add(resource);
+            }
+        }
+        String spareResource = SPARE_PREFIX + nodeId;
+        boolean spare = owned.size() + candidates.size() < capacity;
+        if (spare) {
+            candidates.add(spareResource);
+        }
+        if (!candidates.isEmpty()) {
+            validUntil = System.nanoTime() + leaseDuration * 1000000L;
+            for (String resource : store.tryAcquireAll(candidates, nodeId, leaseDuration)) {
+                if (!resource.equals(spareResource)) {
+                    owned.put(resource, validUntil);
+                    acquired.add(resource);
+                }
+            }
+        }
+        if (!spare) {
+            store.release(spareResource, nodeId);
+        }
+    }
+
+    private void expireOwned(long now, List<String> lost) {
+        Iterator<Map.Entry<String, Long>> iterator = owned.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() - now <= 0) {
+                iterator.remove();
+                if (lost != null) {
+                    lost.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts coordinating in a thread created by the given thread factory.
+     *
+     * @param threadFactory
+     *            the thread factory, see {@link org.openmuc.j62056.ThreadFactories}
+     */
+    public synchronized void start(ThreadFactory threadFactory) {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                long interval = leaseDuration / 3;
+                while (running) {
+                    try {
+                        coordinate();
+                    } catch (IOException e) {
+                        // retried in the next round, leases that might have expired are dropped meanwhile
+                        List<String> lost = new ArrayList<>();
+                        synchronized (PollingCoordinator.this) {
+                            expireOwned(System.nanoTime(), lost);
+                        }
+                        for (String resource : lost) {
+                            listener.leaseLost(resource);
+                        }
+                    }
+                    synchronized (PollingCoordinator.this) {
+                        if (running) {
+                            try {
+                                PollingCoordinator.this.wait(interval);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Stops coordinating and releases all leases of this node so that the other nodes can take over its resources
+     * immediately.
+     *
+     * @throws IOException
+     *             if the leases could not be released. They expire after the lease duration anyway.
+     */
+    public void stop() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            thread = this.thread;
+            this.thread = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<String> lost;
+        synchronized (this) {
+            lost = new ArrayList<>(owned.keySet());
+            owned.clear();
+        }
+        for (String resource : lost) {
+            listener.leaseLost(resource);
+        }
+        lost.add(SPARE_PREFIX + nodeId);
+        lost.add(NODE_PREFIX + nodeId);
+        store.releaseAll(lost, nodeId);
+    }
+
+}
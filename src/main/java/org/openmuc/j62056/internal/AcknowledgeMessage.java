@@ -55,6 +55,10 @@ public class AcknowledgeMessage {
         os.flush();
     }
 
+    public int length() {
+        return acknowledgeMessageBytes.length;
+    }
+
     @Override
     public String toString() {
         return "{\"acknowledge message\": {\"protocol control character\": \"" + protocolControlCharacter
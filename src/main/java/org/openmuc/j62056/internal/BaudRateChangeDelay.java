@@ -0,0 +1,253 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Computes how long to wait after sending a message before the baud rate may be changed.
+ * <p>
+ * Without calibration the configured delay is the total wait, but at least the time needed to shift the message out at
+ * the current baud rate. With calibration the wait is the transmission time plus an allowance for the send buffer of
+ * the serial adapter that starts at the configured delay. The allowance is halved after every successful exchange. If
+ * an exchange with a halved allowance fails, the last allowance that worked is used again and the halved one is retried
+ * after the next success. Once it has failed {@value #MAX_CONSECUTIVE_FAILURES} times in a row the calibration has
+ * converged and the last allowance that worked is kept. After that, every {@value #MAX_CONSECUTIVE_FAILURES}
+ * consecutive failures double the allowance again, up to the configured delay. Calibrated allowances are shared by all
+ * ports with the same serial port name. They only live as long as the process, but can be saved with
+ * {@link #getCalibratedAllowances()} and restored with {@link #restoreCalibratedAllowance(String, int)}.
+ */
+public class BaudRateChangeDelay {
+
+    /**
+     * Start bit, 7 data bits, even parity bit and stop bit.
+     */
+    public static final int BITS_PER_CHARACTER = 10;
+
+    /**
+     * Number of failed exchanges in a row after which a halved allowance is given up or, once calibrated, the allowance
+     * is doubled.
+     */
+    public static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private static final ConcurrentMap<String, Calibration> calibrations = new ConcurrentHashMap<>();
+
+    private final Calibration calibration;
+    private final boolean calibrate;
+
+    private static class Calibration {
+        private int allowance;
+        private int lastGoodAllowance;
+        private int maxAllowance;
+        private int failedProbes = 0;
+        private int consecutiveFailures = 0;
+        private boolean converged = false;
+
+        private Calibration(int allowance) {
+            this.allowance = allowance;
+            this.lastGoodAllowance = allowance;
+            this.maxAllowance = allowance;
+        }
+    }
+
+    /**
+     * Creates a baud rate change delay.
+     *
+     * @param serialPortName
+     *            the port identifier under which a calibrated allowance is remembered
+     * @param allowance
+     *            the total delay in ms or, if calibration is enabled, the initial adapter drain allowance in ms
+     * @param calibrate
+     *            if true the allowance is shrunk while the meter responses stay valid
+     */
+    public BaudRateChangeDelay(String serialPortName, int allowance, boolean calibrate) {
+        this.calibrate = calibrate;
+        if (calibrate) {
+            Calibration newCalibration = new Calibration(allowance);
+            Calibration existing = calibrations.putIfAbsent(serialPortName, newCalibration);
+            if (existing == null) {
+                calibration = newCalibration;
+            }
+            else {
+                calibration = existing;
+                synchronized (calibration) {
+                    calibration.maxAllowance = Math.max(calibration.maxAllowance, allowance);
+                }
+            }
+        }
+        else {
+            calibration = new Calibration(allowance);
+        }
+    }
+
+    /**
+     * Returns the calibrated allowances of all port identifiers that have been calibrated in this process. The
+     * allowance of a port is the last one that resulted in a valid response.
+     *
+     * @return a map from port identifier to allowance in ms
+     */
+    public static Map<String, Integer> getCalibratedAllowances() {
+        Map<String, Integer> allowances = new HashMap<>();
+        for (Map.Entry<String, Calibration> entry : calibrations.entrySet()) {
+            Calibration calibration = entry.getValue();
+            synchronized (calibration) {
+                allowances.put(entry.getKey(), calibration.lastGoodAllowance);
+            }
+        }
+        return allowances;
+    }
+
+    /**
+     * Restores a previously calibrated allowance, e.g. after a restart. Ports created later with calibration enabled
+     * use this allowance instead of calibrating again. Ports that already exist keep their calibration.
+     *
+     * @param serialPortName
+     *            the port identifier
+     * @param allowance
+     *            the calibrated allowance in ms
+     */
+    public static void restoreCalibratedAllowance(String serialPortName, int allowance) {
+        Calibration calibration = new Calibration(allowance);
+        calibration.converged = true;
+        calibrations.putIfAbsent(serialPortName, calibration);
+    }
+
+    /**
+     * Forgets all calibrated allowances. Ports created later start calibrating from their configured delay again.
+     */
+    public static void clearCalibratedAllowances() {
+        calibrations.clear();
+    }
+
+    /**
+     * Returns the time in ms needed to transmit the given number of characters at the given baud rate.
+     *
+     * @param numCharacters
+     *            the number of characters
+     * @param baudRate
+     *            the baud rate
+     * @return the transmission time in ms, rounded up
+     */
+    public static int transmissionTime(int numCharacters, int baudRate) {
+        return (numCharacters * BITS_PER_CHARACTER * 1000 + baudRate - 1) / baudRate;
+    }
+
+    /**
+     * Returns the configured total delay or, if calibration is enabled, the current adapter drain allowance in ms.
+     *
+     * @return the allowance
+     */
+    public int getAllowance() {
+        synchronized (calibration) {
+            return calibration.allowance;
+        }
+    }
+
+    /**
+     * Returns the total time in ms to wait after the given number of characters have been handed to the serial port.
+     *
+     * @param numCharacters
+     *            the number of characters sent
+     * @param baudRate
+     *            the baud rate at which they are sent
+     * @return the delay in ms
+     */
+    public int getDelay(int numCharacters, int baudRate) {
+        int transmissionTime = transmissionTime(numCharacters, baudRate);
+        if (!calibrate) {
+            return Math.max(transmissionTime, getAllowance());
+        }
+        return transmissionTime + getAllowance();
+    }
+
+    /**
+     * Sleeps until the message handed to the serial port at <code>sentAt</code> has been transmitted completely.
+     *
+     * @param numCharacters
+     *            the number of characters sent
+     * @param baudRate
+     *            the baud rate at which they are sent
+     * @param sentAt
+     *            the value of {@link System#nanoTime()} when the message was flushed
+     * @return the time slept in ms
+     */
+    public long await(int numCharacters, int baudRate, long sentAt) {
+        long remaining = getDelay(numCharacters, baudRate) - (System.nanoTime() - sentAt) / 1000000;
+        if (remaining <= 0) {
+            return 0;
+        }
+        try {
+            Thread.sleep(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return remaining;
+    }
+
+    /**
+     * Reports that the meter response after the baud rate change was received correctly.
+     */
+    public void responseValid() {
+        if (!calibrate) {
+            return;
+        }
+        synchronized (calibration) {
+            calibration.consecutiveFailures = 0;
+            if (calibration.allowance < calibration.lastGoodAllowance) {
+                calibration.failedProbes = 0;
+            }
+            calibration.lastGoodAllowance = calibration.allowance;
+            if (!calibration.converged) {
+                calibration.allowance /= 2;
+            }
+        }
+    }
+
+    /**
+     * Reports that the meter response after the baud rate change was missing or corrupted. Only failures that may be
+     * caused by changing the baud rate too early should be reported, i.e. not those before the baud rate change or
+     * those caused by cancelling the read.
+     */
+    public void responseInvalid() {
+        if (!calibrate) {
+            return;
+        }
+        synchronized (calibration) {
+            if (!calibration.converged) {
+                // a failure with the last allowance that worked is not held against the halved allowance
+                if (calibration.allowance < calibration.lastGoodAllowance) {
+                    calibration.allowance = calibration.lastGoodAllowance;
+                    if (++calibration.failedProbes >= MAX_CONSECUTIVE_FAILURES) {
+                        calibration.converged = true;
+                    }
+                }
+            }
+            else if (++calibration.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                calibration.allowance = Math.min(Math.max(1, calibration.allowance * 2), calibration.maxAllowance);
+                calibration.consecutiveFailures = 0;
+            }
+        }
+    }
+
+}
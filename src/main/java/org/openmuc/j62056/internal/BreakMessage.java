@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Format: 'SOH' 'B' '0' 'ETX' BCC
+ * <p>
+ * Makes the meter end the current message exchange and return to its initial state.
+ */
+public class BreakMessage {
+
+    private static final byte[] BREAK_MESSAGE_BYTES = new byte[] { 0x01, 'B', '0', 0x03, 'B' ^ '0' ^ 0x03 };
+
+    private BreakMessage() {
+    }
+
+    public static void send(DataOutputStream os) throws IOException {
+        os.write(BREAK_MESSAGE_BYTES);
+        os.flush();
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream that removes the echo of transmitted bytes from the received bytes. Half-duplex RS-485 adapters and
+ * many optical heads echo every byte sent back into the receive line.
+ * <p>
+ * All bytes written to the stream returned by {@link #recordOutput(OutputStream)} are expected to be received again
+ * before any data from the remote device. Received bytes that match the expected echo are dropped. As soon as a
+ * received byte does not match, the expected echo is discarded and the bytes received so far are passed on
+ * unchanged, so an adapter that does not echo is not affected.
+ */
+public class EchoSuppressingInputStream extends FilterInputStream {
+
+    private byte[] echo = new byte[64];
+    private int echoStart = 0;
+    private int echoEnd = 0;
+
+    private byte[] pending = new byte[64];
+    private int pendingStart = 0;
+    private int pendingEnd = 0;
+
+    public EchoSuppressingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns an output stream that records all bytes written to it as expected echo and forwards them to the given
+     * output stream.
+     *
+     * @param out
+     *            the output stream of the serial port
+     * @return the recording output stream
+     */
+    public OutputStream recordOutput(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                expectEcho(new byte[] { (byte) b }, 0, 1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                expectEcho(b, off, len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Adds the given bytes to the expected echo.
+     *
+     * @param b
+     *            the bytes sent
+     * @param off
+     *            the offset of the first byte sent
+     * @param len
+     *            the number of bytes sent
+     */
+    public synchronized void expectEcho(byte[] b, int off, int len) {
+        if (echoStart > 0) {
+            System.arraycopy(echo, echoStart, echo, 0, echoEnd - echoStart);
+            echoEnd -= echoStart;
+            echoStart = 0;
+        }
+        if (echoEnd + len > echo.length) {
+            echo = Arrays.copyOf(echo, Math.max(echo.length * 2, echoEnd + len));
+        }
+        System.arraycopy(b, off, echo, echoEnd, len);
+        echoEnd += len;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        suppressAvailableEcho();
+        if (echoStart != echoEnd) {
+            return pendingEnd - pendingStart;
+        }
+        return pendingEnd - pendingStart + in.available();
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        while (pendingStart == pendingEnd && echoStart != echoEnd) {
+            int b = in.read();
+            if (b == -1) {
+                return -1;
+            }
+            suppressEcho((byte) b);
+        }
+        if (pendingStart != pendingEnd) {
+            return pending[pendingStart++] & 0xff;
+        }
+        return in.read();
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int first = read();
+        if (first == -1) {
+            return -1;
+        }
+        b[off] = (byte) first;
+        int numBytesRead = 1;
+        while (numBytesRead < len && pendingStart != pendingEnd) {
+            b[off + numBytesRead++] = pending[pendingStart++];
+        }
+        if (numBytesRead < len && echoStart == echoEnd) {
+            int available = in.available();
+            if (available > 0) {
+                int n = in.read(b, off + numBytesRead, Math.min(len - numBytesRead, available));
+                if (n > 0) {
+                    numBytesRead += n;
+                }
+            }
+        }
+        return numBytesRead;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void suppressAvailableEcho() throws IOException {
+        while (pendingStart == pendingEnd && echoStart != echoEnd && in.available() > 0) {
+            int b = in.read();
+            if (b == -1) {
+                return;
+            }
+            suppressEcho((byte) b);
+        }
+    }
+
+    private void suppressEcho(byte b) {
+        if (echo[echoStart] == b) {
+            echoStart++;
+            if (echoStart == echoEnd) {
+                echoStart = 0;
+                echoEnd = 0;
+            }
+            return;
+        }
+        // not an echo: pass on the bytes that were matched so far followed by the received byte
+        int matched = echoStart;
+        pending = matched + 1 > pending.length ? new byte[matched + 1] : pending;
+        System.arraycopy(echo, 0, pending, 0, matched);
+        pending[matched] = b;
+        pendingStart = 0;
+        pendingEnd = matched + 1;
+        echoStart = 0;
+        echoEnd = 0;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of reusable frame buffers so that assembling raw frames does not allocate memory for every message.
+ */
+public class FramePool {
+
+    private static final int INITIAL_FRAME_SIZE = 1024;
+
+    private final ConcurrentLinkedQueue<Frame> frames = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPooled = new AtomicInteger(0);
+    private final int maxPooled;
+
+    /**
+     * A raw frame as received from the serial port.
+     */
+    public static class Frame {
+
+        private byte[] buffer = new byte[INITIAL_FRAME_SIZE];
+        private int length = 0;
+
+        public byte[] getBuffer() {
+            return buffer;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public void clear() {
+            length = 0;
+        }
+
+        public void append(byte b, int maxLength) throws FrameTooLongException {
+            if (length == buffer.length) {
+                if (length >= maxLength) {
+                    throw new FrameTooLongException(maxLength);
+                }
+                byte[] newBuffer = new byte[Math.min(buffer.length * 2, maxLength)];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+            buffer[length++] = b;
+        }
+
+        public boolean endsWith(byte[] suffix) {
+            if (length < suffix.length) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length; i++) {
+                if (buffer[length - suffix.length + i] != suffix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Signals that a frame exceeds the maximum frame length.
+     */
+    public static class FrameTooLongException extends java.io.IOException {
+
+        private static final long serialVersionUID = 5012548395212331722L;
+
+        public FrameTooLongException(int maxLength) {
+            super("Frame is longer than " + maxLength + " bytes");
+        }
+    }
+
+    /**
+     * Creates a frame pool.
+     *
+     * @param maxPooled
+     *            the maximum number of unused frames that are kept for reuse
+     */
+    public FramePool(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Returns an empty frame, either from the pool or newly allocated.
+     *
+     * @return the frame
+     */
+    public Frame acquire() {
+        Frame frame = frames.poll();
+        if (frame == null) {
+            return new Frame();
+        }
+        numPooled.decrementAndGet();
+        frame.clear();
+        return frame;
+    }
+
+    /**
+     * Returns a frame to the pool. The frame may not be used afterwards.
+     *
+     * @param frame
+     *            the frame
+     */
+    public void release(Frame frame) {
+        if (numPooled.incrementAndGet() > maxPooled) {
+            numPooled.decrementAndGet();
+            return;
+        }
+        frames.offer(frame);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.openmuc.j62056.internal.FramePool.Frame;
+
+/**
+ * Assembles a complete mode D message from the input stream without parsing its data sets.
+ * <p>
+ * Format: '/' X X X Z Identification 'CR' 'LF' 'CR' 'LF' Data block '!' 'CR' 'LF'
+ */
+public class ModeDFrameReader {
+
+    private static final int MAX_IDENTIFICATION_LENGTH = 64;
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private static final byte[] CRLF = new byte[] { '\r', '\n' };
+    private static final byte[] END_OF_MESSAGE = new byte[] { '\n', '!', '\r', '\n' };
+
+    /**
+     * Reads the next mode D message into the given frame.
+     *
+     * @param is
+     *            the input stream
+     * @param frame
+     *            an empty frame
+     * @throws IOException
+     *             if an I/O error occurs or the received bytes are not a mode D message
+     */
+    public static void readFrame(DataInputStream is, Frame frame) throws IOException {
+        byte b = is.readByte();
+        if (b != '/') {
+            throw new IOException(
+                    "Received unexpected identification message start byte: " + HexConverter.toShortHexString(b));
+        }
+        frame.append(b, MAX_FRAME_LENGTH);
+
+        while (!frame.endsWith(CRLF)) {
+            if (frame.getLength() == MAX_IDENTIFICATION_LENGTH) {
+                throw new IOException("Expected end of identification message not received");
+            }
+            frame.append(is.readByte(), MAX_FRAME_LENGTH);
+        }
+        int identificationLength = frame.getLength();
+
+        for (int i = 0; i < CRLF.length; i++) {
+            b = is.readByte();
+            if (b != CRLF[i]) {
+                throw new IOException("Received unexpected byte at beginning of data message: "
+                        + HexConverter.toShortHexString(b));
+            }
+            frame.append(b, MAX_FRAME_LENGTH);
+        }
+
+        while (frame.getLength() < identificationLength + END_OF_MESSAGE.length || !frame.endsWith(END_OF_MESSAGE)) {
+            frame.append(is.readByte(), MAX_FRAME_LENGTH);
+        }
+    }
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private ModeDFrameReader() {
+    }
+
+}
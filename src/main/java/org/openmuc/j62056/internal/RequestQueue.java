@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.PriorityQueue;
+
+/**
+ * Grants exclusive use of a port to one request at a time.
+ * <p>
+ * Waiting requests are served in the order of their priority (lowest value first). Requests of equal priority are
+ * served in the order of their deadlines, requests without a deadline after those with a deadline, and otherwise in
+ * the order they arrived. A request that is still waiting when its deadline has passed fails.
+ */
+public class RequestQueue {
+
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+    private Ticket owner = null;
+    private long nextSequenceNumber = 0;
+    private boolean closed = false;
+
+    /**
+     * A request for exclusive use of the port.
+     */
+    public static class Ticket implements Comparable<Ticket> {
+
+        private final int priority;
+        private final long deadline;
+        private final long sequenceNumber;
+
+        private Ticket(int priority, long deadline, long sequenceNumber) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            if (deadline != other.deadline) {
+                if (deadline == 0) {
+                    return 1;
+                }
+                if (other.deadline == 0) {
+                    return -1;
+                }
+                return (deadline - other.deadline < 0) ? -1 : 1;
+            }
+            return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
+
+    /**
+     * Waits until the port is available for the calling request.
+     *
+     * @param priority
+     *            the priority of the request, lower values are served first
+     * @param timeout
+     *            the maximum time in ms to wait. Zero means no limit.
+     * @return the ticket that has to be passed to {@link #release(Ticket)} when the request has completed
+     * @throws InterruptedIOException
+     *             if the thread is interrupted or the timeout elapses while waiting
+     * @throws IOException
+     *             if the queue is closed
+     */
+    public synchronized Ticket acquire(int priority, int timeout) throws IOException {
+        if (closed) {
+            throw new IOException("Port is closed");
+        }
+        long deadline = 0;
+        if (timeout != 0) {
+            deadline = System.nanoTime() + timeout * 1000000L;
+            if (deadline == 0) {
+                deadline = 1;
+            }
+        }
+        Ticket ticket = new Ticket(priority, deadline, nextSequenceNumber++);
+
+        if (owner == null && waiting.isEmpty()) {
+            owner = ticket;
+            return ticket;
+        }
+
+        waiting.add(ticket);
+        try {
+            while (owner != null || waiting.peek() != ticket) {
+                if (closed) {
+                    throw new IOException("Port is closed");
+                }
+                if (deadline == 0) {
+                    wait();
+                }
+                else {
+                    long remaining = (deadline - System.nanoTime()) / 1000000;
+                    if (remaining <= 0) {
+                        throw new InterruptedIOException("Timed out waiting for the port to become available.");
+                    }
+                    wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            waiting.remove(ticket);
+            notifyAll();
+            throw new InterruptedIOException("Interrupted while waiting for the port to become available.");
+        } catch (IOException e) {
+            waiting.remove(ticket);
+            notifyAll();
+            throw e;
+        }
+        waiting.poll();
+        owner = ticket;
+        return ticket;
+    }
+
+    /**
+     * Releases the port so that the next waiting request can use it.
+     *
+     * @param ticket
+     *            the ticket returned by {@link #acquire(int, int)}
+     */
+    public synchronized void release(Ticket ticket) {
+        if (owner != ticket) {
+            return;
+        }
+        owner = null;
+        notifyAll();
+    }
+
+    /**
+     * Makes all waiting and future requests fail.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+}
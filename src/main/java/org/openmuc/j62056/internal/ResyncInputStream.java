@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream that records the bytes of the current frame so that parsing can be resumed at the next identification
+ * message if the frame turns out to be corrupted.
+ * <p>
+ * An identification message starts with '/' followed by three manufacturer identification letters and the baud rate
+ * identification character.
+ */
+public class ResyncInputStream extends FilterInputStream {
+
+    private static final int WINDOW_SIZE = 4096;
+    private static final int START_SEQUENCE_LENGTH = 5;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowLength = 0;
+    private int numTrimmed = 0;
+    private boolean recording = false;
+
+    private byte[] pushback = new byte[0];
+    private int pushbackStart = 0;
+
+    public ResyncInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Starts recording a new frame. Bytes of a previous frame are forgotten.
+     */
+    public void startFrame() {
+        windowLength = 0;
+        numTrimmed = 0;
+        recording = true;
+    }
+
+    /**
+     * Returns the number of bytes read since {@link #startFrame()} was called.
+     *
+     * @return the number of bytes of the current frame
+     */
+    public int getFrameLength() {
+        return numTrimmed + windowLength;
+    }
+
+    /**
+     * Searches the bytes of the current frame (except for its first byte) and all bytes that are available without
+     * blocking for the start of the next identification message. The bytes from that start on are read again by the
+     * following read operations. All bytes before it are discarded.
+     *
+     * @return the number of bytes discarded
+     * @throws IOException
+     *             if an I/O error occurs while reading the available bytes
+     */
+    public int resync() throws IOException {
+        recording = false;
+
+        int numPushback = pushback.length - pushbackStart;
+        int numAvailable = in.available();
+        byte[] buffer = new byte[windowLength + numPushback + numAvailable];
+        System.arraycopy(window, 0, buffer, 0, windowLength);
+        System.arraycopy(pushback, pushbackStart, buffer, windowLength, numPushback);
+        int length = windowLength + numPushback;
+        while (length < buffer.length) {
+            int numBytesRead = in.read(buffer, length, buffer.length - length);
+            if (numBytesRead <= 0) {
+                break;
+            }
+            length += numBytesRead;
+        }
+
+        // the first byte of the frame is skipped so that the same corrupted frame is not parsed again
+        int start = findStart(buffer, (windowLength > 0) ? 1 : 0, length);
+        pushback = Arrays.copyOfRange(buffer, start, length);
+        pushbackStart = 0;
+        int numSkipped = numTrimmed + start;
+        windowLength = 0;
+        numTrimmed = 0;
+        return numSkipped;
+    }
+
+    /**
+     * Returns the index of the first identification message start in the given range. A start that is cut off by the
+     * end of the range is also returned because it may be completed by the following bytes.
+     */
+    private static int findStart(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '/' && isStart(buffer, i, to)) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isStart(byte[] buffer, int offset, int to) {
+        for (int j = 1; j < START_SEQUENCE_LENGTH && offset + j < to; j++) {
+            byte b = buffer[offset + j];
+            if (j < 4) {
+                if (!((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z'))) {
+                    return false;
+                }
+            }
+            else if (b < 0x21 || b > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return pushback.length - pushbackStart + in.available();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b;
+        if (pushbackStart < pushback.length) {
+            b = pushback[pushbackStart++] & 0xff;
+        }
+        else {
+            b = in.read();
+        }
+        if (b != -1) {
+            record((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int numBytesRead;
+        if (pushbackStart < pushback.length) {
+            numBytesRead = Math.min(len, pushback.length - pushbackStart);
+            System.arraycopy(pushback, pushbackStart, b, off, numBytesRead);
+            pushbackStart += numBytesRead;
+        }
+        else {
+            numBytesRead = in.read(b, off, len);
+        }
+        for (int i = 0; i < numBytesRead; i++) {
+            record(b[off + i]);
+        }
+        return numBytesRead;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void record(byte b) {
+        if (!recording) {
+            return;
+        }
+        if (windowLength == WINDOW_SIZE) {
+            // frame is too long to be resynchronized from its beginning, keep its tail only
+            System.arraycopy(window, WINDOW_SIZE / 2, window, 0, WINDOW_SIZE / 2);
+            windowLength = WINDOW_SIZE / 2;
+            numTrimmed += WINDOW_SIZE / 2;
+        }
+        window[windowLength++] = b;
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.spi.AbstractInterruptibleChannel;
+
+import org.openmuc.jrxtx.SerialPort;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
+
+/**
+ * Input stream that enforces the timeouts of the current phase of a message exchange.
+ * <p>
+ * Each phase (e.g. waiting for the identification message) has a timeout for its first byte and a timeout for the gaps
+ * between the following bytes. In addition an overall deadline can be set that limits all phases together. A timeout of
+ * zero is interpreted as an infinite timeout. Timeouts are signaled by a {@link SerialPortTimeoutException}.
+ * <p>
+ * Reads block in the serial port driver, whose read timeout is set to the time left in the current phase. The deadline
+ * and cancellation are checked before every read, so they also apply while the meter keeps sending. A read that is
+ * blocked when the stream is cancelled is aborted by closing the serial port, which has to be reopened afterwards.
+ * <p>
+ * The serial port driver ignores interrupts while it waits for data. A read that is blocked when the reading thread is
+ * interrupted is therefore aborted the same way: the serial port is closed and the read fails with an
+ * {@link InterruptedIOException}. The interrupt status of the thread is kept.
+ */
+public class TimeoutInputStream extends FilterInputStream {
+
+    private final SerialPort serialPort;
+
+    private int firstByteTimeout = 0;
+    private int interByteTimeout = 0;
+    private boolean firstByte = true;
+    private volatile long deadline = 0;
+    private int portTimeout = -1;
+
+    // guarded by this
+    private boolean cancelled = false;
+    private boolean reading = false;
+    // accessed by the reading thread only, replaced after it has been closed by an interrupt
+    private InterruptHandler interruptHandler = new InterruptHandler();
+
+    /**
+     * Closes the serial port when the reading thread is interrupted during a read. The JDK calls
+     * {@link #implCloseChannel()} from {@link Thread#interrupt()} for a thread between {@link #begin()} and
+     * {@link #end(boolean)}.
+     */
+    private class InterruptHandler extends AbstractInterruptibleChannel {
+
+        private volatile boolean interrupted = false;
+
+        private void beginRead() {
+            begin();
+        }
+
+        private void endRead() {
+            try {
+                end(true);
+            } catch (ClosedByInterruptException e) {
+                // the driver may have cleared the interrupt status
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // not thrown for a completed operation
+            }
+        }
+
+        @Override
+        protected void implCloseChannel() {
+            interrupted = true;
+            closeSerialPort();
+        }
+    }
+
+    /**
+     * Creates a timeout input stream.
+     *
+     * @param in
+     *            the input stream of the serial port, possibly wrapped
+     * @param serialPort
+     *            the serial port whose read timeout is set. May be null for streams that never block, e.g. in tests.
+     */
+    public TimeoutInputStream(InputStream in, SerialPort serialPort) {
+        super(in);
+        this.serialPort = serialPort;
+    }
+
+    /**
+     * Starts a new phase. The next byte read is the first byte of the phase.
+     *
+     * @param firstByteTimeout
+     *            the maximum time in ms to wait for the first byte of the phase
+     * @param interByteTimeout
+     *            the maximum time in ms to wait for each following byte
+     */
+    public void startPhase(int firstByteTimeout, int interByteTimeout) {
+        this.firstByteTimeout = firstByteTimeout;
+        this.interByteTimeout = interByteTimeout;
+        firstByte = true;
+    }
+
+    /**
+     * Sets an overall deadline relative to now.
+     *
+     * @param timeout
+     *            the time in ms from now after which all reads fail. Zero removes the deadline.
+     */
+    public void setDeadline(int timeout) {
+        if (timeout == 0) {
+            deadline = 0;
+        }
+        else {
+            long deadline = System.nanoTime() + timeout * 1000000L;
+            this.deadline = (deadline == 0) ? 1 : deadline;
+        }
+    }
+
+    /**
+     * Makes all reads fail with an {@link InterruptedIOException} until {@link #clearCancel()} is called. A read that
+     * is blocked in the serial port driver is aborted by closing the serial port. May be called from any thread.
+     *
+     * @return true if the serial port was closed
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            cancelled = true;
+            if (!reading || serialPort == null) {
+                return false;
+            }
+        }
+        closeSerialPort();
+        return true;
+    }
+
+    private void closeSerialPort() {
+        if (serialPort == null) {
+            return;
+        }
+        try {
+            serialPort.close();
+        } catch (IOException e) {
+            // the blocked read fails anyway
+        }
+    }
+
+    /**
+     * Allows reading again after {@link #cancel()} was called.
+     */
+    public synchronized void clearCancel() {
+        cancelled = false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        beginRead(firstByte ? firstByteTimeout : interByteTimeout);
+        int b;
+        try {
+            b = in.read();
+        } catch (IOException e) {
+            throw translate(e);
+        } finally {
+            endRead();
+        }
+        if (b != -1) {
+            firstByte = false;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        beginRead(firstByte ? firstByteTimeout : interByteTimeout);
+        int numBytesRead;
+        try {
+            numBytesRead = in.read(b, off, len);
+        } catch (IOException e) {
+            throw translate(e);
+        } finally {
+            endRead();
+        }
+        if (numBytesRead > 0) {
+            firstByte = false;
+        }
+        return numBytesRead;
+    }
+
+    /**
+     * Discards all bytes received until no byte has been received for the given quiet time or the given maximum time
+     * has elapsed. Cancellation, interrupts and the deadline are ignored while draining, so it can be used to clean up
+     * after an aborted read.
+     *
+     * @param quietTime
+     *            the time in ms without new bytes after which the input is considered drained
+     * @param maxTime
+     *            the maximum time in ms to drain
+     * @return the number of bytes discarded
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int drain(int quietTime, int maxTime) throws IOException {
+        long start = System.nanoTime();
+        int numDiscarded = 0;
+        byte[] buffer = new byte[256];
+        while (true) {
+            int remaining = maxTime - (int) ((System.nanoTime() - start) / 1000000);
+            if (remaining <= 0) {
+                return numDiscarded;
+            }
+            setPortTimeout(Math.min(quietTime, remaining));
+            int n;
+            try {
+                n = in.read(buffer, 0, buffer.length);
+            } catch (SerialPortTimeoutException e) {
+                return numDiscarded;
+            }
+            if (n == -1 || (n == 0 && serialPort == null)) {
+                return numDiscarded;
+            }
+            numDiscarded += n;
+        }
+    }
+
+    private void beginRead(int timeout) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while reading.");
+        }
+        synchronized (this) {
+            if (cancelled) {
+                throw new InterruptedIOException("Reading was cancelled.");
+            }
+            reading = true;
+        }
+        if (!interruptHandler.isOpen()) {
+            interruptHandler = new InterruptHandler();
+        }
+        // closes the serial port right away if the thread has been interrupted since the check above
+        interruptHandler.beginRead();
+        try {
+            long deadline = this.deadline;
+            if (deadline != 0) {
+                long remaining = (deadline - System.nanoTime()) / 1000000;
+                if (remaining <= 0) {
+                    throw new SerialPortTimeoutException("Readout deadline exceeded.");
+                }
+                if (timeout == 0 || remaining < timeout) {
+                    timeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+                }
+            }
+            setPortTimeout(timeout);
+        } catch (IOException e) {
+            endRead();
+            throw e;
+        }
+    }
+
+    private void endRead() {
+        interruptHandler.endRead();
+        synchronized (this) {
+            reading = false;
+        }
+    }
+
+    private void setPortTimeout(int timeout) throws IOException {
+        if (serialPort != null && timeout != portTimeout) {
+            serialPort.setSerialPortTimeout(timeout);
+            portTimeout = timeout;
+        }
+    }
+
+    private IOException translate(IOException e) {
+        if (interruptHandler.interrupted) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptException = new InterruptedIOException("Interrupted while reading.");
+            interruptException.initCause(e);
+            return interruptException;
+        }
+        synchronized (this) {
+            if (cancelled) {
+                InterruptedIOException cancelException = new InterruptedIOException("Reading was cancelled.");
+                cancelException.initCause(e);
+                return cancelException;
+            }
+        }
+        if (e instanceof SerialPortTimeoutException) {
+            long deadline = this.deadline;
+            if (deadline != 0 && deadline - System.nanoTime() <= 0) {
+                return new SerialPortTimeoutException("Readout deadline exceeded.");
+            }
+            return new SerialPortTimeoutException(
+                    firstByte ? "Timed out waiting for the first byte." : "Timed out waiting for the next byte.");
+        }
+        return e;
+    }
+
+}
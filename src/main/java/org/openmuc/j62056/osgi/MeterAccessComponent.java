@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-17 Fraunhofer ISE
+ *
+ * This file is part of j62056.
+ * For more information visit http://www.openmuc.org
+ *
+ * j62056 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * j62056 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with j62056.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.j62056.osgi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.MeterAccessManager;
+import org.openmuc.j62056.MeterAccessService;
+import org.openmuc.j62056.ModeDSubscriber;
+import org.openmuc.j62056.ReadCallback;
+import org.openmuc.j62056.ReadPriority;
+
+/**
+ * Declarative services component that provides a {@link MeterAccessService} for all bundles of a framework, so that
+ * the configured ports are opened once and shared.
+ * <p>
+ * The component is described in OSGI-INF/org.openmuc.j62056.meteraccess.xml and requires a configuration with the PID
+ * org.openmuc.j62056.meteraccess. Supported properties:
+ * <ul>
+ * <li>serialPorts: the serial port names, as an array or a comma separated string (required)</li>
+ * <li>initialBaudRate, timeout, baudRateChangeDelay: see {@link Iec21Port.Builder}</li>
+ * <li>echoSuppression: true to enable echo suppression</li>
+ * <li>maxAge: the time in ms a data message is shared with later reads of the same meter (default 0)</li>
+ * </ul>
+ * The component does not depend on the OSGi API. Its activate and deactivate methods are found by the service
+ * component runtime by their names.
+ *
+ */
+public class MeterAccessComponent implements MeterAccessService {
+
+    private volatile MeterAccessManager manager;
+
+    protected void activate(Map<String, Object> properties) throws IOException {
+        MeterAccessManager manager = new MeterAccessManager(intProperty(properties, "maxAge", 0), null);
+        try {
+            for (String serialPortName : serialPorts(properties.get("serialPorts"))) {
+                Iec21Port.Builder builder = new Iec21Port.Builder(serialPortName)
+                        .setInitialBaudrate(intProperty(properties, "initialBaudRate", -1))
+                        .setBaudRateChangeDelay(intProperty(properties, "baudRateChangeDelay", 0))
+                        .enableEchoSuppression(Boolean.parseBoolean(String.valueOf(properties.get("echoSuppression"))));
+                int timeout = intProperty(properties, "timeout", -1);
+                if (timeout != -1) {
+                    builder.setTimeout(timeout);
+                }
+                manager.addPort(builder);
+            }
+        } catch (IOException | RuntimeException e) {
+            manager.close();
+            throw e;
+        }
+        this.manager = manager;
+    }
+
+    protected void deactivate() {
+        MeterAccessManager manager = this.manager;
+        this.manager = null;
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    private static String[] serialPorts(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Property serialPorts is missing");
+        }
+        if (value instanceof String[]) {
+            return (String[]) value;
+        }
+        String[] serialPorts = value.toString().split(",");
+        for (int i = 0; i < serialPorts.length; i++) {
+            serialPorts[i] = serialPorts[i].trim();
+        }
+        return serialPorts;
+    }
+
+    private static int intProperty(Map<String, Object> properties, String key, int defaultValue) {
+        Object value = properties.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Property " + key + " is not an integer: " + value);
+        }
+    }
+
+    private MeterAccessManager getManager() throws IOException {
+        MeterAccessManager manager = this.manager;
+        if (manager == null) {
+            throw new IOException("Meter access component is not active");
+        }
+        return manager;
+    }
+
+    @Override
+    public List<String> getSerialPortNames() {
+        MeterAccessManager manager = this.manager;
+        if (manager == null) {
+            return new ArrayList<>();
+        }
+        return manager.getSerialPortNames();
+    }
+
+    @Override
+    public DataMessage read(String serialPortName, String deviceAddress, ReadPriority priority) throws IOException {
+        return getManager().read(serialPortName, deviceAddress, priority);
+    }
+
+    @Override
+    public Future<DataMessage> readAsync(String serialPortName, String deviceAddress, ReadPriority priority,
+            ReadCallback callback) {
+        MeterAccessManager manager = this.manager;
+        if (manager == null) {
+            throw new IllegalStateException("Meter access component is not active");
+        }
+        return manager.readAsync(serialPortName, deviceAddress, priority, callback);
+    }
+
+    @Override
+    public void subscribe(String serialPortName, ModeDSubscriber subscriber) throws IOException {
+        getManager().subscribe(serialPortName, subscriber);
+    }
+
+    @Override
+    public void stopListening(String serialPortName) throws IOException {
+        getManager().stopListening(serialPortName);
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.openmuc.j62056;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openmuc.j62056.internal.Helper;
+import org.openmuc.j62056.internal.IdentificationMessage;
+
+/**
+ * A port whose reads return a prepared data message without accessing the serial port. Reads can be held until
+ * {@link #releaseReads()} is called and can be made to fail. Listening only records the listener and can be held
+ * until {@link #releaseListen()} is called.
+ * <p>
+ * The tests are in {@code org.openmuc.j62056.test}. This fixture is in the package of the library because it uses
+ * package-private constructors and methods to create ports, data messages and meter identifications without a meter.
+ */
+public class FakeIec21Port extends Iec21Port {
+
+    public final AtomicInteger numReads = new AtomicInteger();
+    public final AtomicInteger numListens = new AtomicInteger();
+    public final CountDownLatch readStarted = new CountDownLatch(1);
+    public final CountDownLatch listenStarted = new CountDownLatch(1);
+    public volatile ModeDListener listener;
+    private volatile CountDownLatch readGate;
+    private volatile CountDownLatch listenGate;
+    private volatile IOException failure;
+
+    public FakeIec21Port(String serialPortName) throws IOException {
+        super(new Builder(serialPortName), new SimulatedSerialPort(serialPortName));
+    }
+
+    public void holdReads() {
+        readGate = new CountDownLatch(1);
+    }
+
+    public void releaseReads() {
+        readGate.countDown();
+    }
+
+    public void holdListen() {
+        listenGate = new CountDownLatch(1);
+    }
+
+    public void releaseListen() {
+        listenGate.countDown();
+    }
+
+    public void failReads(IOException failure) {
+        this.failure = failure;
+    }
+
+    @Override
+    public DataMessage read() throws IOException {
+        return read(getDeviceAddress(), ReadPriority.NORMAL, 0);
+    }
+
+    @Override
+    public DataMessage read(String deviceAddress) throws IOException {
+        return read(deviceAddress, ReadPriority.NORMAL, 0);
+    }
+
+    @Override
+    public DataMessage read(String deviceAddress, ReadPriority priority, int queueTimeout) throws IOException {
+        numReads.incrementAndGet();
+        readStarted.countDown();
+        await(readGate);
+        if (failure != null) {
+            throw failure;
+        }
+        return dataMessage(getSerialPortName() + deviceAddress);
+    }
+
+    @Override
+    public void listen(ModeDListener listener, Executor executor) throws IOException {
+        numListens.incrementAndGet();
+        listenStarted.countDown();
+        await(listenGate);
+        if (this.listener != null) {
+            throw new IOException("Port is already listening for mode D messages");
+        }
+        this.listener = listener;
+    }
+
+    @Override
+    public void stopListening() {
+        listener = null;
+    }
+
+    /**
+     * Adds this port to the given manager without opening its serial port.
+     */
+    public void addTo(MeterAccessManager manager) throws IOException {
+        manager.addPort(this);
+    }
+
+    /**
+     * Returns a mode D data message of the given meter with a single data set.
+     */
+    public static DataMessage dataMessage(String meterId) throws IOException {
+        String message = "/ISK5\\2" + meterId + "\r\n\r\n1.8.0(0001234.5*kWh)\r\n!\r\n";
+        DataInputStream is = new DataInputStream(new ByteArrayInputStream(message.getBytes(Helper.ASCII_CHARSET)));
+        return DataMessage.readModeDDataMessage(is, new IdentificationMessage(is));
+    }
+
+    /**
+     * Returns a meter identification as if it had been returned by {@link Iec21Port#identify(String)}.
+     */
+    public static MeterIdentification meterIdentification(String serialPortName, int initialBaudRate,
+            String requestStartCharacters, String deviceAddress, String manufacturerId, String meterId,
+            String enhancedId, char protocolMode, int maxBaudRate, int responseTime) {
+        return new MeterIdentification(serialPortName, initialBaudRate, requestStartCharacters, deviceAddress,
+                manufacturerId, meterId, enhancedId, protocolMode, maxBaudRate, responseTime);
+    }
+
+    private static void await(CountDownLatch gate) throws InterruptedIOException {
+        if (gate != null) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while held.");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+package org.openmuc.j62056;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.j62056.internal.Helper;
+import org.openmuc.jrxtx.DataBits;
+import org.openmuc.jrxtx.FlowControl;
+import org.openmuc.jrxtx.Parity;
+import org.openmuc.jrxtx.SerialPort;
+import org.openmuc.jrxtx.SerialPortException;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
+import org.openmuc.jrxtx.StopBits;
+
+/**
+ * A serial port connected to a simulated meter. Everything written to the port is recorded. Bytes sent by the meter are
+ * queued with {@link #send(String)} or as the scripted answer to a request, see {@link #answer(String, int,
+ * String...)}. Reads block until bytes are available or the serial port timeout has elapsed and, like the jrxtx driver,
+ * ignore interrupts. A port that was closed to abort a read is opened again by the {@link Iec21Port}, so the simulated
+ * meter stays connected.
+ * <p>
+ * The tests are in {@code org.openmuc.j62056.test}. This fixture is in the package of the library because
+ * {@link #openPort(Iec21Port.Builder)} uses the package-private constructor of {@link Iec21Port} that replaces the
+ * opening of the serial port.
+ */
+public class SimulatedSerialPort implements SerialPort, Iec21Port.SerialPortOpener {
+
+    private final String portName;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final StringBuilder unansweredOutput = new StringBuilder();
+    private final Map<String, Answer> answers = new HashMap<>();
+    private final List<Integer> requestBaudRates = new ArrayList<>();
+    private final LinkedList<Byte> input = new LinkedList<>();
+    private volatile boolean closed = false;
+    private volatile int baudRate = 300;
+    private volatile int serialPortTimeout = 0;
+
+    private static class Answer {
+
+        private final int chunkInterval;
+        private final String[] chunks;
+
+        private Answer(int chunkInterval, String[] chunks) {
+            this.chunkInterval = chunkInterval;
+            this.chunks = chunks;
+        }
+    }
+
+    public SimulatedSerialPort(String portName) {
+        this.portName = portName;
+    }
+
+    /**
+     * Makes the meter answer the given request with the given chunks. The first chunk is sent immediately, the
+     * following ones with the given interval in ms in between.
+     */
+    public void answer(String request, int chunkInterval, String... chunks) {
+        synchronized (answers) {
+            answers.put(request, new Answer(chunkInterval, chunks));
+        }
+    }
+
+    /**
+     * Queues bytes sent by the meter.
+     */
+    public void send(String bytes) {
+        synchronized (input) {
+            for (byte b : bytes.getBytes(Helper.ASCII_CHARSET)) {
+                input.add(b);
+            }
+            input.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the data block of a mode A, B or C response with the given data sets, including the block check
+     * character.
+     */
+    public static String dataBlock(String dataSets) {
+        String block = dataSets + "!\r\n\u0003";
+        int bcc = 0;
+        for (int i = 0; i < block.length(); i++) {
+            bcc ^= block.charAt(i);
+        }
+        return "\u0002" + block + (char) bcc;
+    }
+
+    /**
+     * Returns the baud rates at which the scripted requests were received, in the order they were received.
+     */
+    public List<Integer> getRequestBaudRates() {
+        synchronized (answers) {
+            return new ArrayList<>(requestBaudRates);
+        }
+    }
+
+    public byte[] getWrittenBytes() {
+        synchronized (out) {
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Creates a port that uses this serial port instead of opening one by name.
+     */
+    public Iec21Port openPort(Iec21Port.Builder builder) throws IOException {
+        return new Iec21Port(builder, this);
+    }
+
+    @Override
+    public SerialPort open(String serialPortName, int baudRate) {
+        closed = false;
+        this.baudRate = baudRate;
+        return this;
+    }
+
+    private void written(int b) {
+        Answer answer = null;
+        synchronized (answers) {
+            unansweredOutput.append((char) (b & 0xff));
+            for (Map.Entry<String, Answer> entry : answers.entrySet()) {
+                if (unansweredOutput.toString().endsWith(entry.getKey())) {
+                    answer = entry.getValue();
+                    requestBaudRates.add(baudRate);
+                    unansweredOutput.setLength(0);
+                    break;
+                }
+            }
+        }
+        if (answer != null) {
+            sendAnswer(answer);
+        }
+    }
+
+    private void sendAnswer(final Answer answer) {
+        send(answer.chunks[0]);
+        if (answer.chunks.length == 1) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i < answer.chunks.length; i++) {
+                    try {
+                        Thread.sleep(answer.chunkInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    send(answer.chunks[i]);
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                synchronized (input) {
+                    long timeout = serialPortTimeout;
+                    long waitUntil = System.nanoTime() + timeout * 1000000L;
+                    while (input.isEmpty()) {
+                        if (closed) {
+                            throw new SerialPortException("Serial port has been closed.");
+                        }
+                        long remaining = (timeout == 0) ? 0 : waitUntil - System.nanoTime();
+                        if (timeout != 0 && remaining <= 0) {
+                            throw new SerialPortTimeoutException("Timed out");
+                        }
+                        try {
+                            input.wait(remaining / 1000000, (int) (remaining % 1000000));
+                        } catch (InterruptedException e) {
+                            // like the jrxtx driver, which clears and ignores interrupts
+                        }
+                    }
+                    int n = 0;
+                    while (n < len && !input.isEmpty()) {
+                        b[off + n++] = input.removeFirst();
+                    }
+                    return n;
+                }
+            }
+
+            @Override
+            public int available() {
+                synchronized (input) {
+                    return input.size();
+                }
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                synchronized (out) {
+                    out.write(b);
+                }
+                written(b);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (input) {
+            input.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getPortName() {
+        return portName;
+    }
+
+    @Override
+    public DataBits getDataBits() {
+        return DataBits.DATABITS_7;
+    }
+
+    @Override
+    public void setDataBits(DataBits dataBits) {
+    }
+
+    @Override
+    public Parity getParity() {
+        return Parity.EVEN;
+    }
+
+    @Override
+    public void setParity(Parity parity) {
+    }
+
+    @Override
+    public StopBits getStopBits() {
+        return StopBits.STOPBITS_1;
+    }
+
+    @Override
+    public void setStopBits(StopBits stopBits) {
+    }
+
+    @Override
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    @Override
+    public void setBaudRate(int baudRate) {
+        this.baudRate = baudRate;
+    }
+
+    @Override
+    public int getSerialPortTimeout() {
+        return serialPortTimeout;
+    }
+
+    @Override
+    public void setSerialPortTimeout(int serialPortTimeout) {
+        this.serialPortTimeout = serialPortTimeout;
+    }
+
+    @Override
+    public void setFlowControl(FlowControl flowControl) {
+    }
+
+    @Override
+    public FlowControl getFlowControl() {
+        return FlowControl.NONE;
+    }
+
+}
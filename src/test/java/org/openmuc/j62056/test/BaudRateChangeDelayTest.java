@@ -0,0 +1,109 @@
+package org.openmuc.j62056.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.internal.BaudRateChangeDelay;
+
+public class BaudRateChangeDelayTest {
+
+    // 6 characters at 300 baud
+    private static final int TRANSMISSION_TIME = 200;
+
+    @Test
+    public void testDelayWithoutCalibrationIsTotalDelay() {
+        Assert.assertEquals(250, new BaudRateChangeDelay("uncalibrated", 250, false).getDelay(6, 300));
+        Assert.assertEquals(TRANSMISSION_TIME, new BaudRateChangeDelay("uncalibrated", 0, false).getDelay(6, 300));
+    }
+
+    @Test
+    public void testCalibrationConvergesAfterRepeatedFailures() {
+        BaudRateChangeDelay delay = new BaudRateChangeDelay("converge", 80, true);
+        Assert.assertEquals(TRANSMISSION_TIME + 80, delay.getDelay(6, 300));
+
+        delay.responseValid();
+        delay.responseValid();
+        Assert.assertEquals(20, delay.getAllowance());
+
+        for (int i = 1; i < BaudRateChangeDelay.MAX_CONSECUTIVE_FAILURES; i++) {
+            delay.responseInvalid();
+            Assert.assertEquals(40, delay.getAllowance());
+            delay.responseValid();
+            Assert.assertEquals(20, delay.getAllowance());
+        }
+        delay.responseInvalid();
+        Assert.assertEquals(40, delay.getAllowance());
+
+        delay.responseValid();
+        Assert.assertEquals(40, delay.getAllowance());
+        Assert.assertEquals(40, new BaudRateChangeDelay("converge", 80, true).getAllowance());
+    }
+
+    @Test
+    public void testHalvedAllowanceThatWorksResetsFailures() {
+        BaudRateChangeDelay delay = new BaudRateChangeDelay("reset", 80, true);
+        delay.responseValid();
+        for (int i = 1; i < BaudRateChangeDelay.MAX_CONSECUTIVE_FAILURES; i++) {
+            delay.responseInvalid();
+            delay.responseValid();
+        }
+        Assert.assertEquals(40, delay.getAllowance());
+
+        // 40 works, so 20 gets the full number of attempts
+        delay.responseValid();
+        Assert.assertEquals(20, delay.getAllowance());
+        for (int i = 1; i < BaudRateChangeDelay.MAX_CONSECUTIVE_FAILURES; i++) {
+            delay.responseInvalid();
+            Assert.assertEquals(40, delay.getAllowance());
+            delay.responseValid();
+            Assert.assertEquals(20, delay.getAllowance());
+        }
+    }
+
+    @Test
+    public void testRepeatedFailuresAfterConvergenceRaiseAllowance() {
+        BaudRateChangeDelay.restoreCalibratedAllowance("raise", 30);
+        BaudRateChangeDelay delay = new BaudRateChangeDelay("raise", 100, true);
+
+        delay.responseInvalid();
+        delay.responseInvalid();
+        delay.responseValid();
+        delay.responseInvalid();
+        delay.responseInvalid();
+        Assert.assertEquals(30, delay.getAllowance());
+
+        delay.responseInvalid();
+        Assert.assertEquals(60, delay.getAllowance());
+        for (int i = 0; i < BaudRateChangeDelay.MAX_CONSECUTIVE_FAILURES; i++) {
+            delay.responseInvalid();
+        }
+        Assert.assertEquals(100, delay.getAllowance());
+        for (int i = 0; i < BaudRateChangeDelay.MAX_CONSECUTIVE_FAILURES; i++) {
+            delay.responseInvalid();
+        }
+        Assert.assertEquals(100, delay.getAllowance());
+
+        delay.responseValid();
+        Assert.assertEquals(100, delay.getAllowance());
+        Assert.assertEquals(100, (int) BaudRateChangeDelay.getCalibratedAllowances().get("raise"));
+    }
+
+    @Test
+    public void testFailureBeforeShrinkingKeepsAllowance() {
+        BaudRateChangeDelay delay = new BaudRateChangeDelay("revert", 60, true);
+        delay.responseInvalid();
+        Assert.assertEquals(60, delay.getAllowance());
+        delay.responseValid();
+        Assert.assertEquals(30, delay.getAllowance());
+    }
+
+    @Test
+    public void testRestoredAllowanceIsNotCalibratedAgain() {
+        BaudRateChangeDelay.restoreCalibratedAllowance("restored", 15);
+        BaudRateChangeDelay delay = new BaudRateChangeDelay("restored", 100, true);
+        Assert.assertEquals(15, delay.getAllowance());
+        delay.responseValid();
+        Assert.assertEquals(15, delay.getAllowance());
+        Assert.assertEquals(15, (int) BaudRateChangeDelay.getCalibratedAllowances().get("restored"));
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.BusPoller;
+import org.openmuc.j62056.BusPollerListener;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.ReadPriority;
+import org.openmuc.j62056.ThreadFactories;
+
+public class BusPollerTest {
+
+    private static class AbsentMeterPort extends FakeIec21Port {
+
+        private final String absentDeviceAddress;
+        private final IOException failure;
+        private final AtomicInteger numAbsentReads = new AtomicInteger();
+
+        private AbsentMeterPort(String absentDeviceAddress) throws IOException {
+            this(absentDeviceAddress, new InterruptedIOException("no answer"));
+        }
+
+        private AbsentMeterPort(String absentDeviceAddress, IOException failure) throws IOException {
+            super("bus");
+            this.absentDeviceAddress = absentDeviceAddress;
+            this.failure = failure;
+        }
+
+        @Override
+        public DataMessage read(String deviceAddress, ReadPriority priority, int queueTimeout) throws IOException {
+            if (deviceAddress.equals(absentDeviceAddress)) {
+                numAbsentReads.incrementAndGet();
+                throw failure;
+            }
+            return super.read(deviceAddress, priority, queueTimeout);
+        }
+    }
+
+    private static class RecordingListener implements BusPollerListener {
+
+        private final AtomicInteger numReceived = new AtomicInteger();
+        private final AtomicReference<IOException> terminatedBy = new AtomicReference<>();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        @Override
+        public void dataMessageReceived(String deviceAddress, DataMessage dataMessage) {
+            numReceived.incrementAndGet();
+        }
+
+        @Override
+        public void readFailed(String deviceAddress, IOException e) {
+        }
+
+        @Override
+        public void pollingTerminated(IOException e) {
+            terminatedBy.set(e);
+            terminated.countDown();
+        }
+    }
+
+    @Test
+    public void testBackoffIsTimeBased() throws Exception {
+        AbsentMeterPort port = new AbsentMeterPort("2");
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1", "2"), 0, 50, 1000, listener);
+
+        Assert.assertEquals(1, poller.pollCycle());
+        Assert.assertEquals(1, poller.pollCycle());
+        Assert.assertEquals(1, poller.pollCycle());
+        Assert.assertEquals(1, port.numAbsentReads.get());
+
+        Thread.sleep(70);
+        poller.pollCycle();
+        Assert.assertEquals(2, port.numAbsentReads.get());
+        poller.pollCycle();
+        Assert.assertEquals(2, port.numAbsentReads.get());
+    }
+
+    @Test
+    public void testPollingWaitsWhileAllMetersBackOff() throws Exception {
+        AbsentMeterPort port = new AbsentMeterPort("1");
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1"), 0, 10000, 10000, listener);
+
+        poller.start(ThreadFactories.platformThreadFactory("bus-poller-test-", true));
+        Thread.sleep(100);
+        poller.stop();
+        Assert.assertEquals(1, port.numAbsentReads.get());
+    }
+
+    @Test
+    public void testCycleInterval() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("bus");
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1"), 60, 0, 0, listener);
+
+        poller.start(ThreadFactories.platformThreadFactory("bus-poller-test-", true));
+        Thread.sleep(100);
+        poller.stop();
+        Assert.assertEquals(2, listener.numReceived.get());
+    }
+
+    @Test
+    public void testTerminationIsReported() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("bus");
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1"), 10, 0, 0, listener);
+
+        poller.start(ThreadFactories.platformThreadFactory("bus-poller-test-", true));
+        port.readStarted.await();
+        port.close();
+        Assert.assertTrue(listener.terminated.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals("Port is closed", listener.terminatedBy.get().getMessage());
+    }
+
+    @Test
+    public void testRespondingMeterIsNotBackedOff() throws Exception {
+        AbsentMeterPort port = new AbsentMeterPort("2", new IOException("Block check character (BCC) does not match."));
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1", "2"), 0, 10000, 10000, listener);
+
+        poller.pollCycle();
+        poller.pollCycle();
+        Assert.assertEquals(2, port.numAbsentReads.get());
+    }
+
+    @Test
+    public void testPollingCanBeRestartedAfterInterrupt() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("bus");
+        RecordingListener listener = new RecordingListener();
+        BusPoller poller = new BusPoller(port, Arrays.asList("1"), 10000, 0, 0, listener);
+        final AtomicReference<Thread> pollingThread = new AtomicReference<>();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bus-poller-test");
+                thread.setDaemon(true);
+                pollingThread.set(thread);
+                return thread;
+            }
+        };
+
+        poller.start(threadFactory);
+        port.readStarted.await();
+        Thread first = pollingThread.get();
+        first.interrupt();
+        first.join(1000);
+        Assert.assertFalse(first.isAlive());
+
+        int numReceived = listener.numReceived.get();
+        poller.start(threadFactory);
+        Assert.assertTrue(pollingThread.get() != first);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (listener.numReceived.get() == numReceived && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        poller.stop();
+        Assert.assertEquals(numReceived + 1, listener.numReceived.get());
+        Assert.assertEquals(1, listener.terminated.getCount());
+    }
+
+}
@@ -0,0 +1,134 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.CachingReader;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.ReadPriority;
+
+public class CachingReaderTest {
+
+    @Test
+    public void testConcurrentReadsAreCoalesced() throws Exception {
+        final FakeIec21Port port = new FakeIec21Port("p1");
+        final CachingReader reader = new CachingReader(10, 60000);
+        port.holdReads();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Callable<DataMessage> read = new Callable<DataMessage>() {
+                @Override
+                public DataMessage call() throws IOException {
+                    return reader.read(port, "1", ReadPriority.NORMAL, 0);
+                }
+            };
+            Future<DataMessage> leader = executor.submit(read);
+            port.readStarted.await();
+            Future<DataMessage> follower1 = executor.submit(read);
+            Future<DataMessage> follower2 = executor.submit(read);
+            while (reader.getNumCoalesced() < 2) {
+                Thread.sleep(1);
+            }
+            port.releaseReads();
+
+            DataMessage dataMessage = leader.get();
+            Assert.assertTrue(follower1.get() == dataMessage);
+            Assert.assertTrue(follower2.get() == dataMessage);
+            Assert.assertEquals(1, port.numReads.get());
+            Assert.assertEquals(1, reader.getNumMisses());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotCached() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        CachingReader reader = new CachingReader(10, 60000);
+        port.failReads(new IOException("no answer"));
+        try {
+            reader.read(port, "1");
+            Assert.fail("IOException expected");
+        } catch (IOException e) {
+            Assert.assertEquals("no answer", e.getMessage());
+        }
+        Assert.assertEquals(0, reader.size());
+    }
+
+    @Test
+    public void testEntriesExpireAfterMaxAge() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        CachingReader reader = new CachingReader(10, 60000);
+        reader.setMaxAge(port, "1", 20);
+
+        DataMessage first = reader.read(port, "1");
+        Assert.assertTrue(reader.read(port, "1") == first);
+        Assert.assertEquals(1, reader.getNumHits());
+        Assert.assertEquals(1, port.numReads.get());
+
+        Thread.sleep(40);
+        reader.removeExpired();
+        Assert.assertEquals(0, reader.size());
+        Assert.assertFalse(reader.read(port, "1") == first);
+        Assert.assertEquals(2, port.numReads.get());
+
+        reader.read(port, "2");
+        Assert.assertEquals(2, reader.size());
+        Thread.sleep(40);
+        reader.removeExpired();
+        Assert.assertEquals(1, reader.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        CachingReader reader = new CachingReader(2, 60000);
+        reader.read(port, "1");
+        reader.read(port, "2");
+        reader.read(port, "1");
+        reader.read(port, "3");
+        Assert.assertEquals(2, reader.size());
+        Assert.assertEquals(1, reader.getNumEvictions());
+
+        reader.read(port, "1");
+        Assert.assertEquals(3, port.numReads.get());
+    }
+
+    @Test
+    public void testClosedPortsAreRemoved() throws Exception {
+        FakeIec21Port closedPort = new FakeIec21Port("p1");
+        FakeIec21Port openPort = new FakeIec21Port("p2");
+        CachingReader reader = new CachingReader(10, 60000);
+        reader.read(closedPort, "1");
+        reader.read(openPort, "1");
+
+        closedPort.close();
+        reader.removeExpired();
+        Assert.assertEquals(1, reader.size());
+
+        reader.remove(openPort);
+        Assert.assertEquals(0, reader.size());
+    }
+
+    @Test
+    public void testInvalidateRemovesOnlyTheGivenMeter() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        CachingReader reader = new CachingReader(10, 60000);
+        reader.read(port, "1");
+        reader.read(port, "2");
+
+        reader.invalidate(port, "1");
+        Assert.assertEquals(1, reader.size());
+        reader.read(port, "1");
+        reader.read(port, "2");
+        Assert.assertEquals(3, port.numReads.get());
+    }
+
+}
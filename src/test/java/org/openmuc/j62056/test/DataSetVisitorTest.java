@@ -0,0 +1,112 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataSet;
+import org.openmuc.j62056.DataSetVisitor;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.ManufacturerProfile;
+import org.openmuc.j62056.ManufacturerProfileRegistry;
+import org.openmuc.j62056.SimulatedSerialPort;
+
+public class DataSetVisitorTest {
+
+    private static final String REQUEST = "/?!\r\n";
+    private static final String IDENTIFICATION = "/ISK5MT1\r\n";
+    private static final String ACKNOWLEDGE_9600 = "\u0006050\r\n";
+    private static final String DATA_SETS = "1.8.0(0001234.5*kWh)\r\n2.8.0(0000012.3*kWh)\r\n"
+            + "C.1.0(12345678)\r\n";
+
+    private static class RecordingVisitor implements DataSetVisitor {
+
+        private final List<String> events = new ArrayList<>();
+        private long firstDataSetAt = 0;
+        private long endAt = 0;
+
+        @Override
+        public void startDataMessage(String manufacturerId, String meterId, String enhancedId) {
+            events.add("start " + manufacturerId + " " + meterId);
+        }
+
+        @Override
+        public void visitDataSet(DataSet dataSet) {
+            if (firstDataSetAt == 0) {
+                firstDataSetAt = System.nanoTime();
+            }
+            events.add(dataSet.getAddress() + "=" + dataSet.getValue());
+        }
+
+        @Override
+        public void endDataMessage(boolean bccValid) {
+            endAt = System.nanoTime();
+            events.add("end " + bccValid);
+        }
+    }
+
+    private static Iec21Port openPort(SimulatedSerialPort serialPort, String... dataChunks) throws IOException {
+        serialPort.answer(REQUEST, 0, IDENTIFICATION);
+        serialPort.answer(ACKNOWLEDGE_9600, 1000, dataChunks);
+        return serialPort.openPort(new Iec21Port.Builder("sim").setTimeout(5000));
+    }
+
+    @Test
+    public void testDataSetsAreVisitedInOrderWhileReceiving() throws IOException {
+        String dataBlock = SimulatedSerialPort.dataBlock(DATA_SETS);
+        int split = dataBlock.indexOf("2.8.0");
+        Iec21Port port = openPort(new SimulatedSerialPort("sim"), dataBlock.substring(0, split),
+                dataBlock.substring(split));
+        RecordingVisitor visitor = new RecordingVisitor();
+        try {
+            port.read(visitor);
+        } finally {
+            port.close();
+        }
+        Assert.assertEquals(Arrays.asList("start ISK MT1", "1.8.0=0001234.5", "2.8.0=0000012.3", "C.1.0=12345678",
+                "end true"), visitor.events);
+        // the first data set was visited before the rest of the message had been sent
+        Assert.assertTrue((visitor.endAt - visitor.firstDataSetAt) / 1000000 >= 500);
+    }
+
+    @Test
+    public void testBccMismatchIsReportedToVisitor() throws IOException {
+        String dataBlock = SimulatedSerialPort.dataBlock(DATA_SETS);
+        char bcc = dataBlock.charAt(dataBlock.length() - 1);
+        String corrupted = dataBlock.substring(0, dataBlock.length() - 1) + (char) (bcc ^ 0x01);
+        Iec21Port port = openPort(new SimulatedSerialPort("sim"), corrupted);
+        RecordingVisitor visitor = new RecordingVisitor();
+        try {
+            port.read(visitor);
+        } finally {
+            port.close();
+        }
+        Assert.assertEquals(5, visitor.events.size());
+        Assert.assertEquals("end false", visitor.events.get(4));
+    }
+
+    @Test
+    public void testProfileRegistersFilterVisitedDataSets() throws IOException {
+        ManufacturerProfileRegistry profiles = new ManufacturerProfileRegistry();
+        profiles.register(new ManufacturerProfile.Builder("ISK")
+                .setRegisters(new HashSet<>(Arrays.asList("1.8.0", "C.1.0")))
+                .build());
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        serialPort.answer(REQUEST, 0, IDENTIFICATION);
+        serialPort.answer(ACKNOWLEDGE_9600, 0, SimulatedSerialPort.dataBlock(DATA_SETS));
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setManufacturerProfiles(profiles));
+        RecordingVisitor visitor = new RecordingVisitor();
+        try {
+            port.read(visitor);
+        } finally {
+            port.close();
+        }
+        Assert.assertEquals(Arrays.asList("start ISK MT1", "1.8.0=0001234.5", "C.1.0=12345678", "end true"),
+                visitor.events);
+    }
+
+}
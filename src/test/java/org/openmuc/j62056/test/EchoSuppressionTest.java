@@ -0,0 +1,45 @@
+package org.openmuc.j62056.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.internal.EchoSuppressingInputStream;
+import org.openmuc.j62056.internal.Helper;
+
+public class EchoSuppressionTest {
+
+    private static final byte[] REQUEST = "/?!\r\n".getBytes(Helper.ASCII_CHARSET);
+    private static final byte[] IDENTIFICATION = "/LGZ4ZMD\r\n".getBytes(Helper.ASCII_CHARSET);
+
+    @Test
+    public void testEchoIsRemoved() throws IOException {
+        byte[] received = new byte[REQUEST.length + IDENTIFICATION.length];
+        System.arraycopy(REQUEST, 0, received, 0, REQUEST.length);
+        System.arraycopy(IDENTIFICATION, 0, received, REQUEST.length, IDENTIFICATION.length);
+
+        Assert.assertArrayEquals(IDENTIFICATION, sendAndReceive(received));
+    }
+
+    @Test
+    public void testDataWithoutEchoIsPassedOn() throws IOException {
+        Assert.assertArrayEquals(IDENTIFICATION, sendAndReceive(IDENTIFICATION));
+    }
+
+    private static byte[] sendAndReceive(byte[] received) throws IOException {
+        EchoSuppressingInputStream is = new EchoSuppressingInputStream(new ByteArrayInputStream(received));
+        OutputStream os = is.recordOutput(new ByteArrayOutputStream());
+        os.write(REQUEST);
+
+        Assert.assertEquals(IDENTIFICATION.length, is.available());
+        byte[] data = new byte[IDENTIFICATION.length];
+        new DataInputStream(is).readFully(data);
+        Assert.assertEquals(-1, is.read());
+        return data;
+    }
+
+}
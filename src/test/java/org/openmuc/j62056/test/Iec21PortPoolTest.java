@@ -0,0 +1,132 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.Iec21PortPool;
+
+public class Iec21PortPoolTest {
+
+    private static class SlowClosingPort extends FakeIec21Port {
+
+        private SlowClosingPort(String serialPortName) throws IOException {
+            super(serialPortName);
+        }
+
+        @Override
+        public void close() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * Opens ports and fails if a serial port is opened while a port on it is still open.
+     */
+    private static class CheckingFactory implements Iec21PortPool.PortFactory {
+
+        private final List<Iec21Port> opened = new ArrayList<>();
+        private volatile boolean openedTwice = false;
+
+        @Override
+        public synchronized Iec21Port open(String serialPortName) throws IOException {
+            for (Iec21Port port : opened) {
+                if (!port.isClosed()) {
+                    openedTwice = true;
+                }
+            }
+            Iec21Port port = new SlowClosingPort(serialPortName);
+            opened.add(port);
+            return port;
+        }
+    }
+
+    @Test
+    public void testIdlePortIsReused() throws IOException {
+        CheckingFactory factory = new CheckingFactory();
+        Iec21PortPool pool = new Iec21PortPool(factory, 60000);
+        Iec21PortPool.Lease lease = pool.acquire("p1", 0);
+        Iec21Port port = lease.getPort();
+        lease.close();
+        Assert.assertEquals(1, pool.getNumIdlePorts());
+
+        lease = pool.acquire("p1", 0);
+        Assert.assertTrue(lease.getPort() == port);
+        lease.close();
+        pool.close();
+        Assert.assertTrue(port.isClosed());
+    }
+
+    @Test
+    public void testBrokenPortIsClosedBeforeItIsReopened() throws Exception {
+        final CheckingFactory factory = new CheckingFactory();
+        final Iec21PortPool pool = new Iec21PortPool(factory, 60000);
+        Iec21PortPool.Lease lease = pool.acquire("p1", 0);
+        Iec21Port brokenPort = lease.getPort();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Iec21Port> next = executor.submit(new Callable<Iec21Port>() {
+                @Override
+                public Iec21Port call() throws IOException {
+                    Iec21PortPool.Lease lease = pool.acquire("p1", 0);
+                    lease.close();
+                    return lease.getPort();
+                }
+            });
+            Thread.sleep(20);
+            lease.invalidate();
+            lease.close();
+
+            Assert.assertFalse(next.get() == brokenPort);
+            Assert.assertTrue(brokenPort.isClosed());
+            Assert.assertFalse(factory.openedTwice);
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testEvictedPortIsClosedBeforeItIsReopened() throws Exception {
+        final CheckingFactory factory = new CheckingFactory();
+        final Iec21PortPool pool = new Iec21PortPool(factory, 1);
+        Iec21PortPool.Lease lease = pool.acquire("p1", 0);
+        Iec21Port evictedPort = lease.getPort();
+        lease.close();
+        Thread.sleep(5);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> eviction = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    pool.evictIdlePorts();
+                }
+            });
+            Thread.sleep(10);
+            lease = pool.acquire("p1", 0);
+            eviction.get();
+            Assert.assertFalse(lease.getPort() == evictedPort);
+            Assert.assertFalse(factory.openedTwice);
+            lease.close();
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+}
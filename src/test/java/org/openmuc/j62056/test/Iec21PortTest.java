@@ -0,0 +1,318 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.ConnectionState;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.Deadline;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.MeterIdentification;
+import org.openmuc.j62056.ModeDEventListener;
+import org.openmuc.j62056.ModeDListener;
+import org.openmuc.j62056.ReadCallback;
+import org.openmuc.j62056.SimulatedSerialPort;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
+
+public class Iec21PortTest {
+
+    private static final String DATA_BLOCK_START = "\u0002";
+    private static final String DATA_BLOCK_END = "!\r\n\u0003";
+
+    @Test
+    public void testIdentifyDiscardsDataOfModeBMeters() throws IOException {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        serialPort.answer("/?1!\r\n", 20, "/ISKCMT1\r\n", DATA_BLOCK_START + "1.8.0(0001234.5*kWh)\r\n",
+                "2.8.0(0000001.0*kWh)\r\n", DATA_BLOCK_END + "x");
+        serialPort.answer("/?2!\r\n", 30, "", "/ISK5MT2\r\n");
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim"));
+
+        MeterIdentification modeB = port.identify("1");
+        Assert.assertEquals('B', modeB.getProtocolMode());
+
+        MeterIdentification modeC = port.identify("2");
+        Assert.assertEquals('C', modeC.getProtocolMode());
+        Assert.assertEquals("MT2", modeC.getMeterId());
+        port.close();
+    }
+
+    @Test
+    public void testGapReadsFailWithInterruptedIOExceptionWhenListeningStops() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        final Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim"));
+        final AtomicReference<Runnable> receiver = new AtomicReference<>();
+        port.listen(new ModeDListener() {
+            @Override
+            public void newDataMessage(DataMessage dataMessage) {
+            }
+
+            @Override
+            public void exceptionWhileListening(Exception e) {
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                receiver.set(command);
+            }
+        });
+
+        final AtomicReference<IOException> callbackException = new AtomicReference<>();
+        Future<DataMessage> future = port.readWhileListening("1", 60000, new ReadCallback() {
+            @Override
+            public void dataMessageReceived(DataMessage dataMessage) {
+            }
+
+            @Override
+            public void readFailed(IOException e) {
+                callbackException.set(e);
+            }
+        });
+
+        // stop listening before the receiver has run the read
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                port.stopListening();
+            }
+        });
+        stopper.start();
+        while (stopper.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        receiver.get().run();
+        stopper.join();
+
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+        Assert.assertTrue(callbackException.get() instanceof InterruptedIOException);
+        Assert.assertEquals(0, serialPort.getWrittenBytes().length);
+        port.close();
+    }
+
+    private static final String REQUEST = "/?!\r\n";
+    private static final String IDENTIFICATION = "/ISK5MT1\r\n";
+    private static final String ACKNOWLEDGE_9600 = "\u0006050\r\n";
+    private static final String DATA_SET = "1.8.0(0001234.5*kWh)\r\n";
+
+    private static void answerNormally(SimulatedSerialPort serialPort) {
+        serialPort.answer(REQUEST, 0, IDENTIFICATION);
+        serialPort.answer(ACKNOWLEDGE_9600, 0, SimulatedSerialPort.dataBlock(DATA_SET));
+    }
+
+    @Test
+    public void testDeadlineCutsOffTricklingMeter() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        String[] trickle = new String[41];
+        trickle[0] = "\u0002";
+        for (int i = 1; i < trickle.length; i++) {
+            trickle[i] = DATA_SET;
+        }
+        serialPort.answer(REQUEST, 0, IDENTIFICATION);
+        serialPort.answer(ACKNOWLEDGE_9600, 25, trickle);
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim"));
+
+        long start = System.nanoTime();
+        try {
+            port.read(Deadline.after(300, TimeUnit.MILLISECONDS));
+            Assert.fail("InterruptedIOException expected");
+        } catch (InterruptedIOException e) {
+            // expected
+        }
+        long duration = (System.nanoTime() - start) / 1000000;
+        // the rest of the response is drained for up to 500 ms after the read is aborted
+        Assert.assertTrue("read took " + duration + " ms", duration < 1000);
+
+        // wait until the meter has stopped trickling
+        Thread.sleep(1000);
+        answerNormally(serialPort);
+        Assert.assertEquals("MT1", port.read(Deadline.after(5, TimeUnit.SECONDS)).getMeterId());
+        Assert.assertEquals(Arrays.asList(300, 300, 300, 300), serialPort.getRequestBaudRates());
+        port.close();
+    }
+
+    @Test
+    public void testAbortReadWhileWaitingForMeter() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        final Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setTimeout(5000));
+
+        Thread aborter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                port.abortRead();
+            }
+        });
+        aborter.start();
+        long start = System.nanoTime();
+        try {
+            port.read(Deadline.after(5, TimeUnit.SECONDS));
+            Assert.fail("InterruptedIOException expected");
+        } catch (InterruptedIOException e) {
+            Assert.assertFalse(e instanceof SerialPortTimeoutException);
+        }
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+        aborter.join();
+
+        answerNormally(serialPort);
+        Assert.assertEquals("MT1", port.read(Deadline.after(5, TimeUnit.SECONDS)).getMeterId());
+        port.close();
+    }
+
+    @Test
+    public void testInterruptAbortsReadWhileWaitingForMeter() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        final Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setTimeout(5000));
+
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+        final AtomicBoolean stillInterrupted = new AtomicBoolean();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    port.read(Deadline.after(5, TimeUnit.SECONDS));
+                } catch (IOException e) {
+                    exception.set(e);
+                }
+                stillInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        reader.start();
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        reader.interrupt();
+        reader.join(5000);
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+        Assert.assertTrue(exception.get() instanceof InterruptedIOException);
+        Assert.assertFalse(exception.get() instanceof SerialPortTimeoutException);
+        Assert.assertTrue(stillInterrupted.get());
+
+        answerNormally(serialPort);
+        Assert.assertEquals("MT1", port.read().getMeterId());
+        port.close();
+    }
+
+    private static class ConnectionRecorder implements ModeDEventListener {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public synchronized void newDataMessage(DataMessage dataMessage) {
+            events.add(dataMessage.getMeterId());
+        }
+
+        @Override
+        public void exceptionWhileListening(Exception e) {
+        }
+
+        @Override
+        public void bytesSkipped(int numBytes) {
+        }
+
+        @Override
+        public synchronized void connectionStateChanged(ConnectionState connectionState) {
+            events.add(connectionState.toString());
+        }
+
+        private synchronized List<String> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        private List<String> awaitEvent(String event) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!getEvents().contains(event) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            return getEvents();
+        }
+    }
+
+    private static String modeDMessage(String meterId) {
+        return "/ISK5\\2" + meterId + "\r\n\r\n" + DATA_SET + "!\r\n";
+    }
+
+    @Test
+    public void testListeningResumesAfterSerialPortIsLost() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setReconnectDelay(10));
+        ConnectionRecorder listener = new ConnectionRecorder();
+        port.listen(listener);
+        try {
+            serialPort.send(modeDMessage("m1"));
+            listener.awaitEvent("m1");
+
+            // like an unplugged USB adapter
+            serialPort.close();
+            listener.awaitEvent("CONNECTED");
+            Assert.assertEquals(ConnectionState.CONNECTED, port.getConnectionState());
+
+            serialPort.send(modeDMessage("m2"));
+            Assert.assertEquals("[m1, RECONNECTING, CONNECTED, m2]", listener.awaitEvent("m2").toString());
+        } finally {
+            port.stopListening();
+            port.close();
+        }
+    }
+
+    @Test
+    public void testStopListeningWhileReconnecting() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setReconnectDelay(60000));
+        ConnectionRecorder listener = new ConnectionRecorder();
+        port.listen(listener);
+        try {
+            serialPort.close();
+            Assert.assertEquals("[RECONNECTING]", listener.awaitEvent("RECONNECTING").toString());
+
+            long start = System.nanoTime();
+            port.stopListening();
+            Assert.assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+
+            // the port can be used again right away
+            answerNormally(serialPort);
+            Assert.assertEquals("MT1", port.read().getMeterId());
+        } finally {
+            port.close();
+        }
+    }
+
+    @Test
+    public void testCancelledAsyncReadReleasesPort() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setTimeout(5000));
+        try {
+            // the meter does not answer
+            Future<DataMessage> future = port.readAsync();
+            Thread.sleep(100);
+            long start = System.nanoTime();
+            Assert.assertTrue(future.cancel(true));
+            Assert.assertTrue(future.isCancelled());
+
+            answerNormally(serialPort);
+            Assert.assertEquals("MT1", port.readAsync().get(5, TimeUnit.SECONDS).getMeterId());
+            Assert.assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+            Assert.assertEquals(Arrays.asList(300, 300), serialPort.getRequestBaudRates());
+        } finally {
+            port.close();
+        }
+    }
+
+}
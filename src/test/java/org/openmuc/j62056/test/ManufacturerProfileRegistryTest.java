@@ -0,0 +1,95 @@
+package org.openmuc.j62056.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.ManufacturerProfile;
+import org.openmuc.j62056.ManufacturerProfileRegistry;
+
+public class ManufacturerProfileRegistryTest {
+
+    private static ManufacturerProfileRegistry load(String properties) throws IOException {
+        ManufacturerProfileRegistry registry = new ManufacturerProfileRegistry();
+        registry.load(new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)));
+        return registry;
+    }
+
+    @Test
+    public void testLoadParsesAllSettings() throws IOException {
+        ManufacturerProfileRegistry registry = load("# comment\n"
+                + "lgz.baudRateChangeDelay=50\n"
+                + "LGZ.dataTimeout = 3000\n"
+                + "LGZ.interByteTimeout=200\n"
+                + "LGZ.fixedBaudRate=true\n"
+                + "LGZ.acknowledgeMode=1\n"
+                + "LGZ.registers=1.8.0, 2.8.0 ,C.1.0\n"
+                + "ISK.dataTimeout=1000\n");
+
+        ManufacturerProfile profile = registry.get("Lgz");
+        Assert.assertNotNull(profile);
+        Assert.assertEquals("LGZ", profile.getManufacturerId());
+        Assert.assertEquals(50, profile.getBaudRateChangeDelay());
+        Assert.assertEquals(3000, profile.getDataTimeout());
+        Assert.assertEquals(200, profile.getInterByteTimeout());
+        Assert.assertEquals(Boolean.TRUE, profile.getFixedBaudRate());
+        Assert.assertEquals(Character.valueOf('1'), profile.getAcknowledgeMode());
+        Assert.assertEquals(3, profile.getRegisters().size());
+        Assert.assertTrue(profile.getRegisters().contains("2.8.0"));
+        Assert.assertTrue(profile.getRegisters().contains("C.1.0"));
+
+        ManufacturerProfile other = registry.get("ISK");
+        Assert.assertEquals(1000, other.getDataTimeout());
+        Assert.assertEquals(-1, other.getBaudRateChangeDelay());
+        Assert.assertNull(other.getFixedBaudRate());
+        Assert.assertNull(other.getAcknowledgeMode());
+        Assert.assertNull(other.getRegisters());
+        Assert.assertNull(registry.get("ABB"));
+    }
+
+    @Test
+    public void testLoadReplacesProfilesWithTheSameId() throws IOException {
+        ManufacturerProfileRegistry registry = load("LGZ.dataTimeout=3000\nLGZ.interByteTimeout=200\n");
+        registry.load(new ByteArrayInputStream("LGZ.dataTimeout=1000\n".getBytes(StandardCharsets.ISO_8859_1)));
+        ManufacturerProfile profile = registry.get("LGZ");
+        Assert.assertEquals(1000, profile.getDataTimeout());
+        Assert.assertEquals(-1, profile.getInterByteTimeout());
+    }
+
+    @Test
+    public void testLoadRejectsInvalidSettings() {
+        String[] invalid = { "LGZ.unknown=1\n", "LGZ.dataTimeout=fast\n", "LGZ.acknowledgeMode=12\n", "LGZ.acknowledgeMode=x\n", "noDot=1\n",
+                ".dataTimeout=1\n" };
+        for (String properties : invalid) {
+            ManufacturerProfileRegistry registry = new ManufacturerProfileRegistry();
+            try {
+                registry.load(new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)));
+                Assert.fail("IOException expected for " + properties);
+            } catch (IOException e) {
+                Assert.assertNull(registry.get("LGZ"));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidAcknowledgeModeIsRejected() {
+        for (char acknowledgeMode : new char[] { ' ', 'a', '\u0006' }) {
+            try {
+                new ManufacturerProfile.Builder("LGZ").setAcknowledgeMode(acknowledgeMode);
+                Assert.fail("IllegalArgumentException expected for " + (int) acknowledgeMode);
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                new Iec21Port.Builder("sim").setAcknowledgeMode(acknowledgeMode);
+                Assert.fail("IllegalArgumentException expected for " + (int) acknowledgeMode);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        Assert.assertEquals('6', (char) new ManufacturerProfile.Builder("LGZ").setAcknowledgeMode('6').build()
+                .getAcknowledgeMode());
+    }
+
+}
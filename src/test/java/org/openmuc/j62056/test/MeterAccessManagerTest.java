@@ -0,0 +1,120 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.MeterAccessManager;
+import org.openmuc.j62056.ModeDSubscriber;
+import org.openmuc.j62056.ModeDSubscription;
+import org.openmuc.j62056.ReadPriority;
+
+public class MeterAccessManagerTest {
+
+    private static class CompletionSubscriber implements ModeDSubscriber {
+
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(ModeDSubscription subscription) {
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(DataMessage dataMessage) {
+        }
+
+        @Override
+        public void exceptionWhileListening(Exception e) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    @Test
+    public void testCancelDoesNotAbortSharedRead() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterAccessManager manager = new MeterAccessManager(0, null);
+        port.addTo(manager);
+        port.holdReads();
+        try {
+            Future<DataMessage> cancelled = manager.readAsync("p1", "1", ReadPriority.NORMAL, null);
+            port.readStarted.await();
+            Future<DataMessage> shared = manager.readAsync("p1", "1", ReadPriority.NORMAL, null);
+            Thread.sleep(20);
+
+            Assert.assertTrue(cancelled.cancel(true));
+            port.releaseReads();
+            Assert.assertEquals("p11", shared.get(1, TimeUnit.SECONDS).getMeterId());
+            Assert.assertTrue(cancelled.isCancelled());
+            Assert.assertEquals(1, port.numReads.get());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void testSubscribeListensOnceWithoutBlockingOtherPorts() throws Exception {
+        final FakeIec21Port port = new FakeIec21Port("p1");
+        FakeIec21Port otherPort = new FakeIec21Port("p2");
+        final MeterAccessManager manager = new MeterAccessManager(0, null);
+        port.addTo(manager);
+        otherPort.addTo(manager);
+        port.holdListen();
+
+        final CompletionSubscriber subscriber1 = new CompletionSubscriber();
+        final CompletionSubscriber subscriber2 = new CompletionSubscriber();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> subscription1 = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    manager.subscribe("p1", subscriber1);
+                    return null;
+                }
+            });
+            port.listenStarted.await();
+            Future<?> subscription2 = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    manager.subscribe("p1", subscriber2);
+                    return null;
+                }
+            });
+
+            // the manager is not locked while the port starts listening
+            Assert.assertEquals("p21", manager.read("p2", "1", ReadPriority.NORMAL).getMeterId());
+
+            port.releaseListen();
+            subscription1.get(1, TimeUnit.SECONDS);
+            subscription2.get(1, TimeUnit.SECONDS);
+            Assert.assertEquals(1, port.numListens.get());
+            Assert.assertTrue(subscriber2.subscribed.await(1, TimeUnit.SECONDS));
+
+            manager.stopListening("p1");
+            Assert.assertNull(port.listener);
+            Assert.assertTrue(subscriber1.completed.await(1, TimeUnit.SECONDS));
+            Assert.assertTrue(subscriber2.completed.await(1, TimeUnit.SECONDS));
+
+            manager.subscribe("p1", new CompletionSubscriber());
+            Assert.assertEquals(2, port.numListens.get());
+            Assert.assertNotNull(port.listener);
+        } finally {
+            executor.shutdownNow();
+            manager.close();
+        }
+    }
+
+}
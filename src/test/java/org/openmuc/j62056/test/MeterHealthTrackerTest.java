@@ -0,0 +1,117 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.MeterHealthState;
+import org.openmuc.j62056.MeterHealthTracker;
+import org.openmuc.j62056.MeterQuarantinedException;
+
+public class MeterHealthTrackerTest {
+
+    private static final IOException TIMEOUT = new InterruptedIOException("Timed out");
+
+    private static MeterHealthState state(MeterHealthTracker tracker, Iec21Port port) {
+        return tracker.getHealth(port, "1").getState();
+    }
+
+    @Test
+    public void testQuarantineAfterThresholdAndProbe() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterHealthTracker tracker = new MeterHealthTracker(2, 50, 1000);
+
+        tracker.readFailed(port, "1", TIMEOUT);
+        Assert.assertEquals(MeterHealthState.HEALTHY, state(tracker, port));
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        tracker.readFailed(port, "1", TIMEOUT);
+        Assert.assertEquals(MeterHealthState.QUARANTINED, state(tracker, port));
+        Assert.assertFalse(tracker.allowRead(port, "1"));
+        Assert.assertEquals(0.19, tracker.getHealth(port, "1").getTimeoutRate(), 1e-9);
+
+        Thread.sleep(70);
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        Assert.assertEquals(MeterHealthState.PROBING, state(tracker, port));
+        Assert.assertFalse(tracker.allowRead(port, "1"));
+
+        tracker.readSucceeded(port, "1");
+        Assert.assertEquals(MeterHealthState.HEALTHY, state(tracker, port));
+        Assert.assertEquals(0, tracker.getHealth(port, "1").getNumConsecutiveFailures());
+        Assert.assertEquals(0, tracker.getHealth(port, "1").getNextProbe());
+    }
+
+    @Test
+    public void testFailedProbeDoublesBackoff() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterHealthTracker tracker = new MeterHealthTracker(1, 40, 1000);
+
+        tracker.readFailed(port, "1", TIMEOUT);
+        Thread.sleep(60);
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        tracker.readFailed(port, "1", new IOException("garbage"));
+        Assert.assertEquals(MeterHealthState.QUARANTINED, state(tracker, port));
+
+        Thread.sleep(60);
+        Assert.assertFalse(tracker.allowRead(port, "1"));
+        Thread.sleep(40);
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+    }
+
+    @Test
+    public void testInterruptedProbeIsRepeated() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterHealthTracker tracker = new MeterHealthTracker(1, 0, 0);
+
+        tracker.readFailed(port, "1", TIMEOUT);
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        Thread.currentThread().interrupt();
+        try {
+            tracker.readFailed(port, "1", new InterruptedIOException("Interrupted"));
+        } finally {
+            Thread.interrupted();
+        }
+        Assert.assertEquals(MeterHealthState.QUARANTINED, state(tracker, port));
+        Assert.assertEquals(1, tracker.getHealth(port, "1").getNumConsecutiveFailures());
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+    }
+
+    @Test
+    public void testLostProbeTimesOut() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterHealthTracker tracker = new MeterHealthTracker(1, 0, 0, 50);
+
+        tracker.readFailed(port, "1", TIMEOUT);
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        Assert.assertFalse(tracker.allowRead(port, "1"));
+
+        Thread.sleep(70);
+        Assert.assertEquals(MeterHealthState.QUARANTINED, state(tracker, port));
+        Assert.assertTrue(tracker.allowRead(port, "1"));
+        Assert.assertEquals(MeterHealthState.PROBING, state(tracker, port));
+    }
+
+    @Test
+    public void testReadThroughTrackerRejectsQuarantinedMeters() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        MeterHealthTracker tracker = new MeterHealthTracker(1, 60000, 60000);
+        port.failReads(new IOException("no answer"));
+        try {
+            tracker.read(port, "1");
+            Assert.fail("IOException expected");
+        } catch (MeterQuarantinedException e) {
+            Assert.fail("first read must reach the meter");
+        } catch (IOException e) {
+            Assert.assertEquals("no answer", e.getMessage());
+        }
+        try {
+            tracker.read(port, "1");
+            Assert.fail("MeterQuarantinedException expected");
+        } catch (MeterQuarantinedException e) {
+            Assert.assertEquals(1, port.numReads.get());
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.openmuc.j62056.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.MeterInventory;
+
+public class MeterInventoryTest {
+
+    @Test
+    public void testSaveAndLoadKeepEscapedFields() throws IOException {
+        File file = File.createTempFile("inventory", ".txt");
+        try {
+            MeterInventory inventory = new MeterInventory(file);
+            inventory.recordIdentification(FakeIec21Port.meterIdentification("/dev/tty\tUSB0", 300, "/?", "12\n34", "ISK",
+                    "MT\\382", "2\r", 'C', 9600, 250));
+            inventory.recordReadout("/dev/tty\tUSB0", "12\n34", 4000);
+            inventory.recordReadout("/dev/tty\tUSB0", "12\n34", 8000);
+            inventory.save();
+
+            MeterInventory loaded = new MeterInventory(file);
+            loaded.load();
+            Assert.assertEquals(1, loaded.getAll().size());
+            MeterInventory.Entry entry = loaded.get("/dev/tty\tUSB0", "12\n34");
+            Assert.assertNotNull(entry);
+            Assert.assertEquals("ISK", entry.getManufacturerId());
+            Assert.assertEquals("MT\\382", entry.getMeterId());
+            Assert.assertEquals("2\r", entry.getEnhancedId());
+            Assert.assertEquals('C', entry.getProtocolMode());
+            Assert.assertEquals(300, entry.getInitialBaudRate());
+            Assert.assertEquals("/?", entry.getRequestStartCharacters());
+            Assert.assertEquals(9600, entry.getMaxBaudRate());
+            Assert.assertEquals(250, entry.getResponseTime());
+            Assert.assertEquals(5000, entry.getReadoutDuration());
+            Assert.assertEquals(2, entry.getNumReadouts());
+            Assert.assertTrue(entry.getLastReadout() > 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testReadoutsOfUnknownMetersAreIgnored() {
+        MeterInventory inventory = new MeterInventory(new File("unused"));
+        inventory.recordReadout("/dev/ttyUSB0", "1", 1000);
+        Assert.assertNull(inventory.get("/dev/ttyUSB0", "1"));
+    }
+
+}
@@ -0,0 +1,234 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.ModeDListener;
+import org.openmuc.j62056.SimulatedSerialPort;
+
+public class ModeDParserTest {
+
+    private static final int NUM_MESSAGES = 40;
+
+    private static class RecordingListener implements ModeDListener {
+
+        private final List<String> received = new ArrayList<>();
+
+        @Override
+        public synchronized void newDataMessage(DataMessage dataMessage) {
+            received.add(dataMessage.getMeterId());
+        }
+
+        @Override
+        public synchronized void exceptionWhileListening(Exception e) {
+            received.add("exception");
+        }
+
+        private synchronized List<String> getReceived() {
+            return new ArrayList<>(received);
+        }
+
+        private List<String> awaitReceived(int numReceived) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (getReceived().size() < numReceived && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            return getReceived();
+        }
+    }
+
+    /**
+     * Holds the parse tasks until they are run by the test.
+     */
+    private static class HoldingExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+        private boolean holding = true;
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                if (holding) {
+                    tasks.add(command);
+                    return;
+                }
+            }
+            command.run();
+        }
+
+        private synchronized int getNumHeld() {
+            return tasks.size();
+        }
+
+        private void runFirst() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.remove(0);
+            }
+            task.run();
+        }
+
+        private void release() {
+            List<Runnable> held;
+            synchronized (this) {
+                holding = false;
+                held = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            for (Runnable task : held) {
+                task.run();
+            }
+        }
+    }
+
+    private static String message(String meterId) {
+        return "/ISK5\\2" + meterId + "\r\n\r\n1.8.0(0001234.5*kWh)\r\n!\r\n";
+    }
+
+    private static Iec21Port listen(Executor parserExecutor, ModeDListener listener) throws IOException {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            serialPort.send(message("m" + i));
+        }
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim").setParserExecutor(parserExecutor));
+        port.listen(listener);
+        return port;
+    }
+
+    @Test
+    public void testRejectedFrameDoesNotStallLaterFrames() throws Exception {
+        Executor rejectingEverySecondTask = new Executor() {
+            private int numTasks = 0;
+
+            @Override
+            public void execute(Runnable command) {
+                if (numTasks++ % 2 == 1) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                command.run();
+            }
+        };
+        RecordingListener listener = new RecordingListener();
+        Iec21Port port = listen(rejectingEverySecondTask, listener);
+        try {
+            List<String> received = listener.awaitReceived(NUM_MESSAGES);
+            Assert.assertEquals(NUM_MESSAGES, received.size());
+            Assert.assertEquals("m0", received.get(0));
+            Assert.assertEquals("exception", received.get(1));
+            Assert.assertEquals("m2", received.get(2));
+            Assert.assertEquals("m" + (NUM_MESSAGES - 2), received.get(NUM_MESSAGES - 2));
+        } finally {
+            port.stopListening();
+            port.close();
+        }
+    }
+
+    @Test
+    public void testReceiverWaitsForOutstandingFrames() throws Exception {
+        HoldingExecutor executor = new HoldingExecutor();
+        RecordingListener listener = new RecordingListener();
+        Iec21Port port = listen(executor, listener);
+        try {
+            Thread.sleep(200);
+            int numHeld = executor.getNumHeld();
+            Assert.assertTrue(numHeld > 0);
+            Assert.assertTrue(numHeld < NUM_MESSAGES);
+
+            // delivering the first message lets the receiver submit the next frame
+            executor.runFirst();
+            Assert.assertEquals("[m0]", listener.awaitReceived(1).toString());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (executor.getNumHeld() < numHeld && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(numHeld, executor.getNumHeld());
+        } finally {
+            executor.release();
+            port.stopListening();
+            port.close();
+        }
+    }
+
+    @Test
+    public void testStopListeningWaitsForDelivery() throws Exception {
+        HoldingExecutor executor = new HoldingExecutor();
+        RecordingListener listener = new RecordingListener();
+        final Iec21Port port = listen(executor, listener);
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (executor.getNumHeld() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Thread stopper = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    port.stopListening();
+                }
+            });
+            stopper.start();
+            stopper.join(200);
+            Assert.assertTrue(stopper.isAlive());
+
+            executor.release();
+            stopper.join(5000);
+            Assert.assertFalse(stopper.isAlive());
+            int numReceived = listener.getReceived().size();
+            Assert.assertTrue(numReceived > 0);
+            Thread.sleep(100);
+            Assert.assertEquals(numReceived, listener.getReceived().size());
+        } finally {
+            executor.release();
+            port.close();
+        }
+    }
+
+    @Test
+    public void testListenerExceptionIsReportedAndDeliveryContinues() throws Exception {
+        final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "parser-test");
+                thread.setDaemon(true);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        uncaught.add(e);
+                    }
+                });
+                return thread;
+            }
+        });
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public synchronized void newDataMessage(DataMessage dataMessage) {
+                super.newDataMessage(dataMessage);
+                if (dataMessage.getMeterId().equals("m0")) {
+                    throw new IllegalStateException("listener failed");
+                }
+            }
+        };
+        Iec21Port port = listen(executor, listener);
+        try {
+            Assert.assertEquals(NUM_MESSAGES, listener.awaitReceived(NUM_MESSAGES).size());
+            Assert.assertEquals(1, uncaught.size());
+            Assert.assertEquals("listener failed", uncaught.get(0).getMessage());
+        } finally {
+            port.stopListening();
+            port.close();
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.ModeDPublisher;
+import org.openmuc.j62056.ModeDPublisher.OverflowPolicy;
+import org.openmuc.j62056.ModeDSubscriber;
+import org.openmuc.j62056.ModeDSubscription;
+
+public class ModeDPublisherTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static class RecordingSubscriber implements ModeDSubscriber {
+
+        private final List<String> meterIds = new ArrayList<>();
+        private ModeDSubscription subscription;
+        private boolean completed = false;
+
+        @Override
+        public void onSubscribe(ModeDSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DataMessage dataMessage) {
+            meterIds.add(dataMessage.getMeterId());
+        }
+
+        @Override
+        public void exceptionWhileListening(Exception e) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static RecordingSubscriber publishThree(OverflowPolicy overflowPolicy) throws IOException {
+        ModeDPublisher publisher = new ModeDPublisher(overflowPolicy, 2, DIRECT_EXECUTOR);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.newDataMessage(FakeIec21Port.dataMessage("m1"));
+        publisher.newDataMessage(FakeIec21Port.dataMessage("m2"));
+        publisher.newDataMessage(FakeIec21Port.dataMessage("m3"));
+        return subscriber;
+    }
+
+    @Test
+    public void testDropOldest() throws IOException {
+        RecordingSubscriber subscriber = publishThree(OverflowPolicy.DROP_OLDEST);
+        Assert.assertEquals(1, subscriber.subscription.getNumDropped());
+        subscriber.subscription.request(10);
+        Assert.assertEquals("[m2, m3]", subscriber.meterIds.toString());
+    }
+
+    @Test
+    public void testKeepLatest() throws IOException {
+        RecordingSubscriber subscriber = publishThree(OverflowPolicy.KEEP_LATEST);
+        Assert.assertEquals(2, subscriber.subscription.getNumDropped());
+        subscriber.subscription.request(10);
+        Assert.assertEquals("[m3]", subscriber.meterIds.toString());
+    }
+
+    @Test
+    public void testBuffer() throws IOException {
+        RecordingSubscriber subscriber = publishThree(OverflowPolicy.BUFFER);
+        Assert.assertEquals(1, subscriber.subscription.getNumDropped());
+        subscriber.subscription.request(10);
+        Assert.assertEquals("[m1, m2]", subscriber.meterIds.toString());
+    }
+
+    @Test
+    public void testDeliveryFollowsDemandAndCompletes() throws IOException {
+        ModeDPublisher publisher = new ModeDPublisher(OverflowPolicy.BUFFER, 4, DIRECT_EXECUTOR);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        publisher.newDataMessage(FakeIec21Port.dataMessage("m1"));
+        publisher.newDataMessage(FakeIec21Port.dataMessage("m2"));
+        Assert.assertEquals("[m1]", subscriber.meterIds.toString());
+        Assert.assertEquals(1, subscriber.subscription.getNumBuffered());
+
+        publisher.complete();
+        Assert.assertFalse(subscriber.completed);
+        subscriber.subscription.request(1);
+        Assert.assertEquals("[m1, m2]", subscriber.meterIds.toString());
+        Assert.assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testThrowingSubscriberIsCancelledAndReported() throws IOException {
+        final List<Throwable> uncaught = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                uncaught.add(e);
+            }
+        });
+        try {
+            ModeDPublisher publisher = new ModeDPublisher(OverflowPolicy.BUFFER, 4, DIRECT_EXECUTOR);
+            RecordingSubscriber throwing = new RecordingSubscriber() {
+                @Override
+                public void onNext(DataMessage dataMessage) {
+                    super.onNext(dataMessage);
+                    throw new IllegalStateException("subscriber failed");
+                }
+            };
+            RecordingSubscriber recording = new RecordingSubscriber();
+            publisher.subscribe(throwing);
+            publisher.subscribe(recording);
+            throwing.subscription.request(10);
+            recording.subscription.request(10);
+
+            publisher.newDataMessage(FakeIec21Port.dataMessage("m1"));
+            publisher.newDataMessage(FakeIec21Port.dataMessage("m2"));
+            Assert.assertEquals(1, uncaught.size());
+            Assert.assertEquals("subscriber failed", uncaught.get(0).getMessage());
+            Assert.assertEquals("[m1]", throwing.meterIds.toString());
+            Assert.assertEquals(0, throwing.subscription.getNumBuffered());
+            Assert.assertEquals("[m1, m2]", recording.meterIds.toString());
+
+            publisher.complete();
+            Assert.assertFalse(throwing.completed);
+            Assert.assertTrue(recording.completed);
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+    }
+
+}
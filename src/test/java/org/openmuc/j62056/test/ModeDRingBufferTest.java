@@ -0,0 +1,182 @@
+package org.openmuc.j62056.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.ModeDListener;
+import org.openmuc.j62056.ModeDRingBuffer;
+import org.openmuc.j62056.ModeDRingBuffer.WaitStrategy;
+
+public class ModeDRingBufferTest {
+
+    private static class RecordingListener implements ModeDListener {
+
+        private final List<String> received = new ArrayList<>();
+        private final CountDownLatch firstReceived = new CountDownLatch(1);
+        private final CountDownLatch proceed;
+
+        private RecordingListener(CountDownLatch proceed) {
+            this.proceed = proceed;
+        }
+
+        @Override
+        public void newDataMessage(DataMessage dataMessage) {
+        }
+
+        @Override
+        public void exceptionWhileListening(Exception e) {
+            synchronized (this) {
+                received.add(e.getMessage());
+            }
+            firstReceived.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e1) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized List<String> getReceived() {
+            return new ArrayList<>(received);
+        }
+
+        private void awaitReceived(int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while (getReceived().size() < n && System.currentTimeMillis() < end) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(n, getReceived().size());
+        }
+    }
+
+    @Test
+    public void testWrapAround() throws InterruptedException {
+        ModeDRingBuffer ringBuffer = new ModeDRingBuffer(4, WaitStrategy.BLOCKING);
+        RecordingListener listener = new RecordingListener(new CountDownLatch(0));
+        ModeDRingBuffer.Consumer consumer = ringBuffer.addListener(listener);
+        try {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 10; i += 2) {
+                ringBuffer.exceptionWhileListening(new Exception("m" + i));
+                ringBuffer.exceptionWhileListening(new Exception("m" + (i + 1)));
+                expected.add("m" + i);
+                expected.add("m" + (i + 1));
+                listener.awaitReceived(i + 2);
+            }
+            Assert.assertEquals(expected, listener.getReceived());
+            Assert.assertEquals(0, consumer.getNumOverflows());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+
+    @Test
+    public void testSlowConsumerSkipsOverwrittenMessages() throws InterruptedException {
+        ModeDRingBuffer ringBuffer = new ModeDRingBuffer(4, WaitStrategy.BLOCKING);
+        CountDownLatch proceed = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(proceed);
+        ModeDRingBuffer.Consumer consumer = ringBuffer.addListener(listener);
+        try {
+            ringBuffer.exceptionWhileListening(new Exception("m0"));
+            Assert.assertTrue(listener.firstReceived.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 10; i++) {
+                ringBuffer.exceptionWhileListening(new Exception("m" + i));
+            }
+            Assert.assertEquals(4, consumer.getLag());
+            proceed.countDown();
+
+            listener.awaitReceived(5);
+            Assert.assertEquals("[m0, m6, m7, m8, m9]", listener.getReceived().toString());
+            Assert.assertEquals(5, consumer.getNumOverflows());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+
+    @Test
+    public void testOverwrittenSlotsAreNeverDeliveredOutOfOrder() throws InterruptedException {
+        ModeDRingBuffer ringBuffer = new ModeDRingBuffer(4, WaitStrategy.BUSY_SPIN);
+        final List<Integer> received = new ArrayList<>();
+        final int numMessages = 100000;
+        final CountDownLatch lastReceived = new CountDownLatch(1);
+        ModeDRingBuffer.Consumer consumer = ringBuffer.addListener(new ModeDListener() {
+            @Override
+            public void newDataMessage(DataMessage dataMessage) {
+            }
+
+            @Override
+            public synchronized void exceptionWhileListening(Exception e) {
+                int index = Integer.parseInt(e.getMessage());
+                received.add(index);
+                if (index == numMessages - 1) {
+                    lastReceived.countDown();
+                }
+            }
+        });
+        try {
+            Exception[] messages = new Exception[numMessages];
+            for (int i = 0; i < numMessages; i++) {
+                messages[i] = new Exception(Integer.toString(i));
+            }
+            for (Exception message : messages) {
+                ringBuffer.exceptionWhileListening(message);
+            }
+            Assert.assertTrue(lastReceived.await(5, TimeUnit.SECONDS));
+            synchronized (received) {
+                for (int i = 1; i < received.size(); i++) {
+                    Assert.assertTrue(received.get(i) > received.get(i - 1));
+                }
+                Assert.assertEquals(numMessages, received.size() + consumer.getNumOverflows());
+            }
+        } finally {
+            ringBuffer.close();
+        }
+    }
+
+    @Test
+    public void testListenerExceptionIsReported() throws InterruptedException {
+        final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ring-buffer-test");
+                thread.setDaemon(true);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        uncaught.add(e);
+                    }
+                });
+                return thread;
+            }
+        };
+        ModeDRingBuffer ringBuffer = new ModeDRingBuffer(4, WaitStrategy.BLOCKING, threadFactory);
+        RecordingListener listener = new RecordingListener(new CountDownLatch(0)) {
+            @Override
+            public void exceptionWhileListening(Exception e) {
+                super.exceptionWhileListening(e);
+                if (e.getMessage().equals("m0")) {
+                    throw new IllegalStateException("listener failed");
+                }
+            }
+        };
+        ringBuffer.addListener(listener);
+        try {
+            ringBuffer.exceptionWhileListening(new Exception("m0"));
+            ringBuffer.exceptionWhileListening(new Exception("m1"));
+            listener.awaitReceived(2);
+            Assert.assertEquals(1, uncaught.size());
+            Assert.assertEquals("listener failed", uncaught.get(0).getMessage());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+
+}
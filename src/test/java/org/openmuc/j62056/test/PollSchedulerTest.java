@@ -0,0 +1,126 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.PollListener;
+import org.openmuc.j62056.PollScheduler;
+import org.openmuc.j62056.ThreadFactories;
+
+public class PollSchedulerTest {
+
+    private static class RecordingListener implements PollListener {
+
+        private final List<Long> receivedAt = new ArrayList<>();
+        private final CountDownLatch received;
+
+        private RecordingListener(int numExpected) {
+            received = new CountDownLatch(numExpected);
+        }
+
+        @Override
+        public synchronized void dataMessageReceived(Iec21Port port, String deviceAddress,
+                DataMessage dataMessage) {
+            receivedAt.add(System.nanoTime());
+            received.countDown();
+        }
+
+        @Override
+        public void readFailed(Iec21Port port, String deviceAddress, IOException e) {
+        }
+    }
+
+    @Test
+    public void testReadsArePacedOverTheCycle() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        RecordingListener listener = new RecordingListener(4);
+        PollScheduler scheduler = new PollScheduler(400, 0, 0.2, 0, listener);
+        for (int i = 1; i <= 4; i++) {
+            scheduler.addMeter(port, String.valueOf(i));
+        }
+
+        scheduler.start(ThreadFactories.platformThreadFactory("poll-scheduler-test-", true));
+        try {
+            Assert.assertTrue(listener.received.await(2, TimeUnit.SECONDS));
+        } finally {
+            scheduler.stop();
+        }
+
+        synchronized (listener) {
+            for (int i = 1; i < 4; i++) {
+                long gap = (listener.receivedAt.get(i) - listener.receivedAt.get(i - 1)) / 1000000;
+                Assert.assertTrue("gap of " + gap + " ms", gap >= 80 && gap < 300);
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateMeterIsRejected() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        PollScheduler scheduler = new PollScheduler(1000, 0, 0.2, 0, new RecordingListener(0));
+        scheduler.addMeter(port, "1");
+        try {
+            scheduler.addMeter(port, "1");
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+        }
+        scheduler.addMeter(new FakeIec21Port("p2"), "1");
+    }
+
+    @Test
+    public void testRestartWhileStoppingLeavesOnePollingThread() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        final PollScheduler scheduler = new PollScheduler(20, 0, 0.2, 0, new RecordingListener(0));
+        scheduler.addMeter(port, "1");
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "poll-scheduler-test");
+                thread.setDaemon(true);
+                threads.add(thread);
+                return thread;
+            }
+        };
+
+        port.holdReads();
+        scheduler.start(threadFactory);
+        port.readStarted.await();
+
+        // stop() waits for the held read while the scheduler is started again
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.stop();
+            }
+        });
+        stopper.start();
+        while (stopper.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        scheduler.start(threadFactory);
+        port.releaseReads();
+
+        try {
+            stopper.join(1000);
+            Assert.assertFalse(stopper.isAlive());
+            Assert.assertEquals(2, threads.size());
+            threads.get(0).join(1000);
+            Assert.assertFalse(threads.get(0).isAlive());
+            Assert.assertTrue(threads.get(1).isAlive());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+}
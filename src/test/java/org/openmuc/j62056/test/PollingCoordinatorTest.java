@@ -0,0 +1,157 @@
+package org.openmuc.j62056.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.coordination.FileLeaseStore;
+import org.openmuc.j62056.coordination.InMemoryLeaseStore;
+import org.openmuc.j62056.coordination.LeaseListener;
+import org.openmuc.j62056.coordination.LeaseStore;
+import org.openmuc.j62056.coordination.PollingCoordinator;
+
+public class PollingCoordinatorTest {
+
+    private static final List<String> RESOURCES = Arrays.asList("m1", "m2", "m3", "m4", "m5", "m6");
+
+    private static class RecordingListener implements LeaseListener {
+
+        private final Set<String> polled = new LinkedHashSet<>();
+
+        @Override
+        public synchronized void leaseAcquired(String resource) {
+            Assert.assertTrue(polled.add(resource));
+        }
+
+        @Override
+        public synchronized void leaseLost(String resource) {
+            Assert.assertTrue(polled.remove(resource));
+        }
+    }
+
+    private static void assertDisjoint(Set<String> a, Set<String> b) {
+        Set<String> intersection = new HashSet<>(a);
+        intersection.retainAll(b);
+        Assert.assertTrue("polled by both: " + intersection, intersection.isEmpty());
+    }
+
+    @Test
+    public void testNewNodeTakesOverItsFairShare() throws IOException {
+        LeaseStore store = new InMemoryLeaseStore();
+        RecordingListener listenerA = new RecordingListener();
+        RecordingListener listenerB = new RecordingListener();
+        PollingCoordinator a = new PollingCoordinator(store, "a", RESOURCES, 60000, listenerA);
+        PollingCoordinator b = new PollingCoordinator(store, "b", RESOURCES, 60000, listenerB);
+
+        a.coordinate();
+        Assert.assertEquals(6, a.getOwnedResources().size());
+
+        b.coordinate();
+        Assert.assertEquals(0, b.getOwnedResources().size());
+        a.coordinate();
+        Assert.assertEquals(3, a.getOwnedResources().size());
+        b.coordinate();
+        Assert.assertEquals(3, b.getOwnedResources().size());
+        a.coordinate();
+        b.coordinate();
+
+        Assert.assertEquals(a.getOwnedResources(), listenerA.polled);
+        Assert.assertEquals(b.getOwnedResources(), listenerB.polled);
+        assertDisjoint(listenerA.polled, listenerB.polled);
+        Assert.assertEquals(3, listenerA.polled.size());
+        Assert.assertEquals(3, listenerB.polled.size());
+    }
+
+    @Test
+    public void testResourcesOfDeadNodeAreTakenOver() throws Exception {
+        LeaseStore store = new InMemoryLeaseStore();
+        RecordingListener listenerA = new RecordingListener();
+        RecordingListener listenerB = new RecordingListener();
+        PollingCoordinator a = new PollingCoordinator(store, "a", RESOURCES, 150, listenerA);
+        PollingCoordinator b = new PollingCoordinator(store, "b", RESOURCES, 150, listenerB);
+        a.coordinate();
+        b.coordinate();
+        a.coordinate();
+        b.coordinate();
+        Assert.assertEquals(3, a.getOwnedResources().size());
+
+        // b dies without releasing its leases, a keeps renewing its own
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(40);
+            a.coordinate();
+        }
+        Assert.assertEquals(6, a.getOwnedResources().size());
+        Assert.assertEquals(6, listenerA.polled.size());
+        Assert.assertTrue(b.getOwnedResources().isEmpty());
+    }
+
+    @Test
+    public void testLowerCapacityShedsResources() throws IOException {
+        LeaseStore store = new InMemoryLeaseStore();
+        RecordingListener listenerA = new RecordingListener();
+        RecordingListener listenerB = new RecordingListener();
+        PollingCoordinator a = new PollingCoordinator(store, "a", RESOURCES, 60000, listenerA);
+        PollingCoordinator b = new PollingCoordinator(store, "b", RESOURCES, 60000, listenerB);
+        a.coordinate();
+
+        a.setCapacity(2);
+        a.coordinate();
+        Assert.assertEquals(2, a.getOwnedResources().size());
+        Assert.assertEquals(2, listenerA.polled.size());
+        int numOwnedByA = 0;
+        for (String owner : store.getOwners().values()) {
+            if (owner.equals("a")) {
+                numOwnedByA++;
+            }
+        }
+        // the two resources and the lease of the node itself, but no spare capacity
+        Assert.assertEquals(3, numOwnedByA);
+
+        b.coordinate();
+        Assert.assertEquals(4, b.getOwnedResources().size());
+        assertDisjoint(listenerA.polled, listenerB.polled);
+    }
+
+    @Test
+    public void testDuplicateNodeIdFailsAndDropsLeases() throws IOException {
+        LeaseStore store = new InMemoryLeaseStore();
+        RecordingListener listener = new RecordingListener();
+        PollingCoordinator a = new PollingCoordinator(store, "a", RESOURCES, 60000, listener);
+        a.coordinate();
+        store.release(PollingCoordinator.NODE_PREFIX + "a", "a");
+        Assert.assertTrue(store.tryAcquire(PollingCoordinator.NODE_PREFIX + "a", "impostor", 60000));
+        try {
+            a.coordinate();
+            Assert.fail("IOException expected");
+        } catch (IOException e) {
+            Assert.assertTrue(listener.polled.isEmpty());
+            Assert.assertTrue(a.getOwnedResources().isEmpty());
+        }
+    }
+
+    @Test
+    public void testFileLeaseStoreBatches() throws IOException {
+        File file = File.createTempFile("leases", ".txt");
+        try {
+            FileLeaseStore store = new FileLeaseStore(file);
+            Assert.assertTrue(store.tryAcquire("m1", "b", 60000));
+            Set<String> acquired = store.tryAcquireAll(RESOURCES, "a", 60000);
+            Assert.assertEquals(5, acquired.size());
+            Assert.assertFalse(acquired.contains("m1"));
+
+            store.releaseAll(Arrays.asList("m1", "m2", "m3"), "a");
+            Assert.assertEquals("b", store.getOwners().get("m1"));
+            Assert.assertNull(store.getOwners().get("m2"));
+            Assert.assertEquals(4, store.getOwners().size());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.FakeIec21Port;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.PollListener;
+import org.openmuc.j62056.PortReadEngine;
+import org.openmuc.j62056.ReadCallback;
+import org.openmuc.j62056.ReadPriority;
+
+public class PortReadEngineTest {
+
+    private final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+
+    private final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "read-engine-test");
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread t, Throwable e) {
+                    uncaught.add(e);
+                }
+            });
+            return thread;
+        }
+    };
+
+    private static class QueueCallback implements ReadCallback {
+
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+
+        @Override
+        public void dataMessageReceived(DataMessage dataMessage) {
+            results.add(dataMessage);
+        }
+
+        @Override
+        public void readFailed(IOException e) {
+            results.add(e);
+        }
+
+        Object take() throws InterruptedException {
+            Object result = results.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(result);
+            return result;
+        }
+    }
+
+    @Test
+    public void testFailingCallbackDoesNotStallPort() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        PortReadEngine engine = new PortReadEngine(1);
+        engine.start(threadFactory);
+        try {
+            engine.submit(port, "1", ReadPriority.NORMAL, new ReadCallback() {
+                @Override
+                public void dataMessageReceived(DataMessage dataMessage) {
+                    throw new IllegalStateException("callback failed");
+                }
+
+                @Override
+                public void readFailed(IOException e) {
+                }
+            });
+            QueueCallback callback = new QueueCallback();
+            engine.submit(port, "2", ReadPriority.NORMAL, callback);
+
+            DataMessage dataMessage = (DataMessage) callback.take();
+            Assert.assertEquals("p12", dataMessage.getMeterId());
+            Assert.assertEquals(1, uncaught.size());
+            Assert.assertEquals("callback failed", uncaught.get(0).getMessage());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testPollCycleReadsAllMetersAndDropsIdlePorts() throws Exception {
+        FakeIec21Port port1 = new FakeIec21Port("p1");
+        FakeIec21Port port2 = new FakeIec21Port("p2");
+        port2.failReads(new IOException("no answer"));
+        Map<Iec21Port, Collection<String>> meters = new HashMap<>();
+        meters.put(port1, Arrays.asList("1", "2", "3"));
+        meters.put(port2, Arrays.asList("1"));
+
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final List<String> failed = new CopyOnWriteArrayList<>();
+        PortReadEngine engine = new PortReadEngine(2);
+        engine.start(threadFactory);
+        try {
+            engine.pollCycle(meters, new PollListener() {
+                @Override
+                public void dataMessageReceived(Iec21Port port, String deviceAddress, DataMessage dataMessage) {
+                    received.add(dataMessage.getMeterId());
+                }
+
+                @Override
+                public void readFailed(Iec21Port port, String deviceAddress, IOException e) {
+                    failed.add(port.getSerialPortName() + deviceAddress);
+                }
+            });
+
+            Assert.assertEquals(Arrays.asList("p11", "p12", "p13"), received);
+            Assert.assertEquals(Arrays.asList("p21"), failed);
+            Assert.assertEquals(0, engine.getNumPendingRequests());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (engine.getNumPorts() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(0, engine.getNumPorts());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testCloseFailsPendingRequests() throws Exception {
+        FakeIec21Port port = new FakeIec21Port("p1");
+        port.holdReads();
+        final PortReadEngine engine = new PortReadEngine(1);
+        engine.start(threadFactory);
+
+        QueueCallback running = new QueueCallback();
+        QueueCallback pending = new QueueCallback();
+        engine.submit(port, "1", ReadPriority.NORMAL, running);
+        port.readStarted.await();
+        engine.submit(port, "2", ReadPriority.NORMAL, pending);
+        Assert.assertEquals(1, engine.getNumPendingRequests());
+
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                engine.close();
+            }
+        });
+        closer.start();
+        // close() waits for the running exchange
+        while (closer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        port.releaseReads();
+        closer.join();
+
+        Assert.assertTrue(running.take() instanceof DataMessage);
+        Assert.assertTrue(pending.take() instanceof InterruptedIOException);
+        Assert.assertEquals(1, port.numReads.get());
+        Assert.assertEquals(0, engine.getNumPorts());
+
+        try {
+            engine.submit(port, "3", ReadPriority.NORMAL, new QueueCallback());
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+}
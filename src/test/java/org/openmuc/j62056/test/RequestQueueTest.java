@@ -0,0 +1,91 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.internal.RequestQueue;
+import org.openmuc.j62056.internal.RequestQueue.Ticket;
+
+public class RequestQueueTest {
+
+    private static Thread startWaiter(final RequestQueue queue, final String name, final int priority,
+            final int timeout, final List<String> order) throws InterruptedException {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Ticket ticket = queue.acquire(priority, timeout);
+                    synchronized (order) {
+                        order.add(name);
+                    }
+                    queue.release(ticket);
+                } catch (IOException e) {
+                    synchronized (order) {
+                        order.add(name + " failed");
+                    }
+                }
+            }
+        };
+        thread.start();
+        // wait until the thread is queued
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+    @Test
+    public void testOrderOfPriorityDeadlineAndArrival() throws Exception {
+        RequestQueue queue = new RequestQueue();
+        List<String> order = new ArrayList<>();
+        Ticket owner = queue.acquire(1, 0);
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(startWaiter(queue, "low", 2, 0, order));
+        threads.add(startWaiter(queue, "normal", 1, 0, order));
+        threads.add(startWaiter(queue, "normal later deadline", 1, 20000, order));
+        threads.add(startWaiter(queue, "normal earlier deadline", 1, 10000, order));
+        threads.add(startWaiter(queue, "normal second", 1, 0, order));
+        threads.add(startWaiter(queue, "high", 0, 0, order));
+
+        queue.release(owner);
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        Assert.assertEquals("[high, normal earlier deadline, normal later deadline, normal, normal second, low]",
+                order.toString());
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() throws IOException {
+        RequestQueue queue = new RequestQueue();
+        Ticket first = queue.acquire(1, 0);
+        queue.release(first);
+        Ticket second = queue.acquire(1, 0);
+        queue.release(first);
+        try {
+            queue.acquire(1, 50);
+            Assert.fail("acquired the port while it was in use");
+        } catch (InterruptedIOException e) {
+            // expected
+        }
+        queue.release(second);
+        queue.release(queue.acquire(1, 50));
+    }
+
+    @Test
+    public void testCloseFailsWaitingRequests() throws Exception {
+        RequestQueue queue = new RequestQueue();
+        List<String> order = new ArrayList<>();
+        queue.acquire(1, 0);
+        Thread waiter = startWaiter(queue, "waiter", 1, 0, order);
+        queue.close();
+        waiter.join(5000);
+        Assert.assertEquals("[waiter failed]", order.toString());
+    }
+
+}
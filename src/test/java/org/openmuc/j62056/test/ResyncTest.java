@@ -0,0 +1,47 @@
+package org.openmuc.j62056.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.internal.Helper;
+import org.openmuc.j62056.internal.IdentificationMessage;
+import org.openmuc.j62056.internal.ResyncInputStream;
+
+public class ResyncTest {
+
+    @Test
+    public void testResyncFindsNextIdentificationMessage() throws IOException {
+        String corrupted = "/ISK5\\2MT382-1000\r\n\r\n1.8.0(0001234.5*kWh)\r\n2.8.0(00";
+        String next = "/ISK5\\2MT382-1000\r\n";
+        ResyncInputStream resyncInputStream = new ResyncInputStream(
+                new ByteArrayInputStream((corrupted + next).getBytes(Helper.ASCII_CHARSET)));
+        DataInputStream is = new DataInputStream(resyncInputStream);
+
+        resyncInputStream.startFrame();
+        new IdentificationMessage(is);
+        is.readFully(new byte[20]);
+
+        Assert.assertEquals(corrupted.length(), resyncInputStream.resync());
+
+        resyncInputStream.startFrame();
+        IdentificationMessage identificationMessage = new IdentificationMessage(is);
+        Assert.assertEquals("ISK", identificationMessage.getManufactureId());
+        Assert.assertEquals(0, is.available());
+    }
+
+    @Test
+    public void testResyncSkipsDataWithoutIdentificationMessage() throws IOException {
+        ResyncInputStream resyncInputStream = new ResyncInputStream(
+                new ByteArrayInputStream("1.8.0(0001234.5*kWh)/1.8".getBytes(Helper.ASCII_CHARSET)));
+
+        resyncInputStream.startFrame();
+        resyncInputStream.read();
+
+        Assert.assertEquals(24, resyncInputStream.resync());
+        Assert.assertEquals(0, resyncInputStream.available());
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.openmuc.j62056.test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.DataMessage;
+import org.openmuc.j62056.Iec21Port;
+import org.openmuc.j62056.ModeDListener;
+import org.openmuc.j62056.SimulatedSerialPort;
+import org.openmuc.j62056.ThreadFactories;
+
+public class ThreadFactoriesTest {
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        try {
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            return (Boolean) isVirtual.invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testVirtualThreadFactoryCreatesWorkingThreads() throws Exception {
+        ThreadFactory threadFactory = ThreadFactories.virtualThreadFactory("virtual-test-");
+        final CountDownLatch ran = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        };
+        Thread first = threadFactory.newThread(task);
+        Thread second = threadFactory.newThread(task);
+        Assert.assertEquals("virtual-test-0", first.getName());
+        Assert.assertEquals("virtual-test-1", second.getName());
+        Assert.assertTrue(first.isDaemon());
+        Assert.assertEquals(ThreadFactories.isVirtualThreadSupported(), isVirtual(first));
+
+        first.start();
+        second.start();
+        Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPortListensWithVirtualThreadFactory() throws Exception {
+        SimulatedSerialPort serialPort = new SimulatedSerialPort("sim");
+        serialPort.send("/ISK5\\2m1\r\n\r\n1.8.0(0001234.5*kWh)\r\n!\r\n");
+        Iec21Port port = serialPort.openPort(new Iec21Port.Builder("sim")
+                .setThreadFactory(ThreadFactories.virtualThreadFactory("virtual-listen-")));
+        final CountDownLatch received = new CountDownLatch(1);
+        try {
+            port.listen(new ModeDListener() {
+                @Override
+                public void newDataMessage(DataMessage dataMessage) {
+                    received.countDown();
+                }
+
+                @Override
+                public void exceptionWhileListening(Exception e) {
+                }
+            });
+            Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+        } finally {
+            port.stopListening();
+            port.close();
+        }
+    }
+
+}
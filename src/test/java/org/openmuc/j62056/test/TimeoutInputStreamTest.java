@@ -0,0 +1,56 @@
+package org.openmuc.j62056.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmuc.j62056.internal.TimeoutInputStream;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
+
+public class TimeoutInputStreamTest {
+
+    /**
+     * A meter that never stops sending.
+     */
+    private static class ChatteringInputStream extends InputStream {
+        @Override
+        public int read() {
+            return 'x';
+        }
+    }
+
+    @Test
+    public void testDeadlineAppliesWhileDataKeepsArriving() throws IOException {
+        TimeoutInputStream is = new TimeoutInputStream(new ChatteringInputStream(), null);
+        is.startPhase(1000, 1000);
+        is.setDeadline(50);
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                is.read();
+            }
+        } catch (SerialPortTimeoutException e) {
+            Assert.assertEquals("Readout deadline exceeded.", e.getMessage());
+        }
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+    }
+
+    @Test
+    public void testCancelAppliesWhileDataKeepsArriving() throws IOException {
+        TimeoutInputStream is = new TimeoutInputStream(new ChatteringInputStream(), null);
+        is.startPhase(0, 0);
+        Assert.assertEquals('x', is.read());
+        is.cancel();
+        try {
+            is.read();
+            Assert.fail("read after cancel succeeded");
+        } catch (InterruptedIOException e) {
+            Assert.assertFalse(e instanceof SerialPortTimeoutException);
+        }
+        is.clearCancel();
+        Assert.assertEquals('x', is.read());
+    }
+
+}